@@ -5,6 +5,8 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.os.Build;
 
+import com.hfs.security.services.EvidenceRetentionWorker;
+
 /**
  * Global Application class for HFS - Hybrid File Security.
  * Initializes the security notification channels required for the 
@@ -21,6 +23,9 @@ public class HFSApplication extends Application {
 
         // Initialize the notification channel required for Foreground Security Services
         createSecurityNotificationChannel();
+
+        // Daily evidence storage pass (kept if already scheduled)
+        EvidenceRetentionWorker.schedule(this);
     }
 
     /**
@@ -15,6 +15,7 @@ import java.util.List;
  * Adapter for the Protected App Selection list.
  * Binds installed application metadata (Icon, Name, Package) to the UI items.
  * Handles the logic for toggling the protection status of each app.
+ * UPDATED: Long-pressing a protected app asks for its unlock grace period.
  */
 public class AppSelectionAdapter extends RecyclerView.Adapter<AppSelectionAdapter.AppViewHolder> {
 
@@ -31,6 +32,12 @@ public class AppSelectionAdapter extends RecyclerView.Adapter<AppSelectionAdapte
          * @param isSelected True if protection is enabled, false otherwise.
          */
         void onAppToggle(String packageName, boolean isSelected);
+
+        /**
+         * Triggered on a long-press of a protected app.
+         * @param app The app whose unlock grace period should be edited.
+         */
+        void onAppGraceRequested(AppInfo app);
     }
 
     /**
@@ -112,6 +119,13 @@ public class AppSelectionAdapter extends RecyclerView.Adapter<AppSelectionAdapte
             this.itemView.setOnClickListener(v -> {
                 binding.cbProtected.toggle();
             });
+
+            // 4. Long-press a protected app to choose how long it stays unlocked
+            this.itemView.setOnLongClickListener(v -> {
+                if (!app.isSelected() || listener == null) return false;
+                listener.onAppGraceRequested(app);
+                return true;
+            });
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.hfs.security.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.hfs.security.databinding.ItemEvidencePageBinding;
+import com.hfs.security.models.IntruderLog;
+
+import java.io.File;
+
+/**
+ * Adapter for the full-screen evidence viewer (ViewPager2).
+ * One page per capture, each an EvidenceTileView. Null items are placeholders for records
+ * not loaded yet; they show a spinner until Paging fills them in.
+ * Pages released by ViewPager2 drop their decoder and tiles, so only the current page and
+ * its prefetched neighbours hold image memory.
+ */
+public class EvidencePagerAdapter extends PagingDataAdapter<IntruderLog, EvidencePagerAdapter.PageViewHolder> {
+
+    public EvidencePagerAdapter() {
+        super(IntruderLogAdapter.DIFF_CALLBACK);
+    }
+
+    @NonNull
+    @Override
+    public PageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ItemEvidencePageBinding binding = ItemEvidencePageBinding.inflate(
+                LayoutInflater.from(parent.getContext()), parent, false);
+        return new PageViewHolder(binding);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PageViewHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull PageViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.binding.tileView.clear();
+    }
+
+    static class PageViewHolder extends RecyclerView.ViewHolder {
+        private final ItemEvidencePageBinding binding;
+
+        PageViewHolder(ItemEvidencePageBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+            binding.tileView.setOnEvidenceLoadedListener(success ->
+                    binding.pageProgress.setVisibility(View.GONE));
+        }
+
+        void bind(IntruderLog log) {
+            if (log == null) {
+                // Placeholder: keep spinning until the page of records arrives
+                binding.tileView.clear();
+                binding.pageProgress.setVisibility(View.VISIBLE);
+                return;
+            }
+            File file = new File(log.getFilePath());
+            if (!file.equals(binding.tileView.getEvidence())) {
+                binding.pageProgress.setVisibility(View.VISIBLE);
+                binding.tileView.setEvidence(file);
+            }
+        }
+    }
+}
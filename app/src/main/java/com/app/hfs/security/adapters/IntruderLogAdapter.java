@@ -4,24 +4,43 @@ import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
 import com.hfs.security.databinding.ItemIntruderLogBinding;
 import com.hfs.security.models.IntruderLog;
+import com.hfs.security.utils.EvidenceImageLoader;
 
-import java.util.List;
+import java.io.File;
 
 /**
  * Adapter for the Intruder Evidence list.
  * Responsible for displaying captured intruder photos and intrusion details.
- * Uses Glide for efficient image loading from the hidden internal storage.
+ * Photos are encrypted at rest; the grid shows capture-time thumbnails via EvidenceImageLoader.
+ * Pages come from EvidencePagingSource; updates are diffed (DIFF_CALLBACK) so a delete or an
+ * upload-state change rebinds only the affected cells.
  */
-public class IntruderLogAdapter extends RecyclerView.Adapter<IntruderLogAdapter.LogViewHolder> {
+public class IntruderLogAdapter extends PagingDataAdapter<IntruderLog, IntruderLogAdapter.LogViewHolder> {
 
-    private final List<IntruderLog> logList;
     private final OnLogActionListener listener;
 
+    /**
+     * Same index row = same item; contents compare all displayed metadata.
+     * Shared with EvidencePagerAdapter.
+     */
+    static final DiffUtil.ItemCallback<IntruderLog> DIFF_CALLBACK = new DiffUtil.ItemCallback<IntruderLog>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull IntruderLog oldItem, @NonNull IntruderLog newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull IntruderLog oldItem, @NonNull IntruderLog newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
     /**
      * Interface for handling interactions with intrusion records.
      */
@@ -32,11 +51,10 @@ public class IntruderLogAdapter extends RecyclerView.Adapter<IntruderLogAdapter.
 
     /**
      * Constructor for the adapter.
-     * @param logList List of IntruderLog models.
      * @param listener Callback for click and delete events.
      */
-    public IntruderLogAdapter(List<IntruderLog> logList, OnLogActionListener listener) {
-        this.logList = logList;
+    public IntruderLogAdapter(OnLogActionListener listener) {
+        super(DIFF_CALLBACK);
         this.listener = listener;
     }
 
@@ -52,13 +70,17 @@ public class IntruderLogAdapter extends RecyclerView.Adapter<IntruderLogAdapter.
     @Override
     public void onBindViewHolder(@NonNull LogViewHolder holder, int position) {
         // Retrieve the intrusion record for the current position
-        IntruderLog log = logList.get(position);
-        holder.bind(log, listener);
+        IntruderLog log = getItem(position);
+        if (log != null) {
+            holder.bind(log, listener);
+        }
     }
 
     @Override
-    public int getItemCount() {
-        return logList != null ? logList.size() : 0;
+    public void onViewRecycled(@NonNull LogViewHolder holder) {
+        super.onViewRecycled(holder);
+        // Off-screen cells should not keep decoding
+        EvidenceImageLoader.getInstance(holder.itemView.getContext()).cancel(holder.binding.ivIntruderPhoto);
     }
 
     /**
@@ -80,13 +102,11 @@ public class IntruderLogAdapter extends RecyclerView.Adapter<IntruderLogAdapter.
             binding.tvIntruderTime.setText(log.getFormattedDate());
             binding.tvTargetApp.setText("Target: " + log.getAppName());
 
-            // 2. Load the intruder's face photo from internal path using Glide
-            // Glide handles memory management and aspect ratio scaling automatically.
-            Glide.with(itemView.getContext())
-                    .load(log.getFilePath())
-                    .centerCrop()
-                    .placeholder(android.R.drawable.ic_menu_report_image)
-                    .into(binding.ivIntruderPhoto);
+            // 2. Load the capture-time thumbnail (memory-cached) from the encrypted vault
+            // centerCrop comes from the layout's scaleType.
+            EvidenceImageLoader.getInstance(itemView.getContext())
+                    .loadThumbnail(itemView.getContext(), new File(log.getFilePath()),
+                            binding.ivIntruderPhoto, android.R.drawable.ic_menu_report_image);
 
             // 3. Handle Single Tap: View full-size photo
             itemView.setOnClickListener(v -> {
@@ -0,0 +1,116 @@
+package com.hfs.security.diagnostics;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Measures intruder capture-to-disk time in FileSecureHelper (camera frame in, JPEG on disk).
+ *
+ * Stages (each a duration, not cumulative):
+ * 1. STAGE_CONVERT: YUV_420_888 planes to NV21.
+ * 2. STAGE_ENCODE: the single JPEG encode of the full frame, streamed through EXIF insertion
+ *    and vault encryption to disk.
+ * 3. STAGE_WRITE: sealing the final vault chunk and closing the file.
+ * 4. STAGE_PREVIEW: network-sized preview (downsample, encode, encrypt, write).
+ * 5. STAGE_THUMBNAIL: history grid thumbnail (downsample, encode, encrypt, write).
+ * 6. STAGE_TOTAL: frame received to all files on disk.
+ *
+ * Shown next to the lock latency report in Settings > Diagnostics.
+ */
+public final class CaptureLatencyTracker {
+
+    private static final String TAG = "HFS_CaptureLatency";
+    private static final String EXPORT_DIR = "traces";
+    private static final String EXPORT_FILE = "capture_latency.csv";
+
+    public static final int STAGE_CONVERT = 0;
+    public static final int STAGE_ENCODE = 1;
+    public static final int STAGE_WRITE = 2;
+    public static final int STAGE_PREVIEW = 3;
+    public static final int STAGE_THUMBNAIL = 4;
+    public static final int STAGE_TOTAL = 5;
+    private static final int STAGE_COUNT = 6;
+    private static final String[] STAGE_NAMES = {"convert", "encode", "write", "preview", "thumbnail", "total"};
+
+    private static CaptureLatencyTracker instance;
+
+    private final File exportDir;
+    private final LatencyHistogram[] stages = new LatencyHistogram[STAGE_COUNT];
+
+    private CaptureLatencyTracker(Context context) {
+        exportDir = new File(context.getFilesDir(), EXPORT_DIR);
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    public static synchronized CaptureLatencyTracker getInstance(Context context) {
+        if (instance == null) {
+            instance = new CaptureLatencyTracker(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public void record(int stage, long durationNanos) {
+        if (durationNanos < 0) return;
+        stages[stage].recordNanos(durationNanos);
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : stages) {
+            h.reset();
+        }
+    }
+
+    /**
+     * Human readable summary for the diagnostics dialog.
+     */
+    public String formatReport() {
+        if (stages[STAGE_TOTAL].getCount() == 0) {
+            return "No captures measured yet.";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Capture to disk (n=").append(stages[STAGE_TOTAL].getCount()).append(")\n");
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            LatencyHistogram h = stages[i];
+            sb.append(String.format(Locale.US, "  %-13s p50 %5.1f  p95 %5.1f  max %5.1f ms%n",
+                    STAGE_NAMES[i], toMs(h.percentileNanos(50)), toMs(h.percentileNanos(95)),
+                    toMs(h.getMaxNanos())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes all stages to traces/capture_latency.csv and returns the file.
+     */
+    public File exportCsv() throws IOException {
+        if (!exportDir.exists() && !exportDir.mkdirs()) {
+            throw new IOException("Cannot create export directory");
+        }
+        File out = new File(exportDir, EXPORT_FILE);
+        try (PrintWriter writer = new PrintWriter(new FileWriter(out, false))) {
+            writer.println("device,sdk,stage,count,p50_ms,p95_ms,p99_ms,max_ms");
+            String device = (Build.MANUFACTURER + " " + Build.MODEL).replace(',', ' ');
+            for (int i = 0; i < STAGE_COUNT; i++) {
+                LatencyHistogram h = stages[i];
+                writer.println(String.format(Locale.US, "%s,%d,%s,%d,%.2f,%.2f,%.2f,%.2f",
+                        device, Build.VERSION.SDK_INT, STAGE_NAMES[i], h.getCount(),
+                        toMs(h.percentileNanos(50)), toMs(h.percentileNanos(95)),
+                        toMs(h.percentileNanos(99)), toMs(h.getMaxNanos())));
+            }
+        }
+        Log.i(TAG, "Capture latency exported to " + out.getAbsolutePath());
+        return out;
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,65 @@
+package com.hfs.security.diagnostics;
+
+/**
+ * Binary layout shared by EventTraceWriter (device) and EventTraceReader (JVM replay).
+ *
+ * File layout:
+ * 1. Header: int MAGIC, short VERSION.
+ * 2. Records, each starting with a tag byte:
+ *    - TAG_STRING: varint id, modified-UTF-8 string. Defines a package/class name once per file.
+ *    - TAG_EVENT:  varint packageId, varint classId, varint eventType, varint flags,
+ *                  int textHash, varlong nanos delta from the previous record.
+ *
+ * Pure Java: no Android imports so the replay tool can compile on a plain JDK.
+ */
+public final class EventTraceFormat {
+
+    public static final int MAGIC = 0x48465354; // "HFST"
+    public static final short VERSION = 1;
+
+    public static final byte TAG_STRING = 0x01;
+    public static final byte TAG_EVENT = 0x02;
+
+    // --- FLAGS ---
+    // Set by the adapter when the systemui failure keyword matcher fired for this event.
+    public static final int FLAG_FAILURE_TEXT = 1;
+    // Source view was a keyguard PIN key, pattern or password widget (KeyguardInputDetector).
+    public static final int FLAG_KEYGUARD_INPUT = 1 << 1;
+    // Source view was the keyguard message area.
+    public static final int FLAG_KEYGUARD_MESSAGE = 1 << 2;
+
+    // --- PSEUDO EVENT TYPES (state changes made outside onAccessibilityEvent) ---
+    // Chosen above the AccessibilityEvent type range so they never collide.
+    // TYPE_MARK_UNLOCK carries the session grace period (ms) in the textHash field;
+    // 0 (traces recorded before per-app grace) means the default grace.
+    public static final int TYPE_MARK_UNLOCK = 0x40000000;
+    public static final int TYPE_MARK_LOCK_ACTIVE = 0x40000001;
+    public static final int TYPE_MARK_LOCK_INACTIVE = 0x40000002;
+
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private EventTraceFormat() {}
+
+    /**
+     * FNV-1a hash over a CharSequence. Reads chars in place, never allocates.
+     * Returns the running hash so multiple text fragments can be chained.
+     */
+    public static int hashText(int seed, CharSequence text) {
+        int hash = seed;
+        if (text == null) return hash;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            hash ^= text.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public static int hashText(CharSequence text) {
+        return hashText(FNV_OFFSET, text);
+    }
+
+    public static int textHashSeed() {
+        return FNV_OFFSET;
+    }
+}
@@ -0,0 +1,202 @@
+package com.hfs.security.diagnostics;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-device recorder for Accessibility events (ghost lock / lock flash investigations).
+ * Disabled by default; toggled from Settings > Diagnostics.
+ *
+ * Logic:
+ * 1. The main thread copies each event into preallocated arrays (no I/O, no allocation).
+ * 2. When a batch fills up it is handed to a single background thread and encoded with EventTraceWriter.
+ * 3. The file is bounded: at MAX_FILE_BYTES the current file rotates to events.1.hfst,
+ *    so at most 2 x MAX_FILE_BYTES are kept on disk.
+ *
+ * Location: /data/data/com.hfs.security/files/traces/events.hfst (pull with "adb shell run-as").
+ */
+public final class EventTraceRecorder {
+
+    private static final String TAG = "HFS_EventTrace";
+    private static final String TRACE_DIR = "traces";
+    private static final String CURRENT_FILE = "events.hfst";
+    private static final String ROTATED_FILE = "events.1.hfst";
+    private static final int MAX_FILE_BYTES = 2 * 1024 * 1024;
+    private static final int BATCH_SIZE = 256;
+
+    private static EventTraceRecorder instance;
+
+    private final File traceDir;
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor();
+    private volatile boolean enabled = false;
+
+    // Active batch (main thread only)
+    private Batch active = new Batch();
+    // Spare batch returned by the flush thread once written
+    private volatile Batch spare = new Batch();
+
+    // Flush thread state
+    private EventTraceWriter writer;
+
+    /**
+     * Fixed-size column store for one batch of events.
+     */
+    private static final class Batch {
+        final String[] packages = new String[BATCH_SIZE];
+        final String[] classes = new String[BATCH_SIZE];
+        final int[] types = new int[BATCH_SIZE];
+        final int[] flags = new int[BATCH_SIZE];
+        final int[] hashes = new int[BATCH_SIZE];
+        final long[] nanos = new long[BATCH_SIZE];
+        int count = 0;
+    }
+
+    private EventTraceRecorder(Context context) {
+        traceDir = new File(context.getFilesDir(), TRACE_DIR);
+    }
+
+    public static synchronized EventTraceRecorder getInstance(Context context) {
+        if (instance == null) {
+            instance = new EventTraceRecorder(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) return;
+        this.enabled = enabled;
+        if (!enabled) {
+            flush();
+            flushExecutor.execute(this::closeWriter);
+        }
+        Log.i(TAG, "Event trace recording " + (enabled ? "started" : "stopped"));
+    }
+
+    /**
+     * Records one Accessibility event. Main thread only.
+     */
+    public void record(String packageName, String className, int eventType, int flags,
+                       int textHash, long timestampNanos) {
+        if (!enabled) return;
+
+        Batch batch = active;
+        int i = batch.count;
+        batch.packages[i] = packageName;
+        batch.classes[i] = className;
+        batch.types[i] = eventType;
+        batch.flags[i] = flags;
+        batch.hashes[i] = textHash;
+        batch.nanos[i] = timestampNanos;
+        batch.count = i + 1;
+
+        if (batch.count == BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Records a state change made outside onAccessibilityEvent (unlock, lock shown/hidden).
+     *
+     * @param value Mark argument, stored in the textHash field (unlock: grace period in ms, else 0).
+     */
+    public void mark(int markType, String packageName, int value, long timestampNanos) {
+        record(packageName != null ? packageName : "", "", markType, 0, value, timestampNanos);
+    }
+
+    /**
+     * Hands the active batch to the flush thread. Main thread only.
+     */
+    public void flush() {
+        Batch full = active;
+        if (full.count == 0) return;
+
+        Batch next = spare;
+        if (next == null) {
+            // Flush thread is still busy with the previous batch; drop rather than block the UI.
+            Log.w(TAG, "Trace flush backlog: dropping " + full.count + " events.");
+            full.count = 0;
+            return;
+        }
+        spare = null;
+        active = next;
+        flushExecutor.execute(() -> writeBatch(full));
+    }
+
+    public File getTraceFile() {
+        return new File(traceDir, CURRENT_FILE);
+    }
+
+    private void writeBatch(Batch batch) {
+        try {
+            if (writer == null) {
+                openWriter();
+            }
+            for (int i = 0; i < batch.count; i++) {
+                writer.write(batch.packages[i], batch.classes[i], batch.types[i],
+                        batch.flags[i], batch.hashes[i], batch.nanos[i]);
+                batch.packages[i] = null;
+                batch.classes[i] = null;
+            }
+            writer.flush();
+
+            if (writer.size() >= MAX_FILE_BYTES) {
+                rotate();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Trace write failed: " + e.getMessage());
+            closeWriter();
+        } finally {
+            batch.count = 0;
+            spare = batch;
+        }
+    }
+
+    private void openWriter() throws IOException {
+        if (!traceDir.exists() && !traceDir.mkdirs()) {
+            throw new IOException("Cannot create trace directory");
+        }
+        // Each session starts a fresh file so the string table and delta base are self-contained
+        File current = getTraceFile();
+        if (current.exists()) {
+            rotateFiles();
+        }
+        writer = new EventTraceWriter(new FileOutputStream(current));
+    }
+
+    private void rotate() throws IOException {
+        closeWriter();
+        openWriter();
+    }
+
+    private void rotateFiles() {
+        File current = getTraceFile();
+        File rotated = new File(traceDir, ROTATED_FILE);
+        if (rotated.exists() && !rotated.delete()) {
+            Log.w(TAG, "Could not delete old rotated trace");
+        }
+        if (!current.renameTo(rotated)) {
+            Log.w(TAG, "Could not rotate trace file");
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Trace close failed: " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+}
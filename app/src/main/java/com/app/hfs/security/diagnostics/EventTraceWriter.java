@@ -0,0 +1,93 @@
+package com.hfs.security.diagnostics;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+/**
+ * Streams Accessibility events into the compact HFST binary format.
+ * Package and class names are written once and then referenced by id,
+ * timestamps are delta encoded, so a typical event costs 8-12 bytes.
+ *
+ * Not thread-safe: EventTraceRecorder owns a single writer on its flush thread.
+ */
+public final class EventTraceWriter implements Closeable {
+
+    private final DataOutputStream out;
+    private final HashMap<String, Integer> stringIds = new HashMap<>();
+    private long lastNanos = 0;
+
+    public EventTraceWriter(OutputStream target) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(target, 16 * 1024));
+        out.writeInt(EventTraceFormat.MAGIC);
+        out.writeShort(EventTraceFormat.VERSION);
+    }
+
+    /**
+     * Appends one event record.
+     *
+     * @param timestampNanos Monotonic timestamp; must not go backwards within a file.
+     */
+    public void write(String packageName, String className, int eventType, int flags,
+                      int textHash, long timestampNanos) throws IOException {
+        int pkgId = idFor(packageName);
+        int clsId = idFor(className);
+
+        out.writeByte(EventTraceFormat.TAG_EVENT);
+        writeVarInt(pkgId);
+        writeVarInt(clsId);
+        writeVarInt(eventType);
+        writeVarInt(flags);
+        out.writeInt(textHash);
+        writeVarLong(Math.max(0, timestampNanos - lastNanos));
+        lastNanos = timestampNanos;
+    }
+
+    /**
+     * Bytes written so far, including the header. Used for file rotation.
+     */
+    public int size() {
+        return out.size();
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private int idFor(String value) throws IOException {
+        String key = value != null ? value : "";
+        Integer id = stringIds.get(key);
+        if (id != null) return id;
+
+        int newId = stringIds.size();
+        stringIds.put(key, newId);
+        out.writeByte(EventTraceFormat.TAG_STRING);
+        writeVarInt(newId);
+        out.writeUTF(key);
+        return newId;
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
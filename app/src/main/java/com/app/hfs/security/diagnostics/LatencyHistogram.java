@@ -0,0 +1,98 @@
+package com.hfs.security.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory log-linear latency histogram (HdrHistogram style, ~12% resolution).
+ * Recording is two atomic increments and never allocates, so it is safe on the main thread.
+ *
+ * Logic:
+ * 1. Values are stored in microseconds. Each power of two range is split into SUB_BUCKETS linear slots.
+ * 2. Percentiles return the upper bound of the matching slot (never under-reports).
+ * 3. Values above the top range are clamped into the last slot; the exact max is kept separately.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 2^26 us ~= 67 seconds; anything slower than that is a hang, not a latency
+    private static final int RANGES = 27 - SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (RANGES + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one sample. Negative values (clock skew between processes) are ignored.
+     */
+    public void recordNanos(long nanos) {
+        if (nanos < 0) return;
+        counts.incrementAndGet(bucketIndex(nanos / 1000L));
+        totalCount.incrementAndGet();
+
+        long max;
+        while (nanos > (max = maxNanos.get())) {
+            if (maxNanos.compareAndSet(max, nanos)) break;
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @param percentile 0-100.
+     * @return Upper bound of the slot holding the percentile, in nanoseconds. 0 if empty.
+     */
+    public long percentileNanos(double percentile) {
+        long total = totalCount.get();
+        if (total == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                if (i == BUCKET_COUNT - 1) return maxNanos.get();
+                return Math.min(bucketUpperBoundMicros(i) * 1000L, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        maxNanos.set(0);
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int range = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS + 1;
+        if (range > RANGES) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (micros >>> (range - 1)) - SUB_BUCKETS;
+        return range * SUB_BUCKETS + sub;
+    }
+
+    static long bucketUpperBoundMicros(int index) {
+        int range = index / SUB_BUCKETS;
+        int sub = index % SUB_BUCKETS;
+        if (range == 0) {
+            return sub;
+        }
+        long width = 1L << (range - 1);
+        return ((long) (SUB_BUCKETS + sub) << (range - 1)) + width - 1;
+    }
+}
@@ -0,0 +1,151 @@
+package com.hfs.security.diagnostics;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures how long a protected app stays visible before the HFS lock covers it.
+ * All timestamps are SystemClock.elapsedRealtimeNanos() taken at the Accessibility event.
+ *
+ * Stages (each measured from event receipt):
+ * 1. STAGE_START_ACTIVITY: startActivity() returned in HFSAccessibilityService.
+ * 2. STAGE_ON_CREATE: LockScreenActivity.onCreate() entered.
+ * 3. STAGE_FIRST_FRAME: First draw of the lock screen (the real exposure window).
+ *
+ * Samples live in memory (per package, since process start) and can be exported as CSV
+ * from Settings > Diagnostics.
+ */
+public final class LockLatencyTracker {
+
+    private static final String TAG = "HFS_LockLatency";
+    private static final String EXPORT_DIR = "traces";
+    private static final String EXPORT_FILE = "lock_latency.csv";
+
+    public static final String EXTRA_EVENT_NANOS = "EXTRA_EVENT_NANOS";
+
+    public static final int STAGE_START_ACTIVITY = 0;
+    public static final int STAGE_ON_CREATE = 1;
+    public static final int STAGE_FIRST_FRAME = 2;
+    private static final int STAGE_COUNT = 3;
+    private static final String[] STAGE_NAMES = {"startActivity", "onCreate", "firstFrame"};
+
+    private static LockLatencyTracker instance;
+
+    private final File exportDir;
+    private final ConcurrentHashMap<String, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+
+    private LockLatencyTracker(Context context) {
+        exportDir = new File(context.getFilesDir(), EXPORT_DIR);
+    }
+
+    public static synchronized LockLatencyTracker getInstance(Context context) {
+        if (instance == null) {
+            instance = new LockLatencyTracker(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Records one stage for a lock that was triggered at eventNanos.
+     * Ignored when eventNanos is missing (lock not started by an Accessibility event).
+     */
+    public void record(String packageName, int stage, long eventNanos, long nowNanos) {
+        if (eventNanos <= 0 || packageName == null) return;
+        stagesFor(packageName)[stage].recordNanos(nowNanos - eventNanos);
+    }
+
+    private LatencyHistogram[] stagesFor(String packageName) {
+        LatencyHistogram[] stages = histograms.get(packageName);
+        if (stages == null) {
+            LatencyHistogram[] created = new LatencyHistogram[STAGE_COUNT];
+            for (int i = 0; i < STAGE_COUNT; i++) {
+                created[i] = new LatencyHistogram();
+            }
+            stages = histograms.putIfAbsent(packageName, created);
+            if (stages == null) stages = created;
+        }
+        return stages;
+    }
+
+    public void reset() {
+        histograms.clear();
+    }
+
+    /**
+     * Human readable summary for the diagnostics dialog.
+     */
+    public String formatReport() {
+        List<String> packages = sortedPackages();
+        if (packages.isEmpty()) {
+            return "No locks measured yet.";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(Build.MANUFACTURER).append(' ').append(Build.MODEL)
+                .append(" (API ").append(Build.VERSION.SDK_INT).append(")\n");
+        for (String pkg : packages) {
+            LatencyHistogram[] stages = histograms.get(pkg);
+            if (stages == null) continue;
+            sb.append('\n').append(pkg).append(" (n=").append(stages[STAGE_FIRST_FRAME].getCount()).append(")\n");
+            for (int i = 0; i < STAGE_COUNT; i++) {
+                LatencyHistogram h = stages[i];
+                sb.append(String.format(Locale.US, "  %-13s p50 %5.1f  p95 %5.1f  p99 %5.1f ms%n",
+                        STAGE_NAMES[i], toMs(h.percentileNanos(50)), toMs(h.percentileNanos(95)),
+                        toMs(h.percentileNanos(99))));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes all histograms to traces/lock_latency.csv and returns the file.
+     */
+    public File exportCsv() throws IOException {
+        if (!exportDir.exists() && !exportDir.mkdirs()) {
+            throw new IOException("Cannot create export directory");
+        }
+        File out = new File(exportDir, EXPORT_FILE);
+        try (PrintWriter writer = new PrintWriter(new FileWriter(out, false))) {
+            writer.println("device,sdk,package,stage,count,p50_ms,p95_ms,p99_ms,max_ms");
+            String device = (Build.MANUFACTURER + " " + Build.MODEL).replace(',', ' ');
+            for (String pkg : sortedPackages()) {
+                LatencyHistogram[] stages = histograms.get(pkg);
+                if (stages == null) continue;
+                for (int i = 0; i < STAGE_COUNT; i++) {
+                    LatencyHistogram h = stages[i];
+                    writer.println(String.format(Locale.US, "%s,%d,%s,%s,%d,%.2f,%.2f,%.2f,%.2f",
+                            device, Build.VERSION.SDK_INT, pkg, STAGE_NAMES[i], h.getCount(),
+                            toMs(h.percentileNanos(50)), toMs(h.percentileNanos(95)),
+                            toMs(h.percentileNanos(99)), toMs(h.getMaxNanos())));
+                }
+            }
+        }
+        Log.i(TAG, "Lock latency exported to " + out.getAbsolutePath());
+        return out;
+    }
+
+    private List<String> sortedPackages() {
+        List<String> packages = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram[]> entry : histograms.entrySet()) {
+            packages.add(entry.getKey());
+        }
+        Collections.sort(packages);
+        return packages;
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
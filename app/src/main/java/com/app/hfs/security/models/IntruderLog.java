@@ -4,61 +4,74 @@ import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Objects;
 
 /**
  * Data model representing a captured intrusion event.
- * This class wraps the photo file saved during a face mismatch 
- * and extracts metadata for display in the History screen.
+ * One row of the EvidenceIndex: the photo saved during a failed unlock plus the
+ * incident metadata recorded at capture time, for display in the History screen.
  */
 public class IntruderLog {
 
-    private final String fileName;
+    private final long id;
+    private final String incidentId;
     private final String filePath;
-    private final String appName;
     private final long timestamp;
+    private final String triggerType;
+    private final String appName;
+    private final String location;
     private final long fileSize;
+    private final int uploadState;
+    private final String driveLink;
 
     /**
-     * Constructor that initializes log data from a physical file.
-     * Expected filename format: AppName-PackageName-Timestamp.jpg
-     * 
-     * @param file The image file captured by the background camera service.
+     * Built by EvidenceIndex from an index row.
+     *
+     * @param uploadState One of the EvidenceIndex.UPLOAD_* states.
      */
-    public IntruderLog(File file) {
-        this.fileName = file.getName();
-        this.filePath = file.getAbsolutePath();
-        this.fileSize = file.length();
-        this.timestamp = file.lastModified();
-        
-        // Extract the app name from the structured filename
-        this.appName = parseAppNameFromFileName(fileName);
+    public IntruderLog(long id, String incidentId, String filePath, long timestamp, String triggerType,
+                       String appName, String location, long fileSize, int uploadState, String driveLink) {
+        this.id = id;
+        this.incidentId = incidentId;
+        this.filePath = filePath;
+        this.timestamp = timestamp;
+        this.triggerType = triggerType;
+        this.appName = appName;
+        this.location = location;
+        this.fileSize = fileSize;
+        this.uploadState = uploadState;
+        this.driveLink = driveLink;
     }
 
-    /**
-     * Helper to extract the readable app name from the saved filename.
-     */
-    private String parseAppNameFromFileName(String name) {
-        try {
-            if (name.contains("-")) {
-                // Returns the first part of the name before the first hyphen
-                return name.split("-")[0];
-            }
-        } catch (Exception e) {
-            return "Unknown App";
-        }
-        return "Unknown";
+    public long getId() {
+        return id;
+    }
+
+    public String getIncidentId() {
+        return incidentId;
     }
 
     public String getFileName() {
-        return fileName;
+        return new File(filePath).getName();
     }
 
     public String getFilePath() {
         return filePath;
     }
 
+    /**
+     * @return Target app of the alert, or "Unknown" for captures that predate the index.
+     */
     public String getAppName() {
-        return appName;
+        return appName != null ? appName : "Unknown";
+    }
+
+    public String getTriggerType() {
+        return triggerType;
+    }
+
+    public String getLocation() {
+        return location;
     }
 
     public long getTimestamp() {
@@ -69,6 +82,14 @@ public class IntruderLog {
         return fileSize;
     }
 
+    public int getUploadState() {
+        return uploadState;
+    }
+
+    public String getDriveLink() {
+        return driveLink;
+    }
+
     /**
      * Converts the raw file timestamp into a human-readable date and time.
      * Example: Feb 09, 2026 05:18 AM
@@ -88,4 +109,29 @@ public class IntruderLog {
         return new java.text.DecimalFormat("#,##0.#")
                 .format(fileSize / Math.pow(1024, digitGroups)) + " " + units[digitGroups];
     }
-}
\ No newline at end of file
+
+    /**
+     * Same index row with the same metadata (used by the History grid's diff).
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IntruderLog)) return false;
+        IntruderLog other = (IntruderLog) o;
+        return id == other.id
+                && timestamp == other.timestamp
+                && fileSize == other.fileSize
+                && uploadState == other.uploadState
+                && filePath.equals(other.filePath)
+                && Objects.equals(incidentId, other.incidentId)
+                && Objects.equals(triggerType, other.triggerType)
+                && Objects.equals(appName, other.appName)
+                && Objects.equals(location, other.location)
+                && Objects.equals(driveLink, other.driveLink);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+}
@@ -0,0 +1,59 @@
+package com.hfs.security.models;
+
+/**
+ * Data model for an intruder photo waiting in the Drive upload queue.
+ * Persisted as JSON by HFSDatabaseHelper and drained by DriveUploadWorker.
+ */
+public class PendingUpload {
+
+    private String filePath;
+    private String appName;
+    private String alertType;
+    private long queuedAt;
+    // True when the alert SMS went out with "Pending Upload" and the link must follow
+    private boolean followUpSms;
+    // Unexpected (non-I/O) failures so far; the worker gives up after a bounded number
+    private int failedAttempts;
+
+    /**
+     * @param filePath Absolute path of the local evidence file.
+     * @param appName App (or "SYSTEM PHONE LOCK") that triggered the capture.
+     * @param alertType Breach type shown in the follow-up SMS.
+     * @param followUpSms Whether to text the Drive link once the upload completes.
+     */
+    public PendingUpload(String filePath, String appName, String alertType, boolean followUpSms) {
+        this.filePath = filePath;
+        this.appName = appName;
+        this.alertType = alertType;
+        this.followUpSms = followUpSms;
+        this.queuedAt = System.currentTimeMillis();
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public String getAppName() {
+        return appName;
+    }
+
+    public String getAlertType() {
+        return alertType;
+    }
+
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    public boolean needsFollowUpSms() {
+        return followUpSms;
+    }
+
+    public int getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    public void setFailedAttempts(int failedAttempts) {
+        this.failedAttempts = failedAttempts;
+    }
+}
@@ -1,108 +1,296 @@
 package com.hfs.security.services;
 
+import android.app.Notification;
 import android.content.Context;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.ForegroundInfo;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
-import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
-import com.google.api.client.extensions.android.http.AndroidHttp;
-import com.google.api.client.googleapis.extensions.android.gms.auth.GoogleAccountCredential;
-import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.services.drive.Drive;
-import com.google.api.services.drive.DriveScopes;
+import com.hfs.security.HFSApplication;
+import com.hfs.security.R;
+import com.hfs.security.models.PendingUpload;
+import com.hfs.security.utils.ChunkedAeadFile;
 import com.hfs.security.utils.DriveHelper;
+import com.hfs.security.utils.DriveServiceProvider;
+import com.hfs.security.utils.EvidenceIndex;
+import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.SmsHelper;
 
 import java.io.File;
-import java.util.Collections;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Background Cloud Sync Worker.
- * This class is managed by WorkManager to handle intruder photo uploads
- * when the device is offline or the app is in the background.
+ * Background Cloud Sync Worker (evidence upload queue drain).
+ * Replaces one unconstrained OneTimeWorkRequest per photo with a single unique drain job.
  * Logic:
- * 1. Retrieves the local file path from the task data.
- * 2. Authenticates with the saved Google Account.
- * 3. Uses DriveHelper to upload the file and generate a public link.
- * 4. Retries automatically if the network is unstable.
+ * 1. enqueue() adds the photo to the persisted queue (HFSDatabaseHelper) and schedules the drain.
+ * 2. The drain is unique (UNIQUE_WORK_NAME), expedited, waits for a network, and backs off
+ *    exponentially when uploads fail.
+ * 3. Every pending photo is uploaded with at most MAX_PARALLEL_UPLOADS in flight, through the
+ *    shared DriveServiceProvider client. A retry resumes the persisted Drive upload session
+ *    instead of starting over.
+ * 4. When a photo whose alert SMS said "Pending Upload" lands, the Drive link is texted as a follow-up.
+ * 5. Network errors, 5xx and throttling are retried; a 4xx rejection or a vault file that
+ *    fails authentication is dropped from the queue and recorded as UPLOAD_FAILED.
+ *    Unexpected runtime errors are retried up to MAX_UNEXPECTED_FAILURES times, then dropped the same way.
+ * 6. After a drain that uploaded something, EvidenceRetentionWorker gets a pass (uploaded photos become evictable).
  */
 public class DriveUploadWorker extends Worker {
 
     private static final String TAG = "HFS_DriveWorker";
 
+    public static final String UNIQUE_WORK_NAME = "hfs_evidence_upload_drain";
+    private static final int MAX_PARALLEL_UPLOADS = 2;
+    // Non-I/O failures a file may hit before it is dropped from the queue
+    private static final int MAX_UNEXPECTED_FAILURES = 5;
+    private static final long BACKOFF_SECONDS = 30;
+    private static final int NOTIFICATION_ID = 4102;
+
+    // Progress keys (WorkInfo.getProgress)
+    public static final String PROGRESS_UPLOADED = "uploaded_bytes";
+    public static final String PROGRESS_TOTAL = "total_bytes";
+    public static final String PROGRESS_REMAINING = "remaining_files";
+
     public DriveUploadWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
         super(context, workerParams);
     }
 
+    /**
+     * Queues a photo for upload and makes sure a drain is scheduled.
+     *
+     * @param followUpSms True if the alert SMS went out without a Drive link.
+     */
+    public static void enqueue(Context context, File photo, String appName, String alertType, boolean followUpSms) {
+        HFSDatabaseHelper.getInstance(context).addPendingUpload(
+                new PendingUpload(photo.getAbsolutePath(), appName, alertType, followUpSms));
+        EvidenceIndex.getInstance(context).updateUpload(photo, EvidenceIndex.UPLOAD_QUEUED, null);
+        scheduleDrain(context);
+    }
+
+    /**
+     * Schedules the unique drain job. Safe to call any number of times: while a drain
+     * is running, one more is appended so files queued mid-run are not missed.
+     */
+    public static void scheduleDrain(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(DriveUploadWorker.class)
+                .setConstraints(constraints)
+                .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
     @NonNull
     @Override
     public Result doWork() {
-        // 1. Retrieve the file path passed from LockScreenActivity
-        String filePath = getInputData().getString("file_path");
-        if (filePath == null) {
-            return Result.failure();
+        Context context = getApplicationContext();
+        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
+
+        // 1. Snapshot the queue, dropping files that no longer exist
+        List<PendingUpload> pending = new ArrayList<>();
+        for (PendingUpload upload : db.getPendingUploads()) {
+            if (new File(upload.getFilePath()).exists()) {
+                pending.add(upload);
+            } else {
+                Log.w(TAG, "Dropping queued upload: local file no longer exists.");
+                db.removePendingUpload(upload.getFilePath());
+            }
+        }
+        if (pending.isEmpty()) {
+            return Result.success();
         }
 
-        File photoFile = new File(filePath);
-        if (!photoFile.exists()) {
-            Log.e(TAG, "Upload failed: Local file no longer exists.");
+        // 2. Obtain the last signed-in Google Account
+        if (!db.isDriveEnabled() || GoogleSignIn.getLastSignedInAccount(context) == null) {
+            Log.e(TAG, "Upload skipped: No Google account connected. Queue kept for later.");
             return Result.failure();
         }
 
+        Drive driveService;
+        try {
+            // 3. Reuse the process-wide Drive client (cached token, pooled connection)
+            driveService = DriveServiceProvider.getInstance(context).getDrive();
+        } catch (IOException e) {
+            Log.e(TAG, "Drive client unavailable: " + e.getMessage());
+            return Result.retry();
+        }
+        DriveHelper driveHelper = new DriveHelper(context, driveService);
+
+        // 4. Drain with bounded parallelism
+        AtomicLong remaining = new AtomicLong(pending.size());
+        AtomicInteger uploaded = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_UPLOADS, pending.size()));
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (PendingUpload upload : pending) {
+            results.add(executor.submit(uploadTask(driveHelper, db, upload, remaining, uploaded)));
+        }
+        executor.shutdown();
+
+        boolean retry = false;
         try {
-            // 2. Obtain the last signed-in Google Account
-            GoogleSignInAccount account = GoogleSignIn.getLastSignedInAccount(getApplicationContext());
-            if (account == null) {
-                Log.e(TAG, "Upload failed: No Google account connected.");
-                return Result.failure();
+            for (Future<Boolean> result : results) {
+                retry |= !result.get();
             }
+        } catch (InterruptedException e) {
+            // WorkManager stopped us (constraints lost): in-flight sessions resume next time
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Upload task crashed: " + e.getMessage());
+            retry = true;
+        }
 
-            // 3. Initialize Google Drive Service with the user's credentials
-            GoogleAccountCredential credential = GoogleAccountCredential.usingOAuth2(
-                    getApplicationContext(), 
-                    Collections.singleton(DriveScopes.DRIVE_FILE)
-            );
-            credential.setSelectedAccount(account.getAccount());
-
-            Drive driveService = new Drive.Builder(
-                    AndroidHttp.newCompatibleTransport(),
-                    new GsonFactory(),
-                    credential)
-                    .setApplicationName("HFS Security")
-                    .build();
-
-            // 4. Perform the Upload via DriveHelper
-            DriveHelper driveHelper = new DriveHelper(getApplicationContext(), driveService);
-            
+        // Uploaded evidence is now evictable if storage is over its limits
+        if (uploaded.get() > 0) {
+            EvidenceRetentionWorker.runNow(context);
+        }
+        return retry ? Result.retry() : Result.success();
+    }
+
+    /**
+     * @return Callable yielding true when the file is done (uploaded, or permanently failed).
+     */
+    private Callable<Boolean> uploadTask(DriveHelper driveHelper, HFSDatabaseHelper db,
+                                         PendingUpload upload, AtomicLong remaining, AtomicInteger uploaded) {
+        return () -> {
+            File photoFile = new File(upload.getFilePath());
             Log.i(TAG, "Starting background upload for: " + photoFile.getName());
-            String shareableLink = driveHelper.uploadFileAndGetLink(photoFile);
+            try {
+                // Resumes a persisted session if an earlier attempt was cut off
+                String shareableLink = driveHelper.uploadFileAndGetLink(photoFile, (uploaded, total) ->
+                        setProgressAsync(new Data.Builder()
+                                .putLong(PROGRESS_UPLOADED, uploaded)
+                                .putLong(PROGRESS_TOTAL, total)
+                                .putLong(PROGRESS_REMAINING, remaining.get())
+                                .build()));
+
+                if (shareableLink == null) return false;
 
-            if (shareableLink != null) {
                 Log.i(TAG, "Background upload successful! Link: " + shareableLink);
-                
-                /*
-                 * Optional: Since this happens after the initial SMS (which likely said 'Pending'),
-                 * we could trigger a second SMS here with the actual link if required.
-                 * For now, we ensure the file is safe in the cloud.
-                 */
-                
-                return Result.success();
-            } else {
-                return Result.retry();
+                db.removePendingUpload(upload.getFilePath());
+                EvidenceIndex.getInstance(getApplicationContext())
+                        .updateUpload(photoFile, EvidenceIndex.UPLOAD_DONE, shareableLink);
+                remaining.decrementAndGet();
+                uploaded.incrementAndGet();
+
+                // The first SMS said 'Pending Upload': send the real link now
+                if (upload.needsFollowUpSms()) {
+                    SmsHelper.sendUploadFollowUpSms(getApplicationContext(),
+                            upload.getAppName(), upload.getAlertType(), shareableLink);
+                }
+                return true;
+            } catch (IOException e) {
+                if (isPermanentFailure(e)) {
+                    // Retrying cannot succeed: drop it from the queue instead of backing off forever
+                    Log.e(TAG, "Upload failed permanently, giving up: " + e.getMessage());
+                    db.removePendingUpload(upload.getFilePath());
+                    EvidenceIndex.getInstance(getApplicationContext()).markUploadFailed(photoFile);
+                    remaining.decrementAndGet();
+                    return true;
+                }
+                // Network-related or server-side: keep it queued and let WorkManager back off
+                Log.e(TAG, "Upload failed, will retry: " + e.getMessage());
+                return false;
+            } catch (Exception e) {
+                // Unexpected (client bug, revoked permission...): retry a few times, then give up
+                int attempts = db.recordPendingUploadFailure(upload.getFilePath());
+                if (attempts < MAX_UNEXPECTED_FAILURES) {
+                    Log.e(TAG, "Unexpected upload error (attempt " + attempts + "), will retry: " + e);
+                    return false;
+                }
+                Log.e(TAG, "Unexpected upload error, giving up after " + attempts + " attempts: " + e);
+                db.removePendingUpload(upload.getFilePath());
+                EvidenceIndex.getInstance(getApplicationContext()).markUploadFailed(photoFile);
+                remaining.decrementAndGet();
+                return true;
             }
+        };
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Critical error during background upload: " + e.getMessage());
-            
-            // If the error is network-related, we tell WorkManager to try again later
-            if (e instanceof java.io.IOException) {
-                return Result.retry();
+    /**
+     * Terminal failures: the vault file cannot be decrypted, or Drive rejected the request
+     * with a 4xx that will not change on retry. Timeouts, throttling (408, 429 and the 403
+     * rate-limit reasons), 5xx and plain network errors stay retryable.
+     */
+    static boolean isPermanentFailure(IOException e) {
+        if (e instanceof ChunkedAeadFile.IntegrityException) {
+            return true;
+        }
+        if (!(e instanceof HttpResponseException)) {
+            return false;
+        }
+        int code = ((HttpResponseException) e).getStatusCode();
+        if (code < 400 || code >= 500 || code == 401 || code == 408 || code == 429) {
+            // 401: the credential refreshes its token on the next attempt
+            return false;
+        }
+        if (code == 403 && e instanceof GoogleJsonResponseException) {
+            GoogleJsonError details = ((GoogleJsonResponseException) e).getDetails();
+            if (details != null && details.getErrors() != null) {
+                for (GoogleJsonError.ErrorInfo info : details.getErrors()) {
+                    String reason = info.getReason();
+                    if ("rateLimitExceeded".equals(reason) || "userRateLimitExceeded".equals(reason)) {
+                        return false;
+                    }
+                }
             }
-            
-            return Result.failure();
         }
+        return true;
+    }
+
+    /**
+     * Required for expedited work on Android 11 and below (runs as a short foreground service there).
+     */
+    @NonNull
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        Notification notification = new NotificationCompat.Builder(getApplicationContext(), HFSApplication.CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_shield_active)
+                .setContentTitle("HFS Security")
+                .setContentText("Syncing security evidence")
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setOngoing(true)
+                .build();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return new ForegroundInfo(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        }
+        return new ForegroundInfo(NOTIFICATION_ID, notification);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package com.hfs.security.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.hfs.security.models.IntruderLog;
+import com.hfs.security.utils.EvidenceIndex;
+import com.hfs.security.utils.FileSecureHelper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Background bulk delete for the History screen ("Clear All").
+ * Replaces deleting every file on the main thread followed by a full directory re-scan.
+ * Logic:
+ * 1. enqueue() runs one unique job that deletes everything matching an EvidenceIndex.Filter
+ *    (the History screen's current filter).
+ * 2. Evidence is deleted in batches of BATCH_SIZE, newest first: files first, then the index
+ *    rows in one transaction, so the paged grid refreshes once per batch and shrinks as it goes.
+ * 3. Progress (deleted / total) is published through WorkInfo.getProgress() after every batch.
+ * 4. cancel() stops the job between batches; whatever was already deleted stays deleted.
+ */
+public class EvidenceDeleteWorker extends Worker {
+
+    private static final String TAG = "HFS_DeleteWorker";
+
+    public static final String UNIQUE_WORK_NAME = "hfs_evidence_bulk_delete";
+    private static final int BATCH_SIZE = 200;
+
+    // Input keys (the filter)
+    private static final String KEY_TARGET_APP = "target_app";
+    private static final String KEY_TRIGGER_TYPE = "trigger_type";
+    private static final String KEY_MAX_UPLOAD_STATE = "max_upload_state";
+
+    // Progress keys (WorkInfo.getProgress)
+    public static final String PROGRESS_DELETED = "deleted";
+    public static final String PROGRESS_TOTAL = "total";
+
+    public EvidenceDeleteWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Starts deleting all evidence matching filter, unless a bulk delete is already running.
+     */
+    public static void enqueue(Context context, EvidenceIndex.Filter filter) {
+        Data input = new Data.Builder()
+                .putString(KEY_TARGET_APP, filter.targetApp)
+                .putString(KEY_TRIGGER_TYPE, filter.triggerType)
+                .putInt(KEY_MAX_UPLOAD_STATE, filter.maxUploadState)
+                .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(EvidenceDeleteWorker.class)
+                .setInputData(input)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    public static void cancel(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(UNIQUE_WORK_NAME);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        EvidenceIndex index = EvidenceIndex.getInstance(context);
+
+        EvidenceIndex.Filter filter = new EvidenceIndex.Filter();
+        filter.targetApp = getInputData().getString(KEY_TARGET_APP);
+        filter.triggerType = getInputData().getString(KEY_TRIGGER_TYPE);
+        filter.maxUploadState = getInputData().getInt(KEY_MAX_UPLOAD_STATE, -1);
+
+        long total = index.count(filter);
+        long deleted = 0;
+        publishProgress(deleted, total);
+
+        while (!isStopped()) {
+            // Deleted rows drop out of the filter, so the next batch is always the first page
+            List<IntruderLog> batch = index.queryOlder(filter, null, true, BATCH_SIZE);
+            if (batch.isEmpty()) break;
+
+            List<File> files = new ArrayList<>(batch.size());
+            for (IntruderLog log : batch) {
+                files.add(new File(log.getFilePath()));
+            }
+            FileSecureHelper.deleteCaptures(context, files);
+
+            deleted += batch.size();
+            // Captures taken meanwhile may match the filter too
+            total = Math.max(total, deleted);
+            publishProgress(deleted, total);
+        }
+
+        Log.i(TAG, (isStopped() ? "Bulk delete cancelled after " : "Bulk delete finished: ")
+                + deleted + " of " + total + " captures.");
+        return Result.success();
+    }
+
+    private void publishProgress(long deleted, long total) {
+        setProgressAsync(new Data.Builder()
+                .putLong(PROGRESS_DELETED, deleted)
+                .putLong(PROGRESS_TOTAL, total)
+                .build());
+    }
+}
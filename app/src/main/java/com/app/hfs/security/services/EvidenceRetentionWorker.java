@@ -0,0 +1,123 @@
+package com.hfs.security.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.hfs.security.models.IntruderLog;
+import com.hfs.security.utils.EvidenceIndex;
+import com.hfs.security.utils.FileSecureHelper;
+import com.hfs.security.utils.HFSDatabaseHelper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storage retention for intruder evidence (nothing else ever prunes intruders/).
+ * Logic:
+ * 1. Runs daily (PERIODIC_WORK_NAME, battery not low), after each completed Drive drain,
+ *    and when the limits change in Settings (RUN_NOW_WORK_NAME).
+ * 2. Limits come from HFSDatabaseHelper: a byte budget for captures + previews + thumbnails,
+ *    and a maximum age (0 = no age limit).
+ * 3. Candidates are read from EvidenceIndex oldest first, and only captures whose full photo
+ *    is on Drive (UPLOAD_DONE) are ever returned. Evidence that has not been uploaded is kept
+ *    even if that leaves the budget exceeded.
+ * 4. Work is incremental: BATCH_SIZE captures at a time (files, then index rows in one
+ *    transaction), re-checking usage between batches and stopping as soon as the limits hold
+ *    or WorkManager stops the job.
+ */
+public class EvidenceRetentionWorker extends Worker {
+
+    private static final String TAG = "HFS_RetentionWorker";
+
+    public static final String PERIODIC_WORK_NAME = "hfs_evidence_retention";
+    public static final String RUN_NOW_WORK_NAME = "hfs_evidence_retention_now";
+    private static final int BATCH_SIZE = 100;
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+
+    public EvidenceRetentionWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Schedules the daily pass. Safe to call on every start; an existing schedule is kept.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(EvidenceRetentionWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(PERIODIC_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * One pass now (new limits, or newly uploaded evidence became evictable).
+     * APPEND_OR_REPLACE: a pass that is already running read the old limits, so the new
+     * request runs after it instead of being dropped.
+     */
+    public static void runNow(Context context) {
+        WorkManager.getInstance(context).enqueueUniqueWork(RUN_NOW_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE,
+                new OneTimeWorkRequest.Builder(EvidenceRetentionWorker.class).build());
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
+        EvidenceIndex index = EvidenceIndex.getInstance(context);
+
+        long budgetBytes = db.getEvidenceBudgetMb() * BYTES_PER_MB;
+        int maxAgeDays = db.getEvidenceMaxAgeDays();
+        long cutoff = maxAgeDays > 0
+                ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays)
+                : Long.MIN_VALUE;
+
+        int evicted = 0;
+        long freed = 0;
+        while (!isStopped()) {
+            long overBudget = index.getUsage().bytes - budgetBytes;
+            List<IntruderLog> candidates = index.queryEvictable(BATCH_SIZE);
+
+            // Oldest first: take captures past the age limit, then more while over budget
+            List<File> batch = new ArrayList<>();
+            for (IntruderLog log : candidates) {
+                if (log.getTimestamp() >= cutoff && overBudget <= 0) break;
+                batch.add(new File(log.getFilePath()));
+                overBudget -= log.getFileSize();
+                freed += log.getFileSize();
+            }
+            if (batch.isEmpty()) break;
+
+            FileSecureHelper.deleteCaptures(context, batch);
+            evicted += batch.size();
+            // A partial batch means the limits now hold
+            if (batch.size() < candidates.size()) break;
+        }
+
+        EvidenceIndex.Usage usage = index.getUsage();
+        Log.i(TAG, "Evicted " + evicted + " uploaded captures (" + freed / BYTES_PER_MB + " MB). Now "
+                + usage.bytes / BYTES_PER_MB + " MB of " + budgetBytes / BYTES_PER_MB + " MB.");
+        if (usage.bytes > budgetBytes) {
+            Log.w(TAG, "Still over budget: " + usage.notUploadedCount
+                    + " captures are not on Drive yet and are kept.");
+        }
+        return Result.success();
+    }
+}
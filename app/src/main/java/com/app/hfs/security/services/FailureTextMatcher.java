@@ -0,0 +1,174 @@
+package com.hfs.security.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Precompiled multi-keyword matcher for systemui biometric failure text.
+ * Aho-Corasick automaton over lower-cased chars: every text fragment is scanned once,
+ * whatever the number of keywords, and scanning never allocates (no toString/toLowerCase).
+ *
+ * Logic:
+ * 1. Build: keywords are folded to lower case and inserted into a trie.
+ * 2. Failure links are computed breadth-first; a node is terminal if it or any
+ *    suffix node ends a keyword.
+ * 3. The trie is flattened into arrays (sorted edge chars per node, binary search on scan).
+ *
+ * Immutable after construction, so one instance can be shared across threads.
+ */
+public final class FailureTextMatcher {
+
+    public static final FailureTextMatcher EMPTY = new FailureTextMatcher(new ArrayList<String>());
+
+    // Flattened automaton
+    private final int[] edgeStart;     // per node: first edge index (edgeStart[n + 1] = end)
+    private final char[] edgeChars;    // sorted per node
+    private final int[] edgeTargets;
+    private final int[] failure;
+    private final boolean[] terminal;
+    private final int keywordCount;
+
+    public FailureTextMatcher(Collection<String> keywords) {
+        // --- 1. Trie (build-time structures only) ---
+        List<StringBuilder> nodeChars = new ArrayList<>();
+        List<List<Integer>> nodeTargets = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        nodeChars.add(new StringBuilder());
+        nodeTargets.add(new ArrayList<Integer>());
+        ends.add(false);
+
+        int count = 0;
+        for (String keyword : keywords) {
+            if (keyword == null) continue;
+            String folded = keyword.trim();
+            if (folded.isEmpty()) continue;
+            count++;
+
+            int node = 0;
+            for (int i = 0; i < folded.length(); i++) {
+                char c = Character.toLowerCase(folded.charAt(i));
+                int idx = nodeChars.get(node).indexOf(String.valueOf(c));
+                if (idx >= 0) {
+                    node = nodeTargets.get(node).get(idx);
+                } else {
+                    int created = nodeChars.size();
+                    nodeChars.add(new StringBuilder());
+                    nodeTargets.add(new ArrayList<Integer>());
+                    ends.add(false);
+                    nodeChars.get(node).append(c);
+                    nodeTargets.get(node).add(created);
+                    node = created;
+                }
+            }
+            ends.set(node, true);
+        }
+        keywordCount = count;
+
+        // --- 2. Flatten with sorted edges ---
+        int nodes = nodeChars.size();
+        edgeStart = new int[nodes + 1];
+        int edges = 0;
+        for (int n = 0; n < nodes; n++) {
+            edgeStart[n] = edges;
+            edges += nodeChars.get(n).length();
+        }
+        edgeStart[nodes] = edges;
+        edgeChars = new char[edges];
+        edgeTargets = new int[edges];
+
+        for (int n = 0; n < nodes; n++) {
+            StringBuilder chars = nodeChars.get(n);
+            Integer[] order = new Integer[chars.length()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Character.compare(chars.charAt(a), chars.charAt(b)));
+            for (int i = 0; i < order.length; i++) {
+                edgeChars[edgeStart[n] + i] = chars.charAt(order[i]);
+                edgeTargets[edgeStart[n] + i] = nodeTargets.get(n).get(order[i]);
+            }
+        }
+
+        // --- 3. Failure links (BFS) ---
+        failure = new int[nodes];
+        terminal = new boolean[nodes];
+        for (int n = 0; n < nodes; n++) terminal[n] = ends.get(n);
+
+        int[] queue = new int[nodes];
+        int head = 0;
+        int tail = 0;
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            failure[edgeTargets[e]] = 0;
+            queue[tail++] = edgeTargets[e];
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                char c = edgeChars[e];
+                int child = edgeTargets[e];
+                int f = failure[node];
+                int next;
+                while ((next = step(f, c)) < 0 && f != 0) {
+                    f = failure[f];
+                }
+                failure[child] = next >= 0 ? next : 0;
+                terminal[child] |= terminal[failure[child]];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    public int getKeywordCount() {
+        return keywordCount;
+    }
+
+    /**
+     * @return true if the text contains any keyword (case-insensitive).
+     */
+    public boolean matches(CharSequence text) {
+        if (text == null || keywordCount == 0) return false;
+        int node = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = step(node, c)) < 0 && node != 0) {
+                node = failure[node];
+            }
+            node = next >= 0 ? next : 0;
+            if (terminal[node]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Scans every fragment of an Accessibility event text list.
+     */
+    public boolean matchesAny(List<CharSequence> texts) {
+        if (texts == null) return false;
+        for (int i = 0, size = texts.size(); i < size; i++) {
+            if (matches(texts.get(i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Goto function: binary search over the node's sorted edge chars.
+     * @return target node, or -1 if there is no edge.
+     */
+    private int step(int node, char c) {
+        int lo = edgeStart[node];
+        int hi = edgeStart[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = edgeChars[mid];
+            if (m < c) {
+                lo = mid + 1;
+            } else if (m > c) {
+                hi = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+}
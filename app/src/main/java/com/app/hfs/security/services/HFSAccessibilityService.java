@@ -1,21 +1,33 @@
 package com.hfs.security.services;
 
 import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
+import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
 
+import com.hfs.security.diagnostics.EventTraceFormat;
+import com.hfs.security.diagnostics.EventTraceRecorder;
+import com.hfs.security.diagnostics.LockLatencyTracker;
 import com.hfs.security.receivers.AirplaneModeReceiver;
 import com.hfs.security.ui.LockScreenActivity;
 import com.hfs.security.ui.SystemCaptureActivity;
+import com.hfs.security.utils.FailureKeywordPacks;
 import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.PackageMetadataCache;
+import com.hfs.security.utils.ProtectedPackageIndex;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 /**
@@ -27,61 +39,233 @@ import java.util.Set;
  * 2. Predictive Launch: Detects view clicks for speed (Zero Flash).
  * 3. Pre-Emptive Ambush: Monitors screen wake events for system lock protection.
  * 4. Airplane Mode Bypass: Dynamically registers the receiver to beat Oppo background blocks.
+ * 5. Allocation-Free Lookup: Reads the protected list from an in-memory index pushed by HFSDatabaseHelper.
+ * 6. Thin Adapter: All lock decisions are delegated to the pure-Java LockDecisionEngine.
+ * 7. Event Trace: Optionally records every event for offline replay (EventTraceReplayer).
+ * 8. Narrow Subscription: Rebuilds AccessibilityServiceInfo at runtime so the system only
+ *    wakes us for protected apps, our own UI, the launcher and (if enabled) systemui.
+ * 9. Instant Overlay: Optionally covers apps with a pre-attached LockOverlayController window
+ *    instead of launching LockScreenActivity (Settings > Instant Overlay Lock). The screen-on
+ *    ambush and theft mode always use LockScreenActivity.
+ * 10. No IPC On Trigger: App labels, launchers and keyboards come from PackageMetadataCache,
+ *     refreshed in the background on package changes and screen on/off.
+ * 11. Locale-Aware Failure Text: systemui text is scanned by a precompiled FailureTextMatcher
+ *     built from per-locale and per-OEM keyword packs; an identical text burst is scanned and
+ *     reported once.
+ * 12. Keyguard View IDs: systemui clicks only count as PIN attempts when the source view is a
+ *     keyguard PIN/pattern/password widget (KeyguardInputDetector), not a notification tap.
+ *     Pattern drawing (LockPatternView content changes) and password typing (entry field text
+ *     changes) count too, as neither sends a click.
  */
-public class HFSAccessibilityService extends AccessibilityService {
+public class HFSAccessibilityService extends AccessibilityService
+        implements HFSDatabaseHelper.OnProtectedAppsChangedListener,
+        HFSDatabaseHelper.OnPhoneProtectionChangedListener,
+        PackageMetadataCache.OnEnvironmentChangedListener {
 
     private static final String TAG = "HFS_Accessibility";
+
+    // Pseudo target for the screen-on ambush (not a real package)
+    private static final String SYSTEM_LOCK_TARGET = "System Phone Lock";
+
     private HFSDatabaseHelper db;
     private ScreenReceiver screenReceiver;
     private AirplaneModeReceiver airplaneModeReceiver;
+    private PackageChangeReceiver packageChangeReceiver;
+    private PackageMetadataCache packageCache;
     
-    // Stores the phone's default home screen package name for the failsafe
+    // Pure-Java decision state machine shared with LockScreenActivity.
+    // All session flags (lock active, unlocked package, grace window, PIN counter) live here.
+    private static final LockDecisionEngine lockEngine = new LockDecisionEngine();
+
+    // Diagnostics recorder (no-op unless enabled in Settings)
+    private static EventTraceRecorder traceRecorder;
+
+    // Default home screen, kept for the runtime subscription filter
     private String launcherPackage = "";
 
-    // --- SESSION CONTROL FLAGS ---
-    public static boolean isLockActive = false;
-    private static String unlockedPackage = "";
-    private static long lastUnlockTimestamp = 0;
-    private static final long SESSION_GRACE_MS = 10000; // 10 Seconds
+    // Biometric failure keywords (rebuilt on locale change) and burst coalescing state
+    private static final long FAILURE_TEXT_COALESCE_MS = 1000;
+    private FailureTextMatcher failureMatcher = FailureTextMatcher.EMPTY;
+    private int lastFailureTextHash = 0;
+    private long lastFailureTextMs = 0;
 
-    // --- SYSTEM LOCK TRACKERS ---
-    private int systemPinAttemptCount = 0;
-    private long lastSystemAlertTime = 0;
-    private static final long SYSTEM_COOLDOWN_MS = 5000; 
+    // Keyguard widget classification by view ID (per OEM signatures)
+    private final KeyguardInputDetector keyguardDetector = new KeyguardInputDetector(Build.MANUFACTURER);
+
+    // Pre-attached lock window (Instant Overlay mode). Main thread only.
+    private static LockOverlayController overlayController;
+
+    // Event types per mode. App Lock needs window switches and predictive clicks;
+    // System Lock additionally needs content changes to read biometric failure text.
+    private static final int APP_LOCK_EVENT_TYPES = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_CLICKED;
+    // Text changes: password typing on the IME sends no systemui click
+    private static final int SYSTEM_LOCK_EVENT_TYPES = AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED;
 
     /**
      * Signals that the owner has successfully bypassed the lock (Biometric/PIN).
      * This method is called from LockScreenActivity.
      */
     public static void unlockSession(String packageName) {
-        unlockedPackage = packageName;
-        lastUnlockTimestamp = System.currentTimeMillis();
-        Log.d(TAG, "Owner Verified. Grace Period active for: " + packageName);
+        unlockSession(packageName, HFSDatabaseHelper.DEFAULT_SESSION_GRACE_MS);
+    }
+
+    /**
+     * Same as above with a per-app grace period (HFSDatabaseHelper.getSessionGraceMs).
+     * Other apps unlocked earlier keep their own sessions.
+     */
+    public static void unlockSession(String packageName, long graceMs) {
+        lockEngine.unlockSession(packageName, System.currentTimeMillis(), graceMs);
+        // The grace goes into the trace so a replay expires the session when the device did
+        recordMark(EventTraceFormat.TYPE_MARK_UNLOCK, packageName, (int) Math.min(graceMs, Integer.MAX_VALUE));
+        Log.d(TAG, "Owner Verified. Grace Period (" + graceMs + "ms) active for: " + packageName);
+    }
+
+    /**
+     * Called by LockScreenActivity to report whether the lock overlay is on screen.
+     */
+    public static void setLockActive(boolean active) {
+        lockEngine.setLockActive(active);
+        recordMark(active ? EventTraceFormat.TYPE_MARK_LOCK_ACTIVE : EventTraceFormat.TYPE_MARK_LOCK_INACTIVE, null, 0);
+    }
+
+    private static void recordMark(int markType, String packageName, int value) {
+        EventTraceRecorder recorder = traceRecorder;
+        if (recorder != null && recorder.isEnabled()) {
+            recorder.mark(markType, packageName, value, SystemClock.elapsedRealtimeNanos());
+        }
+    }
+
+    public static boolean isLockActive() {
+        return lockEngine.isLockActive();
     }
 
     @Override
     public void onServiceConnected() {
         super.onServiceConnected();
         db = HFSDatabaseHelper.getInstance(this);
+
+        // Subscribe to protected list changes instead of re-reading prefs per event
+        lockEngine.setSelfPackage(getPackageName());
+        lockEngine.setProtectedIndex(db.getProtectedIndex());
+        db.registerProtectedAppsListener(this);
+        db.registerPhoneProtectionListener(this);
         
-        // Find out what the phone's home screen package is
+        // Find out what the phone's home screen package is (one-time sync lookup so the
+        // failsafe works before the cache warm-up finishes)
         launcherPackage = getLauncherPackageName();
+        lockEngine.setLauncherPackage(launcherPackage);
+
+        // Labels, launchers and keyboards are resolved off the main thread from here on
+        packageCache = PackageMetadataCache.getInstance(this);
+        packageCache.registerListener(this);
+        packageCache.warmUp(db.getProtectedPackages());
+
+        // Compile the failure keyword packs for the current language and OEM
+        failureMatcher = FailureKeywordPacks.load(this, Locale.getDefault());
+
+        // Narrow the static XML subscription down to what the current settings need
+        applyEventSubscription();
+
+        traceRecorder = EventTraceRecorder.getInstance(this);
+        traceRecorder.setEnabled(db.isEventTraceEnabled());
+
+        // Pay the inflation cost now, not on the first trigger
+        if (db.isLockOverlayEnabled()) {
+            ensureOverlay();
+        }
         
         // REGISTER SCREEN RECEIVER (The Ambush Trigger)
         screenReceiver = new ScreenReceiver();
         IntentFilter filter = new IntentFilter();
         filter.addAction(Intent.ACTION_SCREEN_ON);
         filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
         registerReceiver(screenReceiver, filter);
         
         // REGISTER AIRPLANE MODE RECEIVER DYNAMICALLY (Oppo Background Block Fix)
         airplaneModeReceiver = new AirplaneModeReceiver();
         IntentFilter airplaneFilter = new IntentFilter(Intent.ACTION_AIRPLANE_MODE_CHANGED);
         registerReceiver(airplaneModeReceiver, airplaneFilter);
+
+        // REGISTER PACKAGE CHANGE RECEIVER (Label / Launcher / Keyboard cache invalidation)
+        packageChangeReceiver = new PackageChangeReceiver();
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        registerReceiver(packageChangeReceiver, packageFilter);
         
         Log.d(TAG, "HFS Accessibility Service Connected. Screen & Airplane Monitors Active.");
     }
 
+    @Override
+    public void onProtectedAppsChanged(ProtectedPackageIndex index) {
+        lockEngine.setProtectedIndex(index);
+        if (packageCache != null) {
+            packageCache.warmUp(index.asSet());
+        }
+        applyEventSubscription();
+        Log.d(TAG, "Protected app index refreshed: " + index.size() + " packages.");
+    }
+
+    @Override
+    public void onPhoneProtectionChanged(boolean enabled) {
+        applyEventSubscription();
+        Log.d(TAG, "System Phone Lock protection " + (enabled ? "enabled" : "disabled") + ".");
+    }
+
+    @Override
+    public void onEnvironmentChanged(PackageMetadataCache cache) {
+        if (!cache.getDefaultLauncher().isEmpty()) {
+            launcherPackage = cache.getDefaultLauncher();
+            lockEngine.setLauncherPackage(launcherPackage);
+        }
+        lockEngine.setLauncherPackages(cache.getLauncherPackages());
+        lockEngine.setImePackages(cache.getImePackages());
+        applyEventSubscription();
+        Log.d(TAG, "Launcher/keyboard set refreshed. Default home: " + launcherPackage);
+    }
+
+    /**
+     * Rebuilds AccessibilityServiceInfo so the framework filters events before they
+     * cross the binder. Only these packages can wake the service:
+     * 1. Protected apps (App Lock).
+     * 2. HFS itself (Self-Protection / lock flag).
+     * 3. The launchers (Task Manager failsafe).
+     * 4. systemui, only while System Phone Lock protection is on.
+     */
+    private void applyEventSubscription() {
+        AccessibilityServiceInfo info = getServiceInfo();
+        if (info == null || db == null) return;
+
+        boolean phoneProtection = db.isPhoneProtectionEnabled();
+
+        Set<String> packages = new HashSet<>(db.getProtectedPackages());
+        packages.add(getPackageName());
+        if (!launcherPackage.isEmpty()) {
+            packages.add(launcherPackage);
+        }
+        if (packageCache != null) {
+            packages.addAll(packageCache.getLauncherPackages());
+        }
+
+        int eventTypes = APP_LOCK_EVENT_TYPES;
+        if (phoneProtection) {
+            packages.add(LockDecisionEngine.SYSTEM_UI_PACKAGE);
+            eventTypes |= SYSTEM_LOCK_EVENT_TYPES;
+        }
+
+        info.packageNames = packages.toArray(new String[0]);
+        info.eventTypes = eventTypes;
+        setServiceInfo(info);
+
+        Log.d(TAG, "Event subscription narrowed to " + packages.size() + " packages.");
+    }
+
     /**
      * Helper to reliably identify the default Home Screen (Launcher) of the device.
      */
@@ -98,131 +282,142 @@ public class HFSAccessibilityService extends AccessibilityService {
 
     /**
      * Inner Class: Listens for Power Button / Wake events to cover System Lock.
+     * Also rebuilds the failure keyword matcher when the system language changes.
      */
     private class ScreenReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
-            if (intent.getAction() != null && intent.getAction().equals(Intent.ACTION_SCREEN_ON)) {
+            if (Intent.ACTION_LOCALE_CHANGED.equals(intent.getAction())) {
+                failureMatcher = FailureKeywordPacks.load(HFSAccessibilityService.this, Locale.getDefault());
+                lastFailureTextMs = 0;
+            } else if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction())) {
+                // Sweep sessions that expired while the app was idle
+                lockEngine.getSessions().purgeExpired(System.currentTimeMillis());
+                // No broadcast exists for a default-home change; re-check while the screen is off
+                packageCache.refreshEnvironment();
+            } else if (intent.getAction() != null && intent.getAction().equals(Intent.ACTION_SCREEN_ON)) {
                 // Check if the user has enabled "Phone Protection" (Now Defaults to TRUE)
                 if (db.isPhoneProtectionEnabled()) {
                     Log.i(TAG, "Screen Woke Up: Triggering Pre-Emptive HFS Lock.");
-                    triggerLockOverlay("System Phone Lock", false);
+                    triggerLockOverlay(SYSTEM_LOCK_TARGET, false, SystemClock.elapsedRealtimeNanos());
                 }
             }
         }
     }
 
+    /**
+     * Thin adapter: unpacks the framework event and lets LockDecisionEngine decide.
+     */
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
         if (event.getPackageName() == null) return;
+        long receivedNanos = SystemClock.elapsedRealtimeNanos();
         String currentPkg = event.getPackageName().toString();
+        String currentClass = event.getClassName() != null ? event.getClassName().toString() : "";
         int eventType = event.getEventType();
+        long now = System.currentTimeMillis();
 
-        // --- GHOST LOCK FIX: STRICT IGNORE LIST ---
-        // Prevents lock screen from popping up when typing or using system toggles
-        if (currentPkg.contains("inputmethod") || 
-            currentPkg.contains("keyboard") || 
-            currentPkg.equals("com.android.systemui") && !event.getText().isEmpty()) { // Allow SystemUI for text reading only
-            // Do not return yet, we might need to read text for System Lock, but don't treat it as an App launch
-        }
-        
-        // TASK MANAGER FAILSAFE:
-        // If the user navigates to the Home Screen, instantly wipe the lock flag.
-        if (currentPkg.equals(launcherPackage) || currentPkg.toLowerCase().contains("launcher")) {
-            isLockActive = false;
-        }
-
-        // ==========================================================
-        // PART 1: NORMAL HFS LOCK LOGIC (For Protected Apps)
-        // FIXED: Added VIEW_CLICKED and VIEW_FOCUSED to stop the "Flash"
-        // ==========================================================
-        if (eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED || 
-            eventType == AccessibilityEvent.TYPE_VIEW_CLICKED || 
-            eventType == AccessibilityEvent.TYPE_VIEW_FOCUSED) {
-            
-            // Skip checks if we are just interacting with the keyboard or system UI volume
-            if (currentPkg.contains("inputmethod") || currentPkg.contains("keyboard") || currentPkg.contains("volume")) {
-                return;
-            }
+        int action = lockEngine.onEvent(currentPkg, currentClass, eventType, now);
 
-            // Reset PIN counter if we left the lock screen
-            if (!currentPkg.equals("com.android.systemui")) {
-                systemPinAttemptCount = 0;
-            }
-
-            // 1. SELF-PROTECTION: Verify if we are already showing the lock screen
-            if (currentPkg.equals(getPackageName())) {
-                isLockActive = true;
-                return;
+        // Biometric failure text (Fingerprint/Face) is read here because it needs the framework text list
+        boolean failureText = false;
+        int textHash = 0;
+        boolean textHashed = false;
+        if (eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+                && currentPkg.equals(LockDecisionEngine.SYSTEM_UI_PACKAGE)) {
+            textHash = hashEventText(event);
+            textHashed = true;
+            failureText = containsFailureText(event, textHash, now);
+        }
+        int traceFlags = 0;
+        if (failureText) {
+            traceFlags |= EventTraceFormat.FLAG_FAILURE_TEXT;
+            // "Wrong PIN" in the bouncer message area is a PIN failure; anything else is biometric
+            if (keyguardDetector.classify(getSourceViewId(event)) == KeyguardInputDetector.KIND_MESSAGE_AREA) {
+                traceFlags |= EventTraceFormat.FLAG_KEYGUARD_MESSAGE;
+                action |= lockEngine.onKeyguardFailureText(now);
+            } else {
+                action |= lockEngine.onSystemFailureText(now);
             }
+        } else if (currentPkg.equals(LockDecisionEngine.SYSTEM_UI_PACKAGE) && isKeyguardInputCandidate(eventType, currentClass)
+                && lockEngine.onKeyguardWidgetEvent(keyguardDetector.classify(getSourceViewId(event)), eventType, now)) {
+            traceFlags |= EventTraceFormat.FLAG_KEYGUARD_INPUT;
+            // A new entry can bring back identical "Wrong PIN" text: that one is a new failure
+            lastFailureTextMs = 0;
+        }
 
-            // 2. TASK MANAGER BYPASS FIX
-            if (isLockActive && !currentPkg.equals(unlockedPackage)) {
-                // Force re-verification
-            } else if (isLockActive) {
-                return;
-            }
+        EventTraceRecorder recorder = traceRecorder;
+        if (recorder != null && recorder.isEnabled()) {
+            recorder.record(currentPkg, currentClass, eventType, traceFlags,
+                    textHashed ? textHash : hashEventText(event), receivedNanos);
+        }
 
-            // 3. RE-ARM LOGIC: If user switched apps, clear the session
-            if (!currentPkg.equals(unlockedPackage)) {
-                if (!unlockedPackage.isEmpty()) {
-                    Log.d(TAG, "User switched apps. Security Re-armed.");
-                    unlockedPackage = "";
-                }
-            }
+        if ((action & LockDecisionEngine.ACTION_LOCK) != 0) {
+            Log.i(TAG, "Security Breach Detected: Immediate Lock for " + currentPkg);
+            triggerLockOverlay(currentPkg, false, receivedNanos);
+        } else if (overlayController != null && overlayController.isShowing() && !lockEngine.isLockActive()) {
+            // Launcher failsafe cleared the lock (Home / Recents): take the overlay down too
+            overlayController.hide();
+        }
+        if ((action & LockDecisionEngine.ACTION_SYSTEM_CAPTURE) != 0) {
+            triggerInvisibleSystemCamera();
+        }
+    }
 
-            // 4. PROTECTION LOGIC (Strict Check)
-            Set<String> protectedApps = db.getProtectedPackages();
-            if (protectedApps.contains(currentPkg)) {
-                
-                boolean isSessionValid = currentPkg.equals(unlockedPackage) && 
-                        (System.currentTimeMillis() - lastUnlockTimestamp < SESSION_GRACE_MS);
+    /**
+     * systemui events that may be keyguard input, checked before the source lookup (IPC):
+     * clicks (PIN keys), text changes (password typed on the IME) and content changes from
+     * LockPatternView (pattern drawing). Other content changes (clock, notifications) are skipped.
+     */
+    private static boolean isKeyguardInputCandidate(int eventType, String className) {
+        return eventType == AccessibilityEvent.TYPE_VIEW_CLICKED
+                || eventType == AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED
+                || (eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED && className.endsWith("LockPatternView"));
+    }
 
-                if (!isSessionValid) {
-                    Log.i(TAG, "Security Breach Detected: Immediate Lock for " + currentPkg);
-                    triggerLockOverlay(currentPkg, false);
-                }
-            }
+    /**
+     * Resource name of the event source ("com.android.systemui:id/key5"), or null.
+     * Only called for systemui keyguard input candidates and matched failure text, never per app event.
+     */
+    private String getSourceViewId(AccessibilityEvent event) {
+        AccessibilityNodeInfo source = event.getSource();
+        if (source == null) return null;
+        try {
+            return source.getViewIdResourceName();
+        } finally {
+            source.recycle();
         }
+    }
 
-        // ==========================================================
-        // PART 2: FALLBACK SYSTEM WATCHER (Biometric Text / PIN Clicks)
-        // ==========================================================
-        if (currentPkg.equals("com.android.systemui")) {
-            long currentTime = System.currentTimeMillis();
-
-            // A. WATCH FOR TEXT ERRORS (Fingerprint/Face)
-            if (eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
-                if (event.getText() != null) {
-                    for (CharSequence text : event.getText()) {
-                        String screenText = text.toString().toLowerCase();
-                        if (screenText.contains("not recognized") || 
-                            screenText.contains("mismatch") || 
-                            screenText.contains("incorrect") ||
-                            screenText.contains("try again")) {
-                            
-                            if (currentTime - lastSystemAlertTime > SYSTEM_COOLDOWN_MS) {
-                                triggerInvisibleSystemCamera();
-                                lastSystemAlertTime = currentTime;
-                                systemPinAttemptCount = 0;
-                            }
-                        }
-                    }
-                }
-            }
+    /**
+     * Chains the FNV hash over every text fragment without building strings.
+     */
+    private int hashEventText(AccessibilityEvent event) {
+        int hash = EventTraceFormat.textHashSeed();
+        List<CharSequence> texts = event.getText();
+        if (texts == null) return hash;
+        for (int i = 0, size = texts.size(); i < size; i++) {
+            hash = EventTraceFormat.hashText(hash, texts.get(i));
+        }
+        return hash;
+    }
 
-            // B. WATCH FOR PIN CLICKS
-            if (eventType == AccessibilityEvent.TYPE_VIEW_CLICKED) {
-                systemPinAttemptCount++;
-                if (systemPinAttemptCount >= 2) {
-                    if (currentTime - lastSystemAlertTime > SYSTEM_COOLDOWN_MS) {
-                        triggerInvisibleSystemCamera();
-                        lastSystemAlertTime = currentTime;
-                    }
-                    systemPinAttemptCount = 0; 
-                }
-            }
+    /**
+     * Scans systemui text for biometric mismatch keywords.
+     * systemui re-posts the same failure text many times while it animates or stays on screen.
+     * An identical text hash within FAILURE_TEXT_COALESCE_MS of the previous post is the same
+     * message, already handled: it returns false and slides the window, so a message that
+     * stays up is reported to the engine once, not once per re-post or once per cooldown.
+     * Keyguard input ends the window (see onAccessibilityEvent).
+     */
+    private boolean containsFailureText(AccessibilityEvent event, int textHash, long nowMs) {
+        if (textHash == lastFailureTextHash && nowMs - lastFailureTextMs < FAILURE_TEXT_COALESCE_MS) {
+            lastFailureTextMs = nowMs;
+            return false;
         }
+        lastFailureTextHash = textHash;
+        lastFailureTextMs = nowMs;
+        return failureMatcher.matchesAny(event.getText());
     }
 
     @Override
@@ -234,13 +429,27 @@ public class HFSAccessibilityService extends AccessibilityService {
      * Launches the visible Lock Screen Overlay.
      * Added NO_ANIMATION to prevent "Flash".
      * @param theftMode If true, triggers Siren/Red Screen.
+     * @param eventNanos elapsedRealtimeNanos of the triggering event, forwarded for latency measurement.
      */
-    private void triggerLockOverlay(String packageName, boolean theftMode) {
+    private void triggerLockOverlay(String packageName, boolean theftMode, long eventNanos) {
         String appName = getAppNameFromPackage(packageName);
+
+        // Instant mode: show the pre-attached window in place, for real protected packages only.
+        // Theft mode needs the siren Activity, and the screen-on ambush always uses LockScreenActivity
+        // (the overlay would open an unlock session for the pseudo package).
+        if (!theftMode && !SYSTEM_LOCK_TARGET.equals(packageName)
+                && db.isLockOverlayEnabled() && ensureOverlay()
+                && overlayController.show(packageName, appName, eventNanos)) {
+            lockEngine.setLockActive(true);
+            LockLatencyTracker.getInstance(this).record(packageName, LockLatencyTracker.STAGE_START_ACTIVITY,
+                    eventNanos, SystemClock.elapsedRealtimeNanos());
+            return;
+        }
         
         Intent lockIntent = new Intent(this, LockScreenActivity.class);
         lockIntent.putExtra("TARGET_APP_PACKAGE", packageName);
         lockIntent.putExtra("TARGET_APP_NAME", appName);
+        lockIntent.putExtra(LockLatencyTracker.EXTRA_EVENT_NANOS, eventNanos);
         
         if (theftMode) {
             lockIntent.putExtra("EXTRA_MODE", "THEFT_MODE");
@@ -254,12 +463,43 @@ public class HFSAccessibilityService extends AccessibilityService {
         
         try {
             startActivity(lockIntent);
-            isLockActive = true;
+            lockEngine.setLockActive(true);
+            LockLatencyTracker.getInstance(this).record(packageName, LockLatencyTracker.STAGE_START_ACTIVITY,
+                    eventNanos, SystemClock.elapsedRealtimeNanos());
         } catch (Exception e) {
+            lockEngine.setLockActive(false);
             Log.e(TAG, "Failed to launch lock overlay: " + e.getMessage());
         }
     }
 
+    /**
+     * Creates and attaches the overlay window on first use.
+     * @return true if the overlay is ready to show.
+     */
+    private boolean ensureOverlay() {
+        if (overlayController == null) {
+            try {
+                overlayController = new LockOverlayController(this);
+            } catch (Exception e) {
+                Log.e(TAG, "Overlay inflation failed: " + e.getMessage());
+                return false;
+            }
+        }
+        overlayController.attach();
+        return overlayController.isAttached();
+    }
+
+    /**
+     * Called by LockScreenActivity once it has drawn. The Activity now covers the app,
+     * so the overlay (which sits above all Activities) can step aside for the biometric prompt.
+     */
+    public static void onLockActivityShown() {
+        LockOverlayController controller = overlayController;
+        if (controller != null) {
+            controller.hide();
+        }
+    }
+
     /**
      * Launches the Invisible Camera Activity (Fallback for System Lock).
      */
@@ -276,21 +516,47 @@ public class HFSAccessibilityService extends AccessibilityService {
     }
 
     private String getAppNameFromPackage(String packageName) {
-        if (packageName.equals("System Phone Lock")) {
-            return "System Phone Lock";
+        if (packageName.equals(SYSTEM_LOCK_TARGET)) {
+            return SYSTEM_LOCK_TARGET;
         }
-        
-        PackageManager pm = getPackageManager();
-        try {
-            ApplicationInfo ai = pm.getApplicationInfo(packageName, 0);
-            return (String) pm.getApplicationLabel(ai);
-        } catch (PackageManager.NameNotFoundException e) {
-            return packageName; 
+        // Cached label; never an IPC on the trigger path
+        return packageCache != null ? packageCache.getLabel(packageName) : packageName;
+    }
+
+    /**
+     * Inner Class: Keeps PackageMetadataCache in sync with installs, updates and removals.
+     */
+    private class PackageChangeReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (intent.getData() == null || packageCache == null) return;
+            packageCache.invalidate(intent.getData().getSchemeSpecificPart());
         }
     }
 
     @Override
     public boolean onUnbind(Intent intent) {
+        if (db != null) {
+            db.unregisterProtectedAppsListener(this);
+            db.unregisterPhoneProtectionListener(this);
+        }
+        if (traceRecorder != null) {
+            traceRecorder.flush();
+        }
+        if (packageCache != null) {
+            packageCache.unregisterListener(this);
+        }
+        if (packageChangeReceiver != null) {
+            try {
+                unregisterReceiver(packageChangeReceiver);
+            } catch (Exception e) {
+                Log.e(TAG, "PackageChangeReceiver already unregistered");
+            }
+        }
+        if (overlayController != null) {
+            overlayController.detach();
+            overlayController = null;
+        }
         if (screenReceiver != null) {
             try {
                 unregisterReceiver(screenReceiver);
@@ -0,0 +1,360 @@
+package com.hfs.security.services;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.hfs.security.utils.DriveHelper;
+import com.hfs.security.utils.DriveServiceProvider;
+import com.hfs.security.utils.EvidenceIndex;
+import com.hfs.security.utils.FileSecureHelper;
+import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.LocationHelper;
+import com.hfs.security.utils.NetworkProfile;
+import com.hfs.security.utils.SmsHelper;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent intruder alert pipeline shared by LockScreenActivity and SystemCaptureActivity.
+ * Replaces the old strict sequence (GPS -> Drive client -> upload -> permissions -> SMS),
+ * where a cold GPS fix could hold the SMS back for tens of seconds.
+ *
+ * Stages (all started at once, each with its own deadline):
+ * 1. Capture: completed by the caller's camera analyzer (onCaptureReady). Deadline: CAPTURE_DEADLINE_MS.
+ *    A photo arriving after the deadline is still indexed and queued (onLateCapture).
+ * 2. Location: LocationHelper. Deadline: LOCATION_DEADLINE_MS ("GPS signal pending" in the SMS).
+ * 3. Upload: starts the moment the capture lands. Hard deadline: UPLOAD_DEADLINE_MS, after which
+ *    it is cancelled and handed to DriveUploadWorker. On metered/roaming networks (NetworkProfile)
+ *    the capture-time preview is uploaded here and the full-res original is queued behind it.
+ *    Whatever was not uploaded is queued once, from handOverToWorker (failure, deadline or offline).
+ * 4. SMS: sent as soon as the location is known and the Drive link is ready, or at
+ *    SMS_LINK_DEADLINE_MS with "Pending Upload". The upload keeps running after that, and
+ *    its link follows in a second SMS (here, or from the DriveUploadWorker queue drain).
+ *    Whether the link still has to follow is decided with CAS on smsLinkState, so an upload
+ *    that lands while the first SMS is being sent is never lost.
+ *
+ * Each run is one incident (incidentId): the capture, its trigger, target app, location and
+ * upload state are recorded in EvidenceIndex as they become known.
+ *
+ * cancel() (owner authenticated mid-pipeline) stops every stage and suppresses the SMS.
+ * Listener callbacks are delivered on the main thread.
+ */
+public class IntruderAlertPipeline {
+
+    private static final String TAG = "HFS_AlertPipeline";
+
+    public static final long CAPTURE_DEADLINE_MS = 5000;
+    public static final long LOCATION_DEADLINE_MS = 8000;
+    public static final long SMS_LINK_DEADLINE_MS = 12000;
+    public static final long UPLOAD_DEADLINE_MS = 45000;
+
+    /**
+     * Progress callbacks (main thread).
+     */
+    public interface Listener {
+        void onAlertSent(boolean withDriveLink);
+        void onFinished();
+    }
+
+    private final Context context;
+    private final HFSDatabaseHelper db;
+    private final String appName;
+    private final String alertType;
+    private final String incidentId = UUID.randomUUID().toString();
+    private final EvidenceIndex evidenceIndex;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService uploadExecutor = Executors.newSingleThreadExecutor();
+
+    private final CompletableFuture<File> capture = new CompletableFuture<>();
+    private final CompletableFuture<String> location = new CompletableFuture<>();
+    private final CompletableFuture<String> upload = new CompletableFuture<>();
+    private final CompletableFuture<String> linkForSms = new CompletableFuture<>();
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    // Link-vs-no-link handshake between sendSms (scheduler) and the upload callback
+    private static final int SMS_PENDING = 0;
+    private static final int SMS_SENDING_WITHOUT_LINK = 1;
+    private static final int SMS_SENT_WITHOUT_LINK = 2;
+    private static final int SMS_LINK_DELIVERED = 3;
+    private final AtomicInteger smsLinkState = new AtomicInteger(SMS_PENDING);
+    private volatile String uploadedLink;
+
+    private volatile Future<?> uploadTask;
+    // Tiers of the running upload, for the hand-over to DriveUploadWorker
+    private volatile File inFlightTier;
+    private volatile File followingTier;
+    private final AtomicBoolean handedOver = new AtomicBoolean(false);
+    private volatile Listener listener;
+
+    public IntruderAlertPipeline(Context context, String appName, String alertType) {
+        this.context = context.getApplicationContext();
+        this.db = HFSDatabaseHelper.getInstance(context);
+        this.appName = appName;
+        this.alertType = alertType;
+        this.evidenceIndex = EvidenceIndex.getInstance(context);
+    }
+
+    /**
+     * Starts all stages. Call once.
+     */
+    public void start(Listener listener) {
+        if (!started.compareAndSet(false, true)) return;
+        this.listener = listener;
+
+        // --- DEADLINES ---
+        completeAfter(capture, CAPTURE_DEADLINE_MS);
+        completeAfter(location, LOCATION_DEADLINE_MS);
+        completeAfter(linkForSms, SMS_LINK_DEADLINE_MS);
+        scheduler.schedule(this::onUploadDeadline, UPLOAD_DEADLINE_MS, TimeUnit.MILLISECONDS);
+
+        // --- WARM-UP: OAuth token fetch overlaps with camera capture ---
+        if (db.isDriveEnabled() && db.getGoogleAccount() != null) {
+            DriveServiceProvider.getInstance(context).prefetchToken();
+        }
+
+        // --- STAGE: LOCATION (Play Services callbacks arrive on the main thread) ---
+        mainHandler.post(() -> LocationHelper.getDeviceLocation(context, new LocationHelper.LocationResultCallback() {
+            @Override
+            public void onLocationFound(String mapLink) {
+                location.complete(mapLink);
+            }
+
+            @Override
+            public void onLocationFailed(String error) {
+                location.complete("GPS Signal Lost");
+            }
+        }));
+
+        // --- INDEX: incident metadata, off the caller's thread ---
+        capture.thenAcceptAsync(photo -> {
+            if (photo != null) evidenceIndex.attachIncident(photo, incidentId, alertType, appName);
+        });
+        capture.thenAcceptBothAsync(location, (photo, mapLink) -> {
+            if (photo != null && !cancelled.get()) evidenceIndex.updateLocation(incidentId, mapLink);
+        });
+
+        // --- STAGE: UPLOAD (as soon as the photo exists, never on the camera or main thread) ---
+        capture.thenAcceptAsync(this::startUpload, uploadExecutor);
+        upload.thenAccept(link -> {
+            if (link == null) {
+                linkForSms.complete(null);
+                return;
+            }
+            // Publish the link before checking the SMS state (sendSms does the reverse)
+            uploadedLink = link;
+            linkForSms.complete(link);
+            // Upload finished after the SMS deadline: the SMS said "Pending Upload", text the link now
+            sendFollowUpIfOwed();
+        });
+
+        // --- STAGE: SMS (location + link, or their deadlines) ---
+        CompletableFuture<Void> sms = location.thenAcceptBoth(linkForSms, this::sendSms);
+
+        // --- DONE: SMS out and upload settled ---
+        CompletableFuture.allOf(sms, upload).thenRun(this::finish);
+    }
+
+    /**
+     * Called by the camera analyzer with the saved photo (null if capture failed).
+     */
+    public void onCaptureReady(File photo) {
+        if (!capture.complete(photo) && photo != null && !cancelled.get()) {
+            // Arrived after CAPTURE_DEADLINE_MS: the run went ahead without it
+            CompletableFuture.runAsync(() -> onLateCapture(photo));
+        }
+    }
+
+    /**
+     * Owner authenticated: stop everything and do not send the SMS.
+     */
+    public void cancel() {
+        if (!cancelled.compareAndSet(false, true)) return;
+        Log.i(TAG, "Alert pipeline cancelled: owner verified.");
+        Future<?> task = uploadTask;
+        if (task != null) {
+            task.cancel(true);
+        }
+        capture.complete(null);
+        location.complete(null);
+        upload.complete(null);
+        linkForSms.complete(null);
+        shutdown();
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    // --- STAGE IMPLEMENTATIONS ---
+
+    private void startUpload(File photo) {
+        if (cancelled.get() || photo == null || !photo.exists()) {
+            upload.complete(null);
+            return;
+        }
+
+        boolean isDriveReady = db.isDriveEnabled() && db.getGoogleAccount() != null;
+        if (!isDriveReady) {
+            upload.complete(null);
+            return;
+        }
+
+        // Two tiers: on metered/slow networks the small preview goes first (its link goes
+        // into the SMS) and the full-res original follows through the background queue
+        NetworkProfile profile = NetworkProfile.current(context);
+        File preview = FileSecureHelper.getPreviewFile(context, photo);
+        boolean previewFirst = profile.isPreviewFirst() && preview.exists();
+        File first = previewFirst ? preview : photo;
+
+        if (profile == NetworkProfile.OFFLINE) {
+            handOverToWorker(first, previewFirst ? photo : null);
+            upload.complete(null);
+            return;
+        }
+
+        inFlightTier = first;
+        followingTier = previewFirst ? photo : null;
+        uploadTask = uploadExecutor.submit(() -> {
+            try {
+                String link = uploadToDrive(first);
+                evidenceIndex.updateUpload(first, EvidenceIndex.UPLOAD_DONE, link);
+                inFlightTier = null;
+                upload.complete(link);
+                if (previewFirst) {
+                    Log.i(TAG, "Preview uploaded on " + profile + "; full-res queued.");
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Cloud Sync Error: " + e.getMessage());
+                upload.complete(null);
+            }
+            handOverToWorker(inFlightTier, followingTier);
+        });
+    }
+
+    /**
+     * A photo that missed the capture deadline is still evidence: index it under this
+     * incident and queue it. The alert went (or goes) out without its link, so the
+     * link follows by SMS once the queue drains.
+     */
+    private void onLateCapture(File photo) {
+        Log.w(TAG, "Capture arrived after its deadline; queueing it for the background worker.");
+        evidenceIndex.attachIncident(photo, incidentId, alertType, appName);
+        // Location always completes (fix, deadline or cancel); runs now if it already has
+        location.thenAccept(mapLink -> {
+            if (mapLink != null && !cancelled.get()) evidenceIndex.updateLocation(incidentId, mapLink);
+        });
+        if (db.isDriveEnabled() && db.getGoogleAccount() != null && photo.exists()) {
+            queueBackgroundUpload(photo, true);
+        }
+    }
+
+    private void onUploadDeadline() {
+        if (upload.isDone()) return;
+        Log.w(TAG, "Upload deadline reached; handing over to background worker.");
+        Future<?> task = uploadTask;
+        if (task != null) {
+            task.cancel(true);
+            // Covers a task that never started or ignores the interrupt; no-op if it already handed over
+            handOverToWorker(inFlightTier, followingTier);
+        }
+        upload.complete(null);
+    }
+
+    /**
+     * Queues what this run did not upload for DriveUploadWorker. The single hand-over point:
+     * the first caller wins, so no tier is ever queued twice (a second queued copy would be a
+     * second file on Drive).
+     *
+     * Only the tier whose link the SMS owes texts a follow-up: the in-flight tier (preview in
+     * preview-first mode, original otherwise). The full-res original behind a preview never
+     * does, whether or not the preview made it.
+     *
+     * @param pending The tier that was in flight and did not finish (null if it uploaded).
+     * @param following The full-res original still to follow in preview-first mode (null otherwise).
+     */
+    private void handOverToWorker(File pending, File following) {
+        if (cancelled.get() || !handedOver.compareAndSet(false, true)) return;
+        if (pending != null) queueBackgroundUpload(pending, true);
+        if (following != null) queueBackgroundUpload(following, false);
+    }
+
+    private void sendSms(String mapLink, String driveLink) {
+        if (cancelled.get()) return;
+        // Decide before sending: without a link, the upload callback must not text it yet
+        // (the follow-up would overtake the alert), and must not drop it either
+        smsLinkState.set(driveLink != null ? SMS_LINK_DELIVERED : SMS_SENDING_WITHOUT_LINK);
+        SmsHelper.sendAlertSms(context, appName, mapLink, alertType, driveLink);
+        Log.i(TAG, "Alert SMS dispatched " + (driveLink != null ? "with" : "without") + " Drive link.");
+        if (driveLink == null) {
+            smsLinkState.set(SMS_SENT_WITHOUT_LINK);
+            // The upload may have landed while the alert was being sent
+            sendFollowUpIfOwed();
+        }
+
+        Listener l = listener;
+        if (l != null) {
+            mainHandler.post(() -> l.onAlertSent(driveLink != null));
+        }
+    }
+
+    /**
+     * Texts the Drive link after a "Pending Upload" alert. Called by both sides of the
+     * handshake (alert sent, link ready); the CAS lets exactly one of them send it, and only
+     * once both have happened.
+     */
+    private void sendFollowUpIfOwed() {
+        String link = uploadedLink;
+        if (link == null || cancelled.get()) return;
+        if (smsLinkState.compareAndSet(SMS_SENT_WITHOUT_LINK, SMS_LINK_DELIVERED)) {
+            SmsHelper.sendUploadFollowUpSms(context, appName, alertType, link);
+        }
+    }
+
+    private String uploadToDrive(File photo) throws Exception {
+        // Shared client: cached token and warm connection
+        return new DriveHelper(context, DriveServiceProvider.getInstance(context).getDrive())
+                .uploadFileAndGetLink(photo);
+    }
+
+    /**
+     * @param followUpSms True only for the tier whose link the alert SMS went out without.
+     */
+    private void queueBackgroundUpload(File photo, boolean followUpSms) {
+        // No SMS at all once the owner cancelled
+        DriveUploadWorker.enqueue(context, photo, appName, alertType, followUpSms && !cancelled.get());
+    }
+
+    // --- PLUMBING ---
+
+    private <T> void completeAfter(CompletableFuture<T> future, long delayMs) {
+        scheduler.schedule(() -> future.complete(null), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void finish() {
+        shutdown();
+        Listener l = listener;
+        if (l != null && !cancelled.get()) {
+            mainHandler.post(l::onFinished);
+        }
+    }
+
+    private void shutdown() {
+        scheduler.shutdownNow();
+        uploadExecutor.shutdown();
+    }
+}
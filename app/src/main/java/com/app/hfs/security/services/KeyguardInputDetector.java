@@ -0,0 +1,120 @@
+package com.hfs.security.services;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Classifies systemui view IDs (flagReportViewIds) into keyguard widgets, so a
+ * notification-shade tap is no longer mistaken for a PIN attempt.
+ *
+ * Logic:
+ * 1. Signatures: AOSP keyguard IDs plus OEM extras selected by manufacturer.
+ * 2. classify() strips the "package:id/" prefix and looks the entry name up.
+ * 3. Results are cached per full resource name: systemui reuses the same few IDs,
+ *    so after warm-up classification is a single HashMap probe.
+ *
+ * Pure Java; confined to the Accessibility main thread.
+ */
+public final class KeyguardInputDetector {
+
+    public static final int KIND_NONE = 0;
+    public static final int KIND_PIN_KEY = 1;      // key0..key9, delete
+    public static final int KIND_ENTER = 2;        // key_enter / OK
+    public static final int KIND_PATTERN = 3;      // lockPatternView
+    public static final int KIND_PASSWORD = 4;     // passwordEntry / pinEntry field
+    public static final int KIND_MESSAGE_AREA = 5; // "Wrong PIN" / "Incorrect pattern" text
+
+    // --- AOSP (Pixel, Motorola, Nokia, most Android One devices) ---
+    private static final String[] AOSP_PIN_KEYS = {
+            "key0", "key1", "key2", "key3", "key4", "key5", "key6", "key7", "key8", "key9",
+            "delete_button"
+    };
+    private static final String[] AOSP_ENTER = {"key_enter", "key_enter_text"};
+    private static final String[] AOSP_PATTERN = {"lockPatternView", "keyguard_pattern_view"};
+    private static final String[] AOSP_PASSWORD = {"pinEntry", "passwordEntry", "keyguard_pin_view",
+            "keyguard_password_view", "keyguard_sim_pin_view"};
+    private static final String[] AOSP_MESSAGE = {"keyguard_message_area", "bouncer_message_area",
+            "keyguard_bouncer_message_area"};
+
+    // --- OEM EXTRAS ---
+    private static final String[] SAMSUNG_MESSAGE = {"keyguard_security_message", "message_area"};
+    private static final String[] SAMSUNG_PASSWORD = {"keyguard_pin_entry", "pin_entry_view"};
+    private static final String[] XIAOMI_PIN_KEYS = {"numeric_inputview", "digit_text"};
+    private static final String[] XIAOMI_MESSAGE = {"miui_keyguard_message", "keyguard_bouncer_message"};
+    private static final String[] OPPO_MESSAGE = {"keyguard_message_tip", "coui_keyguard_message"};
+
+    private final Map<String, Integer> signatures = new HashMap<>();
+    private final Map<String, Integer> cache = new HashMap<>();
+    private final Set<String> keyguardPackages = new HashSet<>();
+
+    /**
+     * @param manufacturer Build.MANUFACTURER of the device (case-insensitive).
+     */
+    public KeyguardInputDetector(String manufacturer) {
+        keyguardPackages.add(LockDecisionEngine.SYSTEM_UI_PACKAGE);
+
+        put(AOSP_PIN_KEYS, KIND_PIN_KEY);
+        put(AOSP_ENTER, KIND_ENTER);
+        put(AOSP_PATTERN, KIND_PATTERN);
+        put(AOSP_PASSWORD, KIND_PASSWORD);
+        put(AOSP_MESSAGE, KIND_MESSAGE_AREA);
+
+        String oem = manufacturer != null ? manufacturer.toLowerCase(Locale.US) : "";
+        switch (oem) {
+            case "samsung":
+                put(SAMSUNG_MESSAGE, KIND_MESSAGE_AREA);
+                put(SAMSUNG_PASSWORD, KIND_PASSWORD);
+                break;
+            case "xiaomi":
+            case "redmi":
+            case "poco":
+                put(XIAOMI_PIN_KEYS, KIND_PIN_KEY);
+                put(XIAOMI_MESSAGE, KIND_MESSAGE_AREA);
+                break;
+            case "oppo":
+            case "realme":
+            case "oneplus":
+                put(OPPO_MESSAGE, KIND_MESSAGE_AREA);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void put(String[] ids, int kind) {
+        for (String id : ids) {
+            signatures.put(id, kind);
+        }
+    }
+
+    /**
+     * @param viewIdResourceName e.g. "com.android.systemui:id/key5" (may be null).
+     * @return One of the KIND_* constants.
+     */
+    public int classify(String viewIdResourceName) {
+        if (viewIdResourceName == null) return KIND_NONE;
+
+        Integer cached = cache.get(viewIdResourceName);
+        if (cached != null) return cached;
+
+        int kind = KIND_NONE;
+        int sep = viewIdResourceName.indexOf(":id/");
+        if (sep > 0 && keyguardPackages.contains(viewIdResourceName.substring(0, sep))) {
+            Integer match = signatures.get(viewIdResourceName.substring(sep + 4));
+            if (match != null) kind = match;
+        }
+        cache.put(viewIdResourceName, kind);
+        return kind;
+    }
+
+    /**
+     * True for widgets the intruder types or draws on (PIN keys, enter, pattern, password).
+     * Which events from them count as input is decided by LockDecisionEngine.onKeyguardWidgetEvent.
+     */
+    public static boolean isInput(int kind) {
+        return kind == KIND_PIN_KEY || kind == KIND_ENTER || kind == KIND_PATTERN || kind == KIND_PASSWORD;
+    }
+}
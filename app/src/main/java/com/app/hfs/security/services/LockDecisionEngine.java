@@ -0,0 +1,288 @@
+package com.hfs.security.services;
+
+import com.hfs.security.utils.ProtectedPackageIndex;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pure-Java lock decision state machine.
+ * Extracted from HFSAccessibilityService so the rules can run (and be measured)
+ * on a plain JVM without a device.
+ *
+ * Input: (package, class, eventType, timestamp). Output: an action bitmask.
+ * The engine never touches Android APIs, never allocates on the decision path
+ * and never reads the clock itself; callers pass the timestamp in.
+ *
+ * Rules:
+ * 1. Launcher Failsafe: Any launcher event (default home, any HOME package, or "launcher" in the name) clears the lock flag.
+ * 2. Ghost Lock Fix: Keyboard, IME and volume events are ignored (resolved IME set plus name heuristics).
+ * 3. Self-Protection: Our own windows mark the lock as active.
+ * 4. Session Grace: Each unlocked app keeps its own session in UnlockSessionRegistry.
+ *    Activity inside the app extends it; it expires after its grace period of inactivity.
+ * 5. Multi-App: Sessions are per package, so switching between two unlocked apps does not re-prompt.
+ * 6. System Watcher: Biometric failure text fires the invisible camera (with cooldown).
+ * 7. Keyguard Watcher: Only input on real PIN/pattern/password widgets (KeyguardInputDetector)
+ *    arms the PIN watcher: key clicks, pattern drawing (content changes, no clicks) and password
+ *    typing (text changes from the IME, no systemui clicks). 2 confirmed "wrong PIN/pattern"
+ *    messages after such input fire the camera.
+ *    Message-area text without fresh input is ignored, never treated as a biometric failure.
+ */
+public final class LockDecisionEngine {
+
+    // --- EVENT TYPES (mirror android.view.accessibility.AccessibilityEvent values) ---
+    public static final int TYPE_VIEW_CLICKED = 0x00000001;
+    public static final int TYPE_VIEW_FOCUSED = 0x00000008;
+    public static final int TYPE_VIEW_TEXT_CHANGED = 0x00000010;
+    public static final int TYPE_WINDOW_STATE_CHANGED = 0x00000020;
+    public static final int TYPE_WINDOW_CONTENT_CHANGED = 0x00000800;
+
+    // --- ACTIONS (bitmask, a single event may in theory request both) ---
+    public static final int ACTION_NONE = 0;
+    public static final int ACTION_LOCK = 1;
+    public static final int ACTION_SYSTEM_CAPTURE = 1 << 1;
+
+    public static final String SYSTEM_UI_PACKAGE = "com.android.systemui";
+
+    public static final long SESSION_GRACE_MS = UnlockSessionRegistry.DEFAULT_GRACE_MS;
+    public static final long SYSTEM_COOLDOWN_MS = 5000;
+    // A "wrong PIN" message only counts if keyguard input happened this recently
+    public static final long KEYGUARD_INPUT_WINDOW_MS = 10000;
+    private static final int SYSTEM_PIN_FAILURE_THRESHOLD = 2;
+
+    // --- ENVIRONMENT ---
+    private String selfPackage = "";
+    private String launcherPackage = "";
+    // Immutable snapshots pushed by PackageMetadataCache
+    private volatile Set<String> launcherPackages = Collections.emptySet();
+    private volatile Set<String> imePackages = Collections.emptySet();
+    private volatile ProtectedPackageIndex protectedIndex = ProtectedPackageIndex.EMPTY;
+
+    // --- SESSION CONTROL STATE ---
+    // Written by LockScreenActivity (UI thread) and read by the service; atomics instead of static fields
+    private final AtomicBoolean lockActive = new AtomicBoolean(false);
+    private final UnlockSessionRegistry sessions = new UnlockSessionRegistry();
+
+    // --- SYSTEM LOCK TRACKERS ---
+    private int systemPinFailureCount = 0;
+    private long lastKeyguardInputTime = 0;
+    private long lastSystemAlertTime = 0;
+
+    public void setSelfPackage(String selfPackage) {
+        this.selfPackage = selfPackage != null ? selfPackage : "";
+    }
+
+    public void setLauncherPackage(String launcherPackage) {
+        this.launcherPackage = launcherPackage != null ? launcherPackage : "";
+    }
+
+    /**
+     * @param packages Immutable set of every package with a HOME activity.
+     */
+    public void setLauncherPackages(Set<String> packages) {
+        this.launcherPackages = packages != null ? packages : Collections.<String>emptySet();
+    }
+
+    /**
+     * @param packages Immutable set of installed input method packages.
+     */
+    public void setImePackages(Set<String> packages) {
+        this.imePackages = packages != null ? packages : Collections.<String>emptySet();
+    }
+
+    public void setProtectedIndex(ProtectedPackageIndex index) {
+        this.protectedIndex = index != null ? index : ProtectedPackageIndex.EMPTY;
+    }
+
+    public boolean isLockActive() {
+        return lockActive.get();
+    }
+
+    public void setLockActive(boolean active) {
+        lockActive.set(active);
+    }
+
+    public UnlockSessionRegistry getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Signals that the owner has successfully bypassed the lock (Biometric/PIN).
+     */
+    public void unlockSession(String packageName, long nowMs) {
+        sessions.unlock(packageName, nowMs);
+    }
+
+    /**
+     * Same as above with a per-app grace period.
+     */
+    public void unlockSession(String packageName, long nowMs, long graceMs) {
+        sessions.unlock(packageName, nowMs, graceMs);
+    }
+
+    /**
+     * Main transition function. Called once per Accessibility event.
+     *
+     * @param packageName Source package of the event (never null).
+     * @param className Source class of the event. Carried for traces and detectors; not used by the rules.
+     * @param eventType One of the TYPE_* constants.
+     * @param nowMs Wall clock time of the event in milliseconds.
+     * @return ACTION_* bitmask.
+     */
+    public int onEvent(String packageName, String className, int eventType, long nowMs) {
+        int action = ACTION_NONE;
+
+        // TASK MANAGER FAILSAFE:
+        // If the user navigates to the Home Screen, instantly wipe the lock flag.
+        if (packageName.equals(launcherPackage) || launcherPackages.contains(packageName)
+                || containsIgnoreCase(packageName, "launcher")) {
+            lockActive.set(false);
+        }
+
+        // ==========================================================
+        // PART 1: NORMAL HFS LOCK LOGIC (For Protected Apps)
+        // ==========================================================
+        if (eventType == TYPE_WINDOW_STATE_CHANGED
+                || eventType == TYPE_VIEW_CLICKED
+                || eventType == TYPE_VIEW_FOCUSED) {
+
+            // Skip checks if we are just interacting with the keyboard or system UI volume
+            if (imePackages.contains(packageName)
+                    || packageName.contains("inputmethod") || packageName.contains("keyboard") || packageName.contains("volume")) {
+                return ACTION_NONE;
+            }
+
+            // Reset PIN counter if we left the lock screen
+            if (!packageName.equals(SYSTEM_UI_PACKAGE)) {
+                systemPinFailureCount = 0;
+            }
+
+            // 1. SELF-PROTECTION: Verify if we are already showing the lock screen
+            if (packageName.equals(selfPackage)) {
+                lockActive.set(true);
+                return ACTION_NONE;
+            }
+
+            // 2. TASK MANAGER BYPASS FIX: Only an app without a live session forces re-verification
+            if (lockActive.get() && sessions.isUnlocked(packageName, nowMs)) {
+                return ACTION_NONE;
+            }
+
+            // 3. PROTECTION LOGIC (Strict Check)
+            // Expired sessions are dropped lazily by touch(); a live one is extended.
+            if (protectedIndex.contains(packageName)) {
+                if (!sessions.touch(packageName, nowMs)) {
+                    lockActive.set(true);
+                    action |= ACTION_LOCK;
+                }
+            }
+        }
+
+        // PART 2 (System Watcher) is driven by onKeyguardInput / onKeyguardFailureText /
+        // onSystemFailureText: raw systemui clicks include notification-shade taps.
+
+        return action;
+    }
+
+    /**
+     * Called when systemui shows biometric failure text ("not recognized", "try again"...).
+     * Text matching stays in the adapter because it depends on framework CharSequences.
+     */
+    public int onSystemFailureText(long nowMs) {
+        if (nowMs - lastSystemAlertTime > SYSTEM_COOLDOWN_MS) {
+            lastSystemAlertTime = nowMs;
+            systemPinFailureCount = 0;
+            return ACTION_SYSTEM_CAPTURE;
+        }
+        return ACTION_NONE;
+    }
+
+    /**
+     * A click on a keyguard PIN key, enter key, pattern or password field.
+     */
+    public void onKeyguardInput(long nowMs) {
+        lastKeyguardInputTime = nowMs;
+    }
+
+    /**
+     * An event from a classified keyguard widget. Pattern and password bouncers never send
+     * a click: LockPatternView reports drawing as content changes, and typing on the IME
+     * shows up as text changes of the entry field.
+     *
+     * @param kind KeyguardInputDetector.KIND_* of the event source.
+     * @param eventType One of the TYPE_* constants.
+     * @return true if the event counted as keyguard input.
+     */
+    public boolean onKeyguardWidgetEvent(int kind, int eventType, long nowMs) {
+        boolean input;
+        switch (kind) {
+            case KeyguardInputDetector.KIND_PIN_KEY:
+            case KeyguardInputDetector.KIND_ENTER:
+                input = eventType == TYPE_VIEW_CLICKED;
+                break;
+            case KeyguardInputDetector.KIND_PATTERN:
+                input = eventType == TYPE_VIEW_CLICKED || eventType == TYPE_WINDOW_CONTENT_CHANGED;
+                break;
+            case KeyguardInputDetector.KIND_PASSWORD:
+                input = eventType == TYPE_VIEW_CLICKED || eventType == TYPE_VIEW_TEXT_CHANGED;
+                break;
+            default:
+                input = false;
+                break;
+        }
+        if (input) onKeyguardInput(nowMs);
+        return input;
+    }
+
+    /**
+     * Failure text shown in the keyguard message area ("Wrong PIN", "Incorrect pattern").
+     * Counts as a confirmed PIN failure only right after keyguard input. Without fresh input
+     * the text is a re-post of a failure already counted (or the lockout countdown), so it
+     * is ignored; it never falls through to onSystemFailureText, which would let a single
+     * wrong PIN bypass the failure threshold.
+     */
+    public int onKeyguardFailureText(long nowMs) {
+        if (lastKeyguardInputTime == 0 || nowMs - lastKeyguardInputTime > KEYGUARD_INPUT_WINDOW_MS) {
+            return ACTION_NONE;
+        }
+
+        // Consume the input so one wrong entry is never counted twice
+        lastKeyguardInputTime = 0;
+        systemPinFailureCount++;
+        if (systemPinFailureCount < SYSTEM_PIN_FAILURE_THRESHOLD) {
+            return ACTION_NONE;
+        }
+        systemPinFailureCount = 0;
+        if (nowMs - lastSystemAlertTime > SYSTEM_COOLDOWN_MS) {
+            lastSystemAlertTime = nowMs;
+            return ACTION_SYSTEM_CAPTURE;
+        }
+        return ACTION_NONE;
+    }
+
+    /**
+     * Clears all session and tracker state. Used by replay tools between runs.
+     */
+    public void reset() {
+        lockActive.set(false);
+        sessions.clear();
+        systemPinFailureCount = 0;
+        lastKeyguardInputTime = 0;
+        lastSystemAlertTime = 0;
+    }
+
+    /**
+     * Allocation-free replacement for haystack.toLowerCase().contains(needle).
+     * The needle must already be lower case.
+     */
+    static boolean containsIgnoreCase(String haystack, String needle) {
+        int max = haystack.length() - needle.length();
+        for (int i = 0; i <= max; i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
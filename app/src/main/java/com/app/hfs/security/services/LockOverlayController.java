@@ -0,0 +1,206 @@
+package com.hfs.security.services;
+
+import android.accessibilityservice.AccessibilityService;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.PixelFormat;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
+
+import com.hfs.security.R;
+import com.hfs.security.databinding.ActivityLockScreenBinding;
+import com.hfs.security.diagnostics.LockLatencyTracker;
+import com.hfs.security.ui.LockScreenActivity;
+import com.hfs.security.utils.HFSDatabaseHelper;
+
+/**
+ * "Instant" lock mode: a lock view owned by HFSAccessibilityService.
+ * The view is inflated and attached once as TYPE_ACCESSIBILITY_OVERLAY, then shown
+ * and hidden in place, so a trigger costs one updateViewLayout() instead of a task
+ * switch plus Activity, camera, biometric and TTS setup.
+ *
+ * Logic:
+ * 1. Hidden state: view GONE, window NOT_TOUCHABLE + NOT_FOCUSABLE (invisible to the user).
+ * 2. show(): view VISIBLE, window focusable so the MPIN field can take the keyboard.
+ * 3. Correct MPIN: unlock session in place, no Activity involved.
+ * 4. Fingerprint button or wrong MPIN: escalate to LockScreenActivity, which owns the
+ *    BiometricPrompt, the intruder camera and the alert flow. The overlay is hidden once
+ *    the Activity draws its first frame (onLockActivityShown), so nothing leaks in between.
+ *
+ * Main thread only.
+ */
+public class LockOverlayController {
+
+    private static final String TAG = "HFS_LockOverlay";
+
+    private final AccessibilityService service;
+    private final WindowManager windowManager;
+    private final HFSDatabaseHelper db;
+    private final ActivityLockScreenBinding binding;
+    private final WindowManager.LayoutParams params;
+
+    private boolean attached = false;
+    private boolean showing = false;
+    private String targetPackage;
+    private String targetAppName;
+    private long pendingEventNanos = 0;
+
+    public LockOverlayController(AccessibilityService service) {
+        this.service = service;
+        this.windowManager = (WindowManager) service.getSystemService(Context.WINDOW_SERVICE);
+        this.db = HFSDatabaseHelper.getInstance(service);
+
+        // Material widgets in the shared lock layout need the app theme
+        Context themed = new ContextThemeWrapper(service, R.style.Theme_HFS_LockOverlay);
+        binding = ActivityLockScreenBinding.inflate(LayoutInflater.from(themed));
+        binding.getRoot().setVisibility(View.GONE);
+        // The 1x1 camera preview is only used by LockScreenActivity
+        binding.invisiblePreview.setVisibility(View.GONE);
+
+        params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.TYPE_ACCESSIBILITY_OVERLAY,
+                hiddenFlags(),
+                PixelFormat.OPAQUE);
+        params.windowAnimations = 0;
+
+        binding.btnUnlockPin.setOnClickListener(v -> checkMpinAndUnlock());
+        binding.btnFingerprint.setOnClickListener(v -> escalateToActivity(false));
+        binding.getRoot().getViewTreeObserver().addOnDrawListener(firstFrameListener);
+    }
+
+    /**
+     * Attaches the (hidden) overlay window. Safe to call more than once.
+     */
+    public void attach() {
+        if (attached) return;
+        try {
+            windowManager.addView(binding.getRoot(), params);
+            attached = true;
+        } catch (Exception e) {
+            Log.e(TAG, "Overlay attach failed: " + e.getMessage());
+        }
+    }
+
+    public boolean isAttached() {
+        return attached;
+    }
+
+    public boolean isShowing() {
+        return showing;
+    }
+
+    /**
+     * Covers the screen for the given app.
+     *
+     * @return false if the overlay is unavailable and the caller should fall back to the Activity.
+     */
+    public boolean show(String packageName, String appName, long eventNanos) {
+        if (!attached) return false;
+
+        targetPackage = packageName;
+        targetAppName = appName;
+        if (showing) return true;
+
+        pendingEventNanos = eventNanos;
+        binding.etPinInput.setText("");
+        binding.tvErrorMsg.setText("");
+        binding.getRoot().setVisibility(View.VISIBLE);
+        params.flags = shownFlags();
+        try {
+            windowManager.updateViewLayout(binding.getRoot(), params);
+        } catch (Exception e) {
+            Log.e(TAG, "Overlay show failed: " + e.getMessage());
+            binding.getRoot().setVisibility(View.GONE);
+            return false;
+        }
+        showing = true;
+        return true;
+    }
+
+    public void hide() {
+        if (!showing) return;
+        showing = false;
+        binding.getRoot().setVisibility(View.GONE);
+        params.flags = hiddenFlags();
+        try {
+            windowManager.updateViewLayout(binding.getRoot(), params);
+        } catch (Exception e) {
+            Log.e(TAG, "Overlay hide failed: " + e.getMessage());
+        }
+    }
+
+    public void detach() {
+        if (!attached) return;
+        showing = false;
+        try {
+            windowManager.removeView(binding.getRoot());
+        } catch (Exception e) {
+            Log.e(TAG, "Overlay detach failed: " + e.getMessage());
+        }
+        attached = false;
+    }
+
+    private void checkMpinAndUnlock() {
+        if (binding.etPinInput.getText() != null
+                && binding.etPinInput.getText().toString().equals(db.getMasterPin())) {
+            String pkg = targetPackage;
+            hide();
+            HFSAccessibilityService.setLockActive(false);
+            if (pkg != null) {
+                HFSAccessibilityService.unlockSession(pkg, db.getSessionGraceMs(pkg));
+            }
+        } else {
+            binding.tvErrorMsg.setText("Incorrect HFS MPIN");
+            binding.etPinInput.setText("");
+            // Intruder capture needs CameraX lifecycle: hand over to the Activity
+            escalateToActivity(true);
+        }
+    }
+
+    /**
+     * Opens LockScreenActivity on top of the overlay. The overlay stays up until the
+     * Activity reports its first frame.
+     */
+    private void escalateToActivity(boolean pinFailed) {
+        Intent lockIntent = new Intent(service, LockScreenActivity.class);
+        lockIntent.putExtra("TARGET_APP_PACKAGE", targetPackage);
+        lockIntent.putExtra("TARGET_APP_NAME", targetAppName);
+        lockIntent.putExtra(LockScreenActivity.EXTRA_PIN_FAILED, pinFailed);
+        lockIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK
+                | Intent.FLAG_ACTIVITY_SINGLE_TOP
+                | Intent.FLAG_ACTIVITY_CLEAR_TOP
+                | Intent.FLAG_ACTIVITY_NO_ANIMATION);
+        try {
+            service.startActivity(lockIntent);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to escalate to lock activity: " + e.getMessage());
+        }
+    }
+
+    private final ViewTreeObserver.OnDrawListener firstFrameListener = new ViewTreeObserver.OnDrawListener() {
+        @Override
+        public void onDraw() {
+            if (!showing || pendingEventNanos <= 0) return;
+            LockLatencyTracker.getInstance(service).record(targetPackage,
+                    LockLatencyTracker.STAGE_FIRST_FRAME, pendingEventNanos, SystemClock.elapsedRealtimeNanos());
+            pendingEventNanos = 0;
+        }
+    };
+
+    private static int hiddenFlags() {
+        return WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
+                | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
+                | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+    }
+
+    private static int shownFlags() {
+        return WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN;
+    }
+}
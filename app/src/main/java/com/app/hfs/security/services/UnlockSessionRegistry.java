@@ -0,0 +1,115 @@
+package com.hfs.security.services;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent per-package unlock sessions.
+ * Replaces the single static unlockedPackage/lastUnlockTimestamp pair, so several
+ * protected apps can stay unlocked at once and moving between them does not re-prompt.
+ *
+ * Logic:
+ * 1. unlock(): Owner verified on LockScreenActivity (UI thread). Starts a session with its own grace period.
+ * 2. touch(): Any event from the app while the session is alive slides the window forward (CAS, no locks).
+ * 3. Expiry is lazy: a stale session is removed the first time it is looked up.
+ *    purgeExpired() sweeps the rest (called on screen off).
+ *
+ * Lookups are a single ConcurrentHashMap probe and do not allocate.
+ */
+public final class UnlockSessionRegistry {
+
+    public static final long DEFAULT_GRACE_MS = 10000; // 10 Seconds
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * One unlocked app. Immutable grace, atomically updated activity timestamp.
+     */
+    private static final class Session {
+        final long graceMs;
+        final AtomicLong lastActivityMs;
+
+        Session(long graceMs, long nowMs) {
+            this.graceMs = graceMs;
+            this.lastActivityMs = new AtomicLong(nowMs);
+        }
+
+        boolean isAlive(long nowMs) {
+            return nowMs - lastActivityMs.get() < graceMs;
+        }
+    }
+
+    /**
+     * Starts (or restarts) a session for the package.
+     *
+     * @param graceMs How long the app stays unlocked after its last activity.
+     */
+    public void unlock(String packageName, long nowMs, long graceMs) {
+        if (packageName == null || packageName.isEmpty()) return;
+        sessions.put(packageName, new Session(graceMs > 0 ? graceMs : DEFAULT_GRACE_MS, nowMs));
+    }
+
+    public void unlock(String packageName, long nowMs) {
+        unlock(packageName, nowMs, DEFAULT_GRACE_MS);
+    }
+
+    /**
+     * Read-only check. Removes the session if it has expired.
+     */
+    public boolean isUnlocked(String packageName, long nowMs) {
+        Session session = sessions.get(packageName);
+        if (session == null) return false;
+        if (session.isAlive(nowMs)) return true;
+        sessions.remove(packageName, session);
+        return false;
+    }
+
+    /**
+     * Checks the session and, if it is still alive, extends it to nowMs.
+     *
+     * @return true if the package is unlocked.
+     */
+    public boolean touch(String packageName, long nowMs) {
+        Session session = sessions.get(packageName);
+        if (session == null) return false;
+
+        while (true) {
+            long last = session.lastActivityMs.get();
+            if (nowMs - last >= session.graceMs) {
+                sessions.remove(packageName, session);
+                return false;
+            }
+            // Never move the window backwards (events can arrive slightly out of order)
+            if (nowMs <= last || session.lastActivityMs.compareAndSet(last, nowMs)) {
+                return true;
+            }
+        }
+    }
+
+    public void revoke(String packageName) {
+        if (packageName != null) {
+            sessions.remove(packageName);
+        }
+    }
+
+    /**
+     * Sweeps every expired session. Safe to call from any thread.
+     */
+    public void purgeExpired(long nowMs) {
+        Iterator<Session> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            if (!it.next().isAlive(nowMs)) {
+                it.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        sessions.clear();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,163 @@
+package com.hfs.security.ui;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.paging.LoadState;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingLiveData;
+import androidx.viewpager2.widget.ViewPager2;
+
+import com.hfs.security.adapters.EvidencePagerAdapter;
+import com.hfs.security.databinding.ActivityEvidenceViewerBinding;
+import com.hfs.security.models.IntruderLog;
+import com.hfs.security.utils.EvidenceIndex;
+import com.hfs.security.utils.EvidencePagingSource;
+
+import kotlin.Unit;
+
+/**
+ * Full-screen in-app viewer for intruder evidence.
+ * Replaces handing the file to an external viewer through FileProvider: evidence never
+ * leaves the app (and it is encrypted at rest, so other apps could not open it anyway).
+ *
+ * Logic:
+ * 1. Opened from the History grid with the tapped record and the grid's filter.
+ * 2. Records come from EvidencePagingSource with placeholders: the first load starts at the
+ *    tapped record and counts the records around it, so it opens at its real position and
+ *    swipes either way without positions shifting.
+ * 3. Each page is an EvidenceTileView (screen-sized base image plus region-decoded tiles when
+ *    zoomed in). ViewPager2 keeps one page either side bound, so the neighbours are already
+ *    decoded when the user swipes.
+ */
+public class EvidenceViewerActivity extends AppCompatActivity {
+
+    private static final String EXTRA_RECORD_ID = "record_id";
+    private static final String EXTRA_CAPTURED_AT = "captured_at";
+    private static final String EXTRA_FILE_PATH = "file_path";
+    private static final String EXTRA_TARGET_APP = "target_app";
+    private static final String EXTRA_TRIGGER_TYPE = "trigger_type";
+    private static final String EXTRA_MAX_UPLOAD_STATE = "max_upload_state";
+
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_LOADED_ITEMS = PAGE_SIZE * 5;
+
+    private ActivityEvidenceViewerBinding binding;
+    private EvidencePagerAdapter adapter;
+    private boolean positioned;
+
+    /**
+     * Opens the viewer at log, swiping through the records that match filter.
+     */
+    public static void start(Context context, IntruderLog log, EvidenceIndex.Filter filter) {
+        Intent intent = new Intent(context, EvidenceViewerActivity.class)
+                .putExtra(EXTRA_RECORD_ID, log.getId())
+                .putExtra(EXTRA_CAPTURED_AT, log.getTimestamp())
+                .putExtra(EXTRA_FILE_PATH, log.getFilePath())
+                .putExtra(EXTRA_TARGET_APP, filter.targetApp)
+                .putExtra(EXTRA_TRIGGER_TYPE, filter.triggerType)
+                .putExtra(EXTRA_MAX_UPLOAD_STATE, filter.maxUploadState);
+        context.startActivity(intent);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        // 1. Initialize ViewBinding
+        binding = ActivityEvidenceViewerBinding.inflate(getLayoutInflater());
+        setContentView(binding.getRoot());
+        binding.btnCloseViewer.setOnClickListener(v -> finish());
+
+        // 2. Rebuild the tapped record (paging keys only use its time and id) and the filter
+        Intent intent = getIntent();
+        IntruderLog start = new IntruderLog(
+                intent.getLongExtra(EXTRA_RECORD_ID, 0), null, intent.getStringExtra(EXTRA_FILE_PATH),
+                intent.getLongExtra(EXTRA_CAPTURED_AT, 0), null, null, null, 0, 0, null);
+        EvidenceIndex.Filter filter = new EvidenceIndex.Filter();
+        filter.targetApp = intent.getStringExtra(EXTRA_TARGET_APP);
+        filter.triggerType = intent.getStringExtra(EXTRA_TRIGGER_TYPE);
+        filter.maxUploadState = intent.getIntExtra(EXTRA_MAX_UPLOAD_STATE, -1);
+
+        // 3. Pager with placeholders, starting at the tapped record
+        adapter = new EvidencePagerAdapter();
+        adapter.addLoadStateListener(states -> {
+            if (!positioned && states.getRefresh() instanceof LoadState.NotLoading) {
+                attachPager();
+            }
+            return Unit.INSTANCE;
+        });
+
+        EvidenceIndex index = EvidenceIndex.getInstance(this);
+        PagingConfig config = new PagingConfig(PAGE_SIZE, PAGE_SIZE / 2, true, PAGE_SIZE, MAX_LOADED_ITEMS);
+        Pager<IntruderLog, IntruderLog> pager = new Pager<>(config, start,
+                () -> new EvidencePagingSource(index, filter, true));
+        PagingLiveData.cachedIn(PagingLiveData.getLiveData(pager), getLifecycle())
+                .observe(this, pagingData -> adapter.submitData(getLifecycle(), pagingData));
+    }
+
+    /**
+     * Attaches the adapter once the first load has placed the tapped record, and jumps to it
+     * before the first layout. Attaching earlier would bind position 0 and make Paging load
+     * every record between the top and the tapped one.
+     */
+    private void attachPager() {
+        positioned = true;
+        if (adapter.getItemCount() == 0) {
+            // Deleted meanwhile
+            finish();
+            return;
+        }
+        binding.evidencePager.setOffscreenPageLimit(1);
+        binding.evidencePager.setAdapter(adapter);
+        binding.evidencePager.setCurrentItem(adapter.snapshot().getPlaceholdersBefore(), false);
+        binding.evidencePager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageSelected(int position) {
+                updateCaption(position);
+            }
+        });
+        // Placeholder pages get their caption once their record arrives
+        adapter.addOnPagesUpdatedListener(() -> {
+            updateCaption(binding.evidencePager.getCurrentItem());
+            return Unit.INSTANCE;
+        });
+        updateCaption(binding.evidencePager.getCurrentItem());
+    }
+
+    private void updateCaption(int position) {
+        IntruderLog log = position < adapter.getItemCount() ? adapter.peek(position) : null;
+        if (log == null) {
+            binding.tvViewerCaption.setText("");
+            return;
+        }
+        StringBuilder caption = new StringBuilder(log.getFormattedDate())
+                .append("\nTarget: ").append(log.getAppName());
+        if (log.getTriggerType() != null) {
+            caption.append(" (").append(log.getTriggerType()).append(")");
+        }
+        if (log.getLocation() != null) {
+            caption.append("\n").append(log.getLocation());
+        }
+        caption.append("\n").append(describeUpload(log.getUploadState()));
+        binding.tvViewerCaption.setText(caption);
+    }
+
+    private static String describeUpload(int uploadState) {
+        switch (uploadState) {
+            case EvidenceIndex.UPLOAD_DONE:
+                return "Saved to Google Drive";
+            case EvidenceIndex.UPLOAD_PREVIEW:
+                return "Preview on Google Drive, full photo pending";
+            case EvidenceIndex.UPLOAD_QUEUED:
+                return "Waiting to upload";
+            case EvidenceIndex.UPLOAD_FAILED:
+                return "Upload failed, stored on this device only";
+            default:
+                return "Stored on this device only";
+        }
+    }
+}
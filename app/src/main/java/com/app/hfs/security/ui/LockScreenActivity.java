@@ -10,15 +10,15 @@ import android.graphics.Color;
 import android.graphics.drawable.Drawable;
 import android.media.AudioManager;
 import android.media.ToneGenerator;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.speech.tts.TextToSpeech;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.widget.Toast;
 
@@ -33,30 +33,17 @@ import androidx.camera.core.Preview;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
-import androidx.work.Data;
-import androidx.work.OneTimeWorkRequest;
-import androidx.work.WorkManager;
-
-import com.google.android.gms.auth.api.signin.GoogleSignIn;
-import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
-import com.google.api.client.extensions.android.http.AndroidHttp;
-import com.google.api.client.googleapis.extensions.android.gms.auth.GoogleAccountCredential;
-import com.google.api.client.json.gson.GsonFactory;
-import com.google.api.services.drive.Drive;
-import com.google.api.services.drive.DriveScopes;
+
 import com.google.common.util.concurrent.ListenableFuture;
 
 import com.hfs.security.databinding.ActivityLockScreenBinding;
-import com.hfs.security.services.DriveUploadWorker;
+import com.hfs.security.diagnostics.LockLatencyTracker;
 import com.hfs.security.services.HFSAccessibilityService;
-import com.hfs.security.utils.DriveHelper;
+import com.hfs.security.services.IntruderAlertPipeline;
 import com.hfs.security.utils.FileSecureHelper;
 import com.hfs.security.utils.HFSDatabaseHelper;
-import com.hfs.security.utils.LocationHelper;
-import com.hfs.security.utils.SmsHelper;
 
 import java.io.File;
-import java.util.Collections;
 import java.util.Locale;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -71,6 +58,7 @@ import java.util.concurrent.Executors;
  * 3. Robust Security: Handles Task Manager bypass via onStop().
  * 4. Fearful Siren: Hardware Beep + Text-To-Speech Voice Alarm.
  * 5. Backlight Fix: Removed KEEP_SCREEN_ON to allow system sleep.
+ * 6. Parallel Alerts: Capture, GPS and upload run concurrently (IntruderAlertPipeline).
  */
 public class LockScreenActivity extends AppCompatActivity implements TextToSpeech.OnInitListener {
 
@@ -84,7 +72,8 @@ public class LockScreenActivity extends AppCompatActivity implements TextToSpeec
     
     private boolean isActionTaken = false;
     private boolean isCameraCaptured = false;
-    private File intruderFile = null;
+    private volatile File intruderFile = null;
+    private volatile IntruderAlertPipeline alertPipeline;
 
     private Executor biometricExecutor;
     private BiometricPrompt biometricPrompt;
@@ -101,12 +90,16 @@ public class LockScreenActivity extends AppCompatActivity implements TextToSpeec
     private Handler voiceHandler = new Handler(Looper.getMainLooper());
     private Runnable voiceRunnable;
 
+    // Set by LockOverlayController when the owner typed a wrong MPIN on the overlay
+    public static final String EXTRA_PIN_FAILED = "EXTRA_PIN_FAILED";
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long createNanos = SystemClock.elapsedRealtimeNanos();
         super.onCreate(savedInstanceState);
 
         // Notify Service that lock screen is active
-        HFSAccessibilityService.isLockActive = true;
+        HFSAccessibilityService.setLockActive(true);
 
         // UPDATED FLAGS: Removed FLAG_KEEP_SCREEN_ON to fix backlight glitch
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_SHOW_WHEN_LOCKED
@@ -119,6 +112,12 @@ public class LockScreenActivity extends AppCompatActivity implements TextToSpeec
         db = HFSDatabaseHelper.getInstance(this);
         cameraExecutor = Executors.newSingleThreadExecutor();
         targetPackage = getIntent().getStringExtra("TARGET_APP_PACKAGE");
+
+        // Latency: event -> onCreate now, event -> first frame on the first draw pass
+        long eventNanos = getIntent().getLongExtra(LockLatencyTracker.EXTRA_EVENT_NANOS, 0);
+        LockLatencyTracker latencyTracker = LockLatencyTracker.getInstance(this);
+        latencyTracker.record(targetPackage, LockLatencyTracker.STAGE_ON_CREATE, eventNanos, createNanos);
+        trackFirstFrame(latencyTracker, eventNanos);
         
         // Initialize Text-To-Speech Engine
         textToSpeech = new TextToSpeech(this, this);
@@ -142,8 +141,13 @@ public class LockScreenActivity extends AppCompatActivity implements TextToSpeec
         // 2. Configure System Biometrics
         setupSystemSecurity();
 
-        // 3. Start authentication immediately
-        triggerSystemAuth();
+        // 3. Start authentication immediately (or report the wrong MPIN typed on the overlay)
+        if (getIntent().getBooleanExtra(EXTRA_PIN_FAILED, false)) {
+            binding.tvErrorMsg.setText("Incorrect HFS MPIN");
+            triggerIntruderAlert();
+        } else {
+            triggerSystemAuth();
+        }
 
         binding.btnUnlockPin.setOnClickListener(v -> checkMpinAndUnlock());
         binding.btnFingerprint.setOnClickListener(v -> triggerSystemAuth());
@@ -334,89 +338,35 @@ public class LockScreenActivity extends AppCompatActivity implements TextToSpeec
         if (isActionTaken) return;
         isActionTaken = true;
 
-        LocationHelper.getDeviceLocation(this, new LocationHelper.LocationResultCallback() {
-            @Override
-            public void onLocationFound(String mapLink) {
-                processIntruderResponse(mapLink, restartAuth);
-            }
-
-            @Override
-            public void onLocationFailed(String error) {
-                processIntruderResponse("GPS Signal Lost", restartAuth);
-            }
-        });
-    }
-
-    private void processIntruderResponse(String mapLink, boolean restartAuth) {
         String appName = getIntent().getStringExtra("TARGET_APP_NAME");
         if (appName == null) appName = "Protected Files";
 
-        boolean isDriveReady = db.isDriveEnabled() && db.getGoogleAccount() != null;
-
-        if (isDriveReady && isNetworkAvailable()) {
-            uploadToCloudAndSms(appName, mapLink);
-        } else {
-            if (isDriveReady) queueBackgroundUpload();
-            SmsHelper.sendAlertSms(getApplicationContext(), appName, mapLink, "Security Breach", null);
-        }
-
-        runOnUiThread(() -> {
-            Toast.makeText(this, "⚠ Security Breach Recorded", Toast.LENGTH_LONG).show();
-            isActionTaken = false; 
-            if (restartAuth) {
-                triggerSystemAuth();
-            } else {
-                Log.w(TAG, "Biometric lockout active. Halting automatic prompt restart.");
-            }
-        });
-    }
-
-    private void uploadToCloudAndSms(String appName, String mapLink) {
-        cameraExecutor.execute(() -> {
-            try {
-                if (intruderFile == null || !intruderFile.exists()) {
-                    SmsHelper.sendAlertSms(getApplicationContext(), appName, mapLink, "Security Breach", null);
-                    return;
+        // Capture, GPS and Drive upload run in parallel; the SMS goes out as soon as it can
+        IntruderAlertPipeline pipeline = new IntruderAlertPipeline(this, appName, "Security Breach");
+        alertPipeline = pipeline;
+        pipeline.start(new IntruderAlertPipeline.Listener() {
+            @Override
+            public void onAlertSent(boolean withDriveLink) {
+                if (isFinishing() || pipeline.isCancelled()) return;
+                Toast.makeText(LockScreenActivity.this, "⚠ Security Breach Recorded", Toast.LENGTH_LONG).show();
+                isActionTaken = false;
+                if (restartAuth) {
+                    triggerSystemAuth();
+                } else {
+                    Log.w(TAG, "Biometric lockout active. Halting automatic prompt restart.");
                 }
+            }
 
-                GoogleSignInAccount account = GoogleSignIn.getLastSignedInAccount(getApplicationContext());
-                if (account == null) throw new Exception("Google Account Disconnected");
-
-                GoogleAccountCredential credential = GoogleAccountCredential.usingOAuth2(
-                        getApplicationContext(), Collections.singleton(DriveScopes.DRIVE_FILE));
-                credential.setSelectedAccount(account.getAccount());
-
-                Drive driveService = new Drive.Builder(
-                        AndroidHttp.newCompatibleTransport(),
-                        new GsonFactory(),
-                        credential)
-                        .setApplicationName("HFS Security")
-                        .build();
-
-                DriveHelper driveHelper = new DriveHelper(getApplicationContext(), driveService);
-                String driveLink = driveHelper.uploadFileAndGetLink(intruderFile);
-                
-                SmsHelper.sendAlertSms(getApplicationContext(), appName, mapLink, "Security Breach", driveLink);
-
-            } catch (Exception e) {
-                Log.e(TAG, "Cloud Sync Error: " + e.getMessage());
-                queueBackgroundUpload();
-                SmsHelper.sendAlertSms(getApplicationContext(), appName, mapLink, "Security Breach", null);
+            @Override
+            public void onFinished() {
+                if (alertPipeline == pipeline) alertPipeline = null;
             }
         });
-    }
 
-    private void queueBackgroundUpload() {
-        if (intruderFile == null) return;
-        Data inputData = new Data.Builder().putString("file_path", intruderFile.getAbsolutePath()).build();
-        OneTimeWorkRequest uploadRequest = new OneTimeWorkRequest.Builder(DriveUploadWorker.class).setInputData(inputData).build();
-        WorkManager.getInstance(this).enqueue(uploadRequest);
-    }
-
-    private boolean isNetworkAvailable() {
-        ConnectivityManager cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-        return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+        // Photo may already be on disk (captured at onCreate); otherwise the analyzer delivers it
+        if (intruderFile != null) {
+            pipeline.onCaptureReady(intruderFile);
+        }
     }
 
     private void startInvisibleCamera() {
@@ -436,6 +386,10 @@ public class LockScreenActivity extends AppCompatActivity implements TextToSpeec
                         isCameraCaptured = true;
                         intruderFile = FileSecureHelper.saveIntruderCaptureAndGetFile(this, image);
                         image.close();
+                        IntruderAlertPipeline pipeline = alertPipeline;
+                        if (pipeline != null) {
+                            pipeline.onCaptureReady(intruderFile);
+                        }
                     } else {
                         image.close();
                     }
@@ -450,11 +404,59 @@ public class LockScreenActivity extends AppCompatActivity implements TextToSpeec
         }, ContextCompat.getMainExecutor(this));
     }
 
+    /**
+     * Records the first draw of the lock screen and releases the Instant Overlay.
+     * The listener cannot be removed while the draw pass is running, so removal is posted to the next loop.
+     */
+    private void trackFirstFrame(LockLatencyTracker latencyTracker, long eventNanos) {
+        final View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean recorded = false;
+
+            @Override
+            public void onDraw() {
+                if (recorded) return;
+                recorded = true;
+                // We now cover the app ourselves; release the Instant Overlay if it was up
+                HFSAccessibilityService.onLockActivityShown();
+                latencyTracker.record(targetPackage, LockLatencyTracker.STAGE_FIRST_FRAME,
+                        eventNanos, SystemClock.elapsedRealtimeNanos());
+                ViewTreeObserver.OnDrawListener self = this;
+                decorView.post(() -> decorView.getViewTreeObserver().removeOnDrawListener(self));
+            }
+        });
+    }
+
+    /**
+     * Re-delivered while already on top (SINGLE_TOP), e.g. escalation from the Instant Overlay.
+     */
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        setIntent(intent);
+        String newTarget = intent.getStringExtra("TARGET_APP_PACKAGE");
+        if (newTarget != null) targetPackage = newTarget;
+        HFSAccessibilityService.onLockActivityShown();
+
+        if (intent.getBooleanExtra(EXTRA_PIN_FAILED, false)) {
+            binding.tvErrorMsg.setText("Incorrect HFS MPIN");
+            triggerIntruderAlert();
+        } else {
+            triggerSystemAuth();
+        }
+    }
+
     private void onOwnerVerified() {
         stopFearfulSiren();
-        HFSAccessibilityService.isLockActive = false;
+        // Owner was only mistyping: stop any alert still in flight
+        IntruderAlertPipeline pipeline = alertPipeline;
+        if (pipeline != null) {
+            pipeline.cancel();
+            alertPipeline = null;
+        }
+        HFSAccessibilityService.setLockActive(false);
         if (targetPackage != null) {
-            HFSAccessibilityService.unlockSession(targetPackage);
+            HFSAccessibilityService.unlockSession(targetPackage, db.getSessionGraceMs(targetPackage));
         }
         finish();
     }
@@ -488,19 +490,19 @@ public class LockScreenActivity extends AppCompatActivity implements TextToSpeec
     @Override
     protected void onUserLeaveHint() {
         super.onUserLeaveHint();
-        HFSAccessibilityService.isLockActive = false;
+        HFSAccessibilityService.setLockActive(false);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        HFSAccessibilityService.isLockActive = false;
+        HFSAccessibilityService.setLockActive(false);
     }
 
     @Override
     protected void onStop() {
         super.onStop();
-        HFSAccessibilityService.isLockActive = false;
+        HFSAccessibilityService.setLockActive(false);
     }
 
     @Override
@@ -510,7 +512,7 @@ public class LockScreenActivity extends AppCompatActivity implements TextToSpeec
             textToSpeech.shutdown();
         }
         cameraExecutor.shutdown();
-        HFSAccessibilityService.isLockActive = false;
+        HFSAccessibilityService.setLockActive(false);
         super.onDestroy();
     }
 
@@ -1,8 +1,5 @@
 package com.hfs.security.ui;
 
-import android.content.Context;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.WindowManager;
@@ -12,28 +9,12 @@ import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.core.content.ContextCompat;
-import androidx.work.Data;
-import androidx.work.OneTimeWorkRequest;
-import androidx.work.WorkManager;
 
-import com.google.android.gms.auth.api.signin.GoogleSignIn;
-import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
-import com.google.api.client.extensions.android.http.AndroidHttp;
-import com.google.api.client.googleapis.extensions.android.gms.auth.GoogleAccountCredential;
-import com.google.api.client.json.gson.GsonFactory;
-import com.google.api.services.drive.Drive;
-import com.google.api.services.drive.DriveScopes;
 import com.google.common.util.concurrent.ListenableFuture;
-
-import com.hfs.security.services.DriveUploadWorker;
-import com.hfs.security.utils.DriveHelper;
+import com.hfs.security.services.IntruderAlertPipeline;
 import com.hfs.security.utils.FileSecureHelper;
-import com.hfs.security.utils.HFSDatabaseHelper;
-import com.hfs.security.utils.LocationHelper;
-import com.hfs.security.utils.SmsHelper;
 
 import java.io.File;
-import java.util.Collections;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -45,16 +26,17 @@ import java.util.concurrent.Executors;
  * 
  * FIXED: Keeps activity alive in the background just long enough for Google Drive
  * to return the URL, preventing the "Pending Upload" error.
+ * UPDATED: GPS starts together with the camera; the SMS no longer waits on a cold GPS fix
+ * (IntruderAlertPipeline deadlines).
  */
 public class SystemCaptureActivity extends AppCompatActivity {
 
     private static final String TAG = "HFS_SystemCapture";
 
     private ExecutorService cameraExecutor;
-    private HFSDatabaseHelper db;
     
     private boolean isCameraCaptured = false;
-    private File intruderFile = null;
+    private IntruderAlertPipeline alertPipeline;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -74,10 +56,10 @@ public class SystemCaptureActivity extends AppCompatActivity {
         // Because of the Theme.Translucent.NoTitleBar set in the Manifest, 
         // not setting a view makes this Activity 100% invisible.
 
-        db = HFSDatabaseHelper.getInstance(this);
         cameraExecutor = Executors.newSingleThreadExecutor();
 
-        // 2. Start the invisible background camera
+        // 2. Start GPS/upload/SMS pipeline and the invisible background camera together
+        startAlertPipeline();
         startInvisibleCamera();
     }
 
@@ -102,14 +84,14 @@ public class SystemCaptureActivity extends AppCompatActivity {
                         isCameraCaptured = true;
                         
                         // 1. Capture the photo silently
-                        intruderFile = FileSecureHelper.saveIntruderCaptureAndGetFile(this, image);
+                        File intruderFile = FileSecureHelper.saveIntruderCaptureAndGetFile(this, image);
                         image.close();
 
-                        // 2. Unbind camera to free up resources instantly
-                        cameraProvider.unbindAll();
+                        // 2. Unbind camera to free up resources instantly (must run on the main thread)
+                        ContextCompat.getMainExecutor(this).execute(cameraProvider::unbindAll);
 
-                        // 3. Move to GPS and Alert stage
-                        triggerIntruderAlert();
+                        // 3. Hand the photo to the already running alert pipeline
+                        alertPipeline.onCaptureReady(intruderFile);
                     } else {
                         image.close();
                     }
@@ -123,115 +105,31 @@ public class SystemCaptureActivity extends AppCompatActivity {
 
             } catch (ExecutionException | InterruptedException e) {
                 Log.e(TAG, "CameraX Initialization Error");
-                closeInvisibleActivity();
+                // Alert still goes out, just without a photo
+                alertPipeline.onCaptureReady(null);
             }
         }, ContextCompat.getMainExecutor(this));
     }
 
     /**
-     * Fetches GPS location before proceeding to the SMS and Upload stage.
+     * Starts GPS, and the Drive upload as soon as the photo lands, in parallel.
+     * The activity stays alive until the pipeline has sent the SMS and settled the upload.
      */
-    private void triggerIntruderAlert() {
-        LocationHelper.getDeviceLocation(this, new LocationHelper.LocationResultCallback() {
+    private void startAlertPipeline() {
+        alertPipeline = new IntruderAlertPipeline(this, "SYSTEM PHONE LOCK", "System Unlock Failure");
+        alertPipeline.start(new IntruderAlertPipeline.Listener() {
             @Override
-            public void onLocationFound(String mapLink) {
-                processIntruderResponse(mapLink);
+            public void onAlertSent(boolean withDriveLink) {
+                Log.i(TAG, "System alert sent" + (withDriveLink ? " with Drive link." : "."));
             }
 
             @Override
-            public void onLocationFailed(String error) {
-                processIntruderResponse("GPS Signal Lost");
-            }
-        });
-    }
-
-    /**
-     * Determines whether to upload online immediately or queue for later.
-     */
-    private void processIntruderResponse(String mapLink) {
-        String appName = "SYSTEM PHONE LOCK";
-
-        boolean isDriveReady = db.isDriveEnabled() && db.getGoogleAccount() != null;
-
-        if (isDriveReady && isNetworkAvailable()) {
-            // FIX: This method now handles its own closing so it doesn't die too early.
-            uploadToCloudAndSms(appName, mapLink);
-        } else {
-            if (isDriveReady) {
-                queueBackgroundUpload();
-            }
-            SmsHelper.sendAlertSms(getApplicationContext(), appName, mapLink, "System Unlock Failure", null);
-            
-            // If offline, we are done. Close the invisible activity.
-            closeInvisibleActivity();
-        }
-    }
-
-    /**
-     * Handles Google Drive upload on a background thread.
-     * FIXED: Will not close the Activity until the URL is generated.
-     */
-    private void uploadToCloudAndSms(String appName, String mapLink) {
-        cameraExecutor.execute(() -> {
-            try {
-                if (intruderFile == null || !intruderFile.exists()) {
-                    SmsHelper.sendAlertSms(getApplicationContext(), appName, mapLink, "System Unlock Failure", null);
-                    return;
-                }
-
-                GoogleSignInAccount account = GoogleSignIn.getLastSignedInAccount(getApplicationContext());
-                if (account == null) throw new Exception("Google Account Disconnected");
-
-                GoogleAccountCredential credential = GoogleAccountCredential.usingOAuth2(
-                        getApplicationContext(), Collections.singleton(DriveScopes.DRIVE_FILE));
-                credential.setSelectedAccount(account.getAccount());
-
-                Drive driveService = new Drive.Builder(
-                        AndroidHttp.newCompatibleTransport(),
-                        new GsonFactory(),
-                        credential)
-                        .setApplicationName("HFS Security")
-                        .build();
-
-                DriveHelper driveHelper = new DriveHelper(getApplicationContext(), driveService);
-                
-                // This blocks until the upload finishes
-                String driveLink = driveHelper.uploadFileAndGetLink(intruderFile);
-
-                // Send the final SMS with the real Drive link
-                SmsHelper.sendAlertSms(getApplicationContext(), appName, mapLink, "System Unlock Failure", driveLink);
-
-            } catch (Exception e) {
-                Log.e(TAG, "Cloud upload failed: " + e.getMessage());
-                queueBackgroundUpload();
-                SmsHelper.sendAlertSms(getApplicationContext(), appName, mapLink, "System Unlock Failure", null);
-            } finally {
-                // FIX: Ensure the activity closes itself ONLY after everything is finished.
+            public void onFinished() {
                 closeInvisibleActivity();
             }
         });
     }
 
-    private void queueBackgroundUpload() {
-        if (intruderFile == null) return;
-
-        Data inputData = new Data.Builder()
-                .putString("file_path", intruderFile.getAbsolutePath())
-                .build();
-
-        OneTimeWorkRequest uploadRequest = new OneTimeWorkRequest.Builder(DriveUploadWorker.class)
-                .setInputData(inputData)
-                .build();
-
-        WorkManager.getInstance(this).enqueue(uploadRequest);
-    }
-
-    private boolean isNetworkAvailable() {
-        ConnectivityManager cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-        return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
-    }
-
     /**
      * Shuts down the background threads and kills the invisible activity.
      */
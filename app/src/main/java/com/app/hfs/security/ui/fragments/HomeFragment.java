@@ -20,6 +20,7 @@ import com.hfs.security.R;
 import com.hfs.security.databinding.FragmentHomeBinding;
 import com.hfs.security.services.HFSAccessibilityService;
 import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.ProtectedPackageIndex;
 
 /**
  * The Main Dashboard of the HFS App.
@@ -29,7 +30,7 @@ import com.hfs.security.utils.HFSDatabaseHelper;
  * Accessibility Services cannot be started/stopped programmatically for security reasons.
  * The toggle button now redirects the user to System Settings to Enable/Disable the guard.
  */
-public class HomeFragment extends Fragment {
+public class HomeFragment extends Fragment implements HFSDatabaseHelper.OnProtectedAppsChangedListener {
 
     private FragmentHomeBinding binding;
     private HFSDatabaseHelper db;
@@ -46,11 +47,22 @@ public class HomeFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         db = HFSDatabaseHelper.getInstance(requireContext());
+        db.registerProtectedAppsListener(this);
 
         setupClickListeners();
         refreshUI();
     }
 
+    /**
+     * Keeps the summary card in sync when the protected list is edited elsewhere.
+     */
+    @Override
+    public void onProtectedAppsChanged(ProtectedPackageIndex index) {
+        if (binding != null) {
+            updateProtectedSummary(index.size());
+        }
+    }
+
     /**
      * Connects the UI buttons to their respective security functions.
      */
@@ -91,7 +103,10 @@ public class HomeFragment extends Fragment {
         }
 
         // Display summary counts from the database
-        int protectedCount = db.getProtectedAppsCount();
+        updateProtectedSummary(db.getProtectedAppsCount());
+    }
+
+    private void updateProtectedSummary(int protectedCount) {
         binding.tvProtectedAppsSummary.setText(protectedCount + " Apps currently protected");
     }
 
@@ -138,6 +153,9 @@ public class HomeFragment extends Fragment {
 
     @Override
     public void onDestroyView() {
+        if (db != null) {
+            db.unregisterProtectedAppsListener(this);
+        }
         super.onDestroyView();
         binding = null;
     }
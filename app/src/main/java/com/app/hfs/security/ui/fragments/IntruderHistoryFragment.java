@@ -1,7 +1,6 @@
 package com.hfs.security.ui.fragments;
 
-import android.content.Intent;
-import android.net.Uri;
+import android.content.Context;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,32 +10,60 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
-import androidx.core.content.FileProvider;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.Lifecycle;
+import androidx.paging.LoadState;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingLiveData;
 import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 
 import com.hfs.security.R;
 import com.hfs.security.adapters.IntruderLogAdapter;
 // CORRECTED IMPORT: Matches fragment_history.xml
 import com.hfs.security.databinding.FragmentHistoryBinding; 
 import com.hfs.security.models.IntruderLog;
+import com.hfs.security.services.EvidenceDeleteWorker;
+import com.hfs.security.ui.EvidenceViewerActivity;
+import com.hfs.security.utils.EvidenceImageLoader;
+import com.hfs.security.utils.EvidenceIndex;
+import com.hfs.security.utils.EvidencePagingSource;
+import com.hfs.security.utils.FileSecureHelper;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import kotlin.Unit;
 
 /**
  * Screen for viewing Intruder Evidence (Phase 6).
- * Scans the hidden internal directory for captured photos and intrusion logs.
  * Displays data in a grid for easy identification of intruders.
+ * UPDATED: The grid is a PagingDataAdapter fed by EvidencePagingSource (keyset pages from
+ * EvidenceIndex, loaded in the background). Index changes invalidate the source and the
+ * adapter applies the diff, so deletes and upload-state changes never reload the whole list.
+ * The Filter button narrows the grid to one target app or to captures not yet on Drive.
+ * Clear All runs EvidenceDeleteWorker for the current filter, with progress and Cancel.
  */
 public class IntruderHistoryFragment extends Fragment implements IntruderLogAdapter.OnLogActionListener {
 
     // CORRECTED BINDING CLASS NAME
     private FragmentHistoryBinding binding;
     private IntruderLogAdapter adapter;
-    private List<IntruderLog> intruderLogList;
+
+    private static final int PAGE_SIZE = 40;
+    // Pages kept in memory while scrolling; older ones are dropped and reloaded on scroll-back
+    private static final int MAX_LOADED_ITEMS = PAGE_SIZE * 10;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private EvidenceIndex evidenceIndex;
+    private volatile EvidenceIndex.Filter filter = EvidenceIndex.Filter.all();
+    private String filterLabel;
+    private boolean bulkDeleteRunning;
 
     @Nullable
     @Override
@@ -49,89 +76,163 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
-        
-        intruderLogList = new ArrayList<>();
+
+        evidenceIndex = EvidenceIndex.getInstance(requireContext());
         setupRecyclerView();
-        loadIntrusionLogs();
+        observePages();
+        observeBulkDelete();
 
         // Manual refresh button logic
         binding.btnRefreshLogs.setOnClickListener(v -> loadIntrusionLogs());
 
-        // Clear All button logic
-        binding.btnClearAll.setOnClickListener(v -> showClearAllConfirmation());
+        // Clear All button logic (doubles as Cancel while a bulk delete runs)
+        binding.btnClearAll.setOnClickListener(v -> {
+            if (bulkDeleteRunning) {
+                EvidenceDeleteWorker.cancel(requireContext());
+            } else {
+                showClearAllConfirmation();
+            }
+        });
+
+        // Filter button logic
+        binding.btnFilter.setOnClickListener(v -> showFilterPicker());
     }
 
     private void setupRecyclerView() {
         // Use a Grid Layout (2 columns) to show intruder photos clearly
         binding.rvIntruderLogs.setLayoutManager(new GridLayoutManager(requireContext(), 2));
-        adapter = new IntruderLogAdapter(intruderLogList, this);
+        adapter = new IntruderLogAdapter(this);
         binding.rvIntruderLogs.setAdapter(adapter);
+
+        // The laid-out children are the visible window; size the thumbnail cache to it
+        binding.rvIntruderLogs.addOnLayoutChangeListener((v, l, t, r, b, ol, ot, or, ob) -> {
+            int visible = binding != null ? binding.rvIntruderLogs.getChildCount() : 0;
+            if (visible > 0) {
+                EvidenceImageLoader.getInstance(requireContext()).sizeCacheForWindow(visible);
+            }
+        });
+
+        // Spinner only for a first load into an empty grid; empty state once loaded
+        adapter.addLoadStateListener(states -> {
+            if (binding == null) return Unit.INSTANCE;
+            boolean loading = states.getRefresh() instanceof LoadState.Loading;
+            binding.progressBar.setVisibility(loading && adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+            if (states.getRefresh() instanceof LoadState.NotLoading) {
+                updateEmptyState();
+            }
+            return Unit.INSTANCE;
+        });
     }
 
     /**
-     * Scans the HFS internal storage directory for .jpg files.
-     * Path: /Android/data/com.hfs.security/files/intruders/
+     * Connects the adapter to a Pager over the evidence index. Loading, prefetching near the
+     * end of the grid and dropping far-away pages are handled by Paging.
      */
-    private void loadIntrusionLogs() {
-        binding.progressBar.setVisibility(View.VISIBLE);
-        intruderLogList.clear();
-
-        // Reference the secure intruders directory
-        File intrudersDir = new File(requireContext().getExternalFilesDir(null), "intruders");
-        
-        if (intrudersDir.exists() && intrudersDir.isDirectory()) {
-            File[] photoFiles = intrudersDir.listFiles((dir, name) -> 
-                    name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".png"));
-            
-            if (photoFiles != null) {
-                for (File file : photoFiles) {
-                    intruderLogList.add(new IntruderLog(file));
-                }
-            }
-        }
+    private void observePages() {
+        PagingConfig config = new PagingConfig(PAGE_SIZE, PAGE_SIZE / 2, false, PAGE_SIZE * 2, MAX_LOADED_ITEMS);
+        Pager<IntruderLog, IntruderLog> pager = new Pager<>(config,
+                () -> new EvidencePagingSource(evidenceIndex, filter));
 
-        // Sort by timestamp: Newest intrusion attempts at the top
-        Collections.sort(intruderLogList, (log1, log2) -> 
-                Long.compare(log2.getTimestamp(), log1.getTimestamp()));
+        Lifecycle lifecycle = getViewLifecycleOwner().getLifecycle();
+        PagingLiveData.cachedIn(PagingLiveData.getLiveData(pager), lifecycle)
+                .observe(getViewLifecycleOwner(), pagingData -> adapter.submitData(lifecycle, pagingData));
+    }
 
-        binding.progressBar.setVisibility(View.GONE);
-        adapter.notifyDataSetChanged();
+    /**
+     * Reloads the grid from the top (new filter or manual refresh).
+     */
+    private void loadIntrusionLogs() {
+        binding.rvIntruderLogs.scrollToPosition(0);
+        adapter.refresh();
+    }
 
+    /**
+     * Mirrors EvidenceDeleteWorker's progress in the action bar.
+     */
+    private void observeBulkDelete() {
+        WorkManager.getInstance(requireContext())
+                .getWorkInfosForUniqueWorkLiveData(EvidenceDeleteWorker.UNIQUE_WORK_NAME)
+                .observe(getViewLifecycleOwner(), infos -> {
+                    WorkInfo info = infos == null || infos.isEmpty() ? null : infos.get(0);
+                    bulkDeleteRunning = info != null && !info.getState().isFinished();
+                    if (bulkDeleteRunning) {
+                        long deleted = info.getProgress().getLong(EvidenceDeleteWorker.PROGRESS_DELETED, 0);
+                        long total = info.getProgress().getLong(EvidenceDeleteWorker.PROGRESS_TOTAL, 0);
+                        binding.deleteProgress.setVisibility(View.VISIBLE);
+                        binding.deleteProgress.setProgressCompat(total > 0 ? (int) (deleted * 100 / total) : 0, true);
+                        binding.tvFilterLabel.setText("Deleting " + deleted + " of " + total + "...");
+                        binding.btnClearAll.setText("Cancel");
+                    } else {
+                        binding.deleteProgress.setVisibility(View.GONE);
+                        binding.btnClearAll.setText("Clear All");
+                    }
+                    updateEmptyState();
+                });
+    }
+
+    private void updateEmptyState() {
         // Toggle Empty State UI
-        if (intruderLogList.isEmpty()) {
+        if (adapter.getItemCount() == 0) {
             binding.tvNoIntruders.setVisibility(View.VISIBLE);
             binding.rvIntruderLogs.setVisibility(View.GONE);
-            binding.btnClearAll.setVisibility(View.GONE);
         } else {
             binding.tvNoIntruders.setVisibility(View.GONE);
             binding.rvIntruderLogs.setVisibility(View.VISIBLE);
-            binding.btnClearAll.setVisibility(View.VISIBLE);
         }
+        binding.btnClearAll.setVisibility(bulkDeleteRunning || adapter.getItemCount() > 0 ? View.VISIBLE : View.GONE);
+        if (bulkDeleteRunning) return;
+        binding.tvFilterLabel.setText(filterLabel != null
+                ? "Showing: " + filterLabel
+                : "Captured photos of unauthorized attempts");
+    }
+
+    /**
+     * Filter choices: everything, not yet on Drive, or one target app (from the index).
+     */
+    private void showFilterPicker() {
+        executor.execute(() -> {
+            List<String> apps = evidenceIndex.getTargetApps();
+            if (binding == null) return;
+            binding.getRoot().post(() -> {
+                if (binding == null) return;
+                List<String> labels = new ArrayList<>();
+                labels.add("All evidence");
+                labels.add("Not yet on Drive");
+                labels.addAll(apps);
+
+                new AlertDialog.Builder(requireContext())
+                        .setTitle("Show evidence")
+                        .setItems(labels.toArray(new String[0]), (dialog, which) -> {
+                            if (which == 0) {
+                                filter = EvidenceIndex.Filter.all();
+                                filterLabel = null;
+                            } else if (which == 1) {
+                                filter = EvidenceIndex.Filter.notUploaded();
+                                filterLabel = labels.get(1);
+                            } else {
+                                filter = EvidenceIndex.Filter.forApp(apps.get(which - 2));
+                                filterLabel = apps.get(which - 2);
+                            }
+                            loadIntrusionLogs();
+                        })
+                        .show();
+            });
+        });
     }
 
     /**
      * Implementation of the Adapter Listener for clicking a log entry.
-     * Opens the intruder photo in full screen using the system viewer.
+     * Opens the in-app full-screen viewer, positioned at this record and swiping through the
+     * records the grid currently shows. Evidence is encrypted at rest and never handed out.
      */
     @Override
     public void onLogClicked(IntruderLog log) {
-        File file = new File(log.getFilePath());
-        Uri uri = FileProvider.getUriForFile(requireContext(), 
-                requireContext().getPackageName() + ".fileprovider", file);
-
-        Intent intent = new Intent(Intent.ACTION_VIEW);
-        intent.setDataAndType(uri, "image/*");
-        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-        
-        try {
-            startActivity(intent);
-        } catch (Exception e) {
-            Toast.makeText(requireContext(), "No image viewer found", Toast.LENGTH_SHORT).show();
-        }
+        EvidenceViewerActivity.start(requireContext(), log, filter);
     }
 
     /**
      * Handles the deletion of a specific intrusion record.
+     * The index change invalidates the pages; the adapter diff removes just this cell.
      */
     @Override
     public void onDeleteClicked(IntruderLog log) {
@@ -140,25 +241,30 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
                 .setMessage("This will permanently remove this intruder photo.")
                 .setPositiveButton("Delete", (dialog, which) -> {
                     File file = new File(log.getFilePath());
-                    if (file.delete()) {
-                        Toast.makeText(requireContext(), "Log deleted", Toast.LENGTH_SHORT).show();
-                        loadIntrusionLogs();
-                    }
+                    Context appContext = requireContext().getApplicationContext();
+                    executor.execute(() -> {
+                        if (!FileSecureHelper.deleteCapture(appContext, file) || binding == null) return;
+                        binding.getRoot().post(() ->
+                                Toast.makeText(appContext, "Log deleted", Toast.LENGTH_SHORT).show());
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
+    /**
+     * Deletes everything the grid currently shows (all evidence, or the active filter)
+     * as a cancellable background job.
+     */
     private void showClearAllConfirmation() {
+        String message = filterLabel != null
+                ? "Delete ALL evidence shown for \"" + filterLabel + "\"?"
+                : "Are you sure you want to delete ALL intruder history?";
         new AlertDialog.Builder(requireContext())
                 .setTitle("Clear All Logs?")
-                .setMessage("Are you sure you want to delete ALL intruder history?")
-                .setPositiveButton("Clear All", (dialog, which) -> {
-                    for (IntruderLog log : intruderLogList) {
-                        new File(log.getFilePath()).delete();
-                    }
-                    loadIntrusionLogs();
-                })
+                .setMessage(message)
+                .setPositiveButton("Clear All", (dialog, which) ->
+                        EvidenceDeleteWorker.enqueue(requireContext(), filter))
                 .setNegativeButton("Cancel", null)
                 .show();
     }
@@ -168,4 +274,10 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
         super.onDestroyView();
         binding = null;
     }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        executor.shutdownNow();
+    }
 }
\ No newline at end of file
@@ -9,16 +9,20 @@ import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
+import com.hfs.security.R;
 import com.hfs.security.adapters.AppSelectionAdapter;
 import com.hfs.security.databinding.FragmentProtectedAppsBinding;
 import com.hfs.security.models.AppInfo;
 import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.ProtectedPackageIndex;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -34,14 +38,22 @@ import java.util.concurrent.Executors;
  * 1. Enabled HFS Self-Protection: HFS now appears in its own list.
  * 2. Enabled System Apps: Gallery, Photos, and Files are now visible.
  * 3. Thread Safety: Includes isAdded() checks to prevent tab-switching crashes.
+ * 4. Live Sync: Subscribes to the protected app index so checkboxes follow external changes.
+ * 5. Per-App Grace: Long-press a protected app to choose how long it stays unlocked after
+ *    the owner stops using it (HFSDatabaseHelper.setSessionGraceMs, applied on the next unlock).
  */
-public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapter.OnAppSelectionListener {
+public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapter.OnAppSelectionListener,
+        HFSDatabaseHelper.OnProtectedAppsChangedListener {
 
     private FragmentProtectedAppsBinding binding;
     private AppSelectionAdapter adapter;
     private List<AppInfo> fullAppList;
     private HFSDatabaseHelper db;
     
+    // Unlock grace choices (0 = default, HFSDatabaseHelper.DEFAULT_SESSION_GRACE_MS)
+    private static final long[] GRACE_OPTIONS_MS = {0, 30000, 60000, 5 * 60000, 15 * 60000};
+    private static final String[] GRACE_LABELS = {"10 seconds (default)", "30 seconds", "1 minute", "5 minutes", "15 minutes"};
+
     // Executor for background processing to keep the UI responsive
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
 
@@ -58,6 +70,7 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
         super.onViewCreated(view, savedInstanceState);
         
         db = HFSDatabaseHelper.getInstance(requireContext());
+        db.registerProtectedAppsListener(this);
         fullAppList = new ArrayList<>();
         
         setupRecyclerView();
@@ -181,10 +194,63 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
         
         // Save selection to persistent storage
         db.saveProtectedPackages(currentProtectedSet);
+
+        // An unprotected app has no session, so drop its custom grace too
+        if (!isSelected) {
+            db.setSessionGraceMs(packageName, 0);
+        }
+    }
+
+    /**
+     * Interface callback: Long-press on a protected app.
+     * Lets the owner pick how long the app stays unlocked after its last activity.
+     */
+    @Override
+    public void onAppGraceRequested(AppInfo app) {
+        long current = db.getSessionGraceMs(app.getPackageName());
+        int checked = 0;
+        for (int i = 1; i < GRACE_OPTIONS_MS.length; i++) {
+            if (GRACE_OPTIONS_MS[i] == current) checked = i;
+        }
+
+        new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
+                .setTitle("Keep " + app.getAppName() + " unlocked for")
+                .setSingleChoiceItems(GRACE_LABELS, checked, (dialog, which) -> {
+                    db.setSessionGraceMs(app.getPackageName(), GRACE_OPTIONS_MS[which]);
+                    Toast.makeText(getContext(), app.getAppName() + ": " + GRACE_LABELS[which],
+                            Toast.LENGTH_SHORT).show();
+                    dialog.dismiss();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Index callback: Re-syncs checkbox states only when they differ from the saved list.
+     * Our own toggles already match, so they do not cause a redundant rebind.
+     */
+    @Override
+    public void onProtectedAppsChanged(ProtectedPackageIndex index) {
+        if (binding == null || fullAppList == null) return;
+
+        boolean changed = false;
+        for (AppInfo info : fullAppList) {
+            boolean protectedNow = index.contains(info.getPackageName());
+            if (info.isSelected() != protectedNow) {
+                info.setSelected(protectedNow);
+                changed = true;
+            }
+        }
+        if (changed) {
+            filterApps(binding.etSearchApps.getText() != null ? binding.etSearchApps.getText().toString() : "");
+        }
     }
 
     @Override
     public void onDestroyView() {
+        if (db != null) {
+            db.unregisterProtectedAppsListener(this);
+        }
         // Stop background loading immediately to prevent crashes
         executor.shutdownNow();
         super.onDestroyView();
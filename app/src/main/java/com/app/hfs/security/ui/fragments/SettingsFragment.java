@@ -8,6 +8,7 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.text.TextUtils;
+import android.text.format.Formatter;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -21,6 +22,7 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.biometric.BiometricPrompt;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import androidx.work.WorkManager;
 
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
@@ -31,18 +33,32 @@ import com.google.android.gms.tasks.Task;
 import com.google.api.services.drive.DriveScopes;
 import com.hfs.security.R;
 import com.hfs.security.databinding.FragmentSettingsBinding;
+import com.hfs.security.diagnostics.CaptureLatencyTracker;
+import com.hfs.security.diagnostics.EventTraceRecorder;
+import com.hfs.security.diagnostics.LockLatencyTracker;
 import com.hfs.security.receivers.AdminReceiver;
+import com.hfs.security.services.DriveUploadWorker;
+import com.hfs.security.services.EvidenceRetentionWorker;
 import com.hfs.security.ui.SplashActivity;
 import com.hfs.security.utils.CryptoManager;
+import com.hfs.security.utils.DriveHelper;
+import com.hfs.security.utils.DriveServiceProvider;
+import com.hfs.security.utils.EvidenceIndex;
 import com.hfs.security.utils.HFSDatabaseHelper;
 import com.hfs.security.utils.SimManager;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Advanced Settings Screen for HFS Security.
  * UPDATED: Integrated Anti-Theft UI (Encrypted Emergency Number & Dual SIM Vault)
  * without altering existing Google Drive or App Lock logic.
+ * UPDATED: Evidence Storage card: current usage from EvidenceIndex, the storage limit and
+ * maximum age enforced by EvidenceRetentionWorker, and a manual clean-up.
  */
 public class SettingsFragment extends Fragment {
 
@@ -54,6 +70,12 @@ public class SettingsFragment extends Fragment {
     // Google Drive Auth variables
     private GoogleSignInClient googleSignInClient;
     private ActivityResultLauncher<Intent> driveSignInLauncher;
+    private final ExecutorService driveExecutor = Executors.newSingleThreadExecutor();
+
+    // Evidence storage (usage queries run off the main thread)
+    private static final int[] BUDGET_OPTIONS_MB = {256, 512, 1024, 2048, 4096};
+    private static final int[] MAX_AGE_OPTIONS_DAYS = {7, 30, 90, 365, 0};
+    private final ExecutorService storageExecutor = Executors.newSingleThreadExecutor();
 
     // --- NEW: ANTI-THEFT VARIABLES ---
     private CryptoManager cryptoManager;
@@ -105,6 +127,8 @@ public class SettingsFragment extends Fragment {
         // --- NEW: Initialize Anti-Theft Interface ---
         setupBiometricsForEditing();
         setupAntiTheftUI();
+
+        setupEvidenceStorageUI();
     }
 
     private void setupGoogleSignInClient() {
@@ -125,8 +149,11 @@ public class SettingsFragment extends Fragment {
         binding.switchAntiUninstall.setChecked(isAdminActive);
 
         // Feature Toggles
+        binding.switchPhoneProtection.setChecked(db.isPhoneProtectionEnabled());
+        binding.switchLockOverlay.setChecked(db.isLockOverlayEnabled());
         binding.switchStealthMode.setChecked(db.isStealthModeEnabled());
         binding.switchFakeGallery.setChecked(db.isFakeGalleryEnabled());
+        binding.switchEventTrace.setChecked(db.isEventTraceEnabled());
 
         // Cloud Drive Status
         binding.switchCloudSync.setChecked(db.isDriveEnabled());
@@ -177,6 +204,14 @@ public class SettingsFragment extends Fragment {
             db.setDriveEnabled(isChecked);
         });
 
+        // System Lock Screen Protection Toggle (re-narrows the Accessibility subscription)
+        binding.switchPhoneProtection.setOnCheckedChangeListener((buttonView, isChecked) ->
+                db.setPhoneProtectionEnabled(isChecked));
+
+        // Instant Overlay Lock (picked up by the service on the next trigger)
+        binding.switchLockOverlay.setOnCheckedChangeListener((buttonView, isChecked) ->
+                db.setLockOverlayEnabled(isChecked));
+
         // Stealth Mode Toggle
         binding.switchStealthMode.setOnCheckedChangeListener((buttonView, isChecked) -> {
             db.setStealthMode(isChecked);
@@ -187,6 +222,15 @@ public class SettingsFragment extends Fragment {
             }
         });
 
+        // Diagnostics: Accessibility Event Trace Toggle
+        binding.switchEventTrace.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            db.setEventTraceEnabled(isChecked);
+            EventTraceRecorder.getInstance(requireContext()).setEnabled(isChecked);
+        });
+
+        // Diagnostics: Event -> Lock Screen latency per protected app
+        binding.btnLockLatency.setOnClickListener(v -> showLockLatencyReport());
+
         // Anti-Uninstall Toggle
         binding.switchAntiUninstall.setOnCheckedChangeListener((buttonView, isChecked) -> {
             if (isChecked) {
@@ -200,16 +244,151 @@ public class SettingsFragment extends Fragment {
     private void handleSignInResult(Intent data) {
         Task<GoogleSignInAccount> task = GoogleSignIn.getSignedInAccountFromIntent(data);
         task.addOnSuccessListener(account -> {
+            // Account may have changed: drop the cached Drive client and token
+            DriveServiceProvider.getInstance(requireContext()).invalidate();
+            if (!account.getEmail().equals(db.getGoogleAccount())) {
+                // Folder belongs to the previous account
+                db.saveDriveFolderId(null);
+                db.setDriveFolderShared(false);
+            }
             db.saveGoogleAccount(account.getEmail());
             db.setDriveEnabled(true);
             binding.switchCloudSync.setChecked(true);
             updateDriveAccountUI();
             Toast.makeText(getContext(), "Drive Connected: " + account.getEmail(), Toast.LENGTH_SHORT).show();
+            prepareDriveFolder();
         }).addOnFailureListener(e -> {
             Toast.makeText(getContext(), "Sign-in Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
         });
     }
 
+    /**
+     * Creates and shares the HFS Drive folder once, off the alert path,
+     * so every intruder upload is a single request.
+     */
+    private void prepareDriveFolder() {
+        Context appContext = requireContext().getApplicationContext();
+        driveExecutor.execute(() -> {
+            try {
+                new DriveHelper(appContext, DriveServiceProvider.getInstance(appContext).getDrive())
+                        .prepareSharedFolder();
+                // Photos queued while no account was connected can go now
+                DriveUploadWorker.scheduleDrain(appContext);
+            } catch (Exception e) {
+                // Not fatal: the first upload prepares the folder instead
+                if (getActivity() != null && isAdded()) {
+                    getActivity().runOnUiThread(() -> Toast.makeText(getContext(),
+                            "Drive Folder Setup Failed: " + e.getMessage(), Toast.LENGTH_LONG).show());
+                }
+            }
+        });
+    }
+
+    private void showLockLatencyReport() {
+        LockLatencyTracker tracker = LockLatencyTracker.getInstance(requireContext());
+        CaptureLatencyTracker captureTracker = CaptureLatencyTracker.getInstance(requireContext());
+        new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
+                .setTitle("Lock Latency (ms)")
+                .setMessage(tracker.formatReport() + "\n\n" + captureTracker.formatReport())
+                .setPositiveButton("EXPORT CSV", (dialog, which) -> {
+                    try {
+                        File file = tracker.exportCsv();
+                        captureTracker.exportCsv();
+                        Toast.makeText(getContext(), "Saved: " + file.getParent(), Toast.LENGTH_LONG).show();
+                    } catch (IOException e) {
+                        Toast.makeText(getContext(), "Export Failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNeutralButton("RESET", (dialog, which) -> {
+                    tracker.reset();
+                    captureTracker.reset();
+                })
+                .setNegativeButton("CLOSE", null)
+                .show();
+    }
+
+    // --- EVIDENCE STORAGE ---
+
+    private void setupEvidenceStorageUI() {
+        updateRetentionButtons();
+        loadEvidenceUsage();
+
+        binding.btnEvidenceBudget.setOnClickListener(v -> {
+            String[] labels = new String[BUDGET_OPTIONS_MB.length];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = formatMb(BUDGET_OPTIONS_MB[i]);
+            }
+            new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
+                    .setTitle("Evidence Storage Limit")
+                    .setItems(labels, (dialog, which) -> {
+                        db.setEvidenceBudgetMb(BUDGET_OPTIONS_MB[which]);
+                        onRetentionChanged();
+                    })
+                    .show();
+        });
+
+        binding.btnEvidenceMaxAge.setOnClickListener(v -> {
+            String[] labels = new String[MAX_AGE_OPTIONS_DAYS.length];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = formatDays(MAX_AGE_OPTIONS_DAYS[i]);
+            }
+            new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
+                    .setTitle("Keep Uploaded Photos For")
+                    .setItems(labels, (dialog, which) -> {
+                        db.setEvidenceMaxAgeDays(MAX_AGE_OPTIONS_DAYS[which]);
+                        onRetentionChanged();
+                    })
+                    .show();
+        });
+
+        binding.btnEvidenceCleanup.setOnClickListener(v -> {
+            EvidenceRetentionWorker.runNow(requireContext());
+            Toast.makeText(getContext(), "Cleaning up uploaded evidence...", Toast.LENGTH_SHORT).show();
+        });
+
+        // Refresh the usage line whenever a retention pass finishes
+        WorkManager.getInstance(requireContext())
+                .getWorkInfosForUniqueWorkLiveData(EvidenceRetentionWorker.RUN_NOW_WORK_NAME)
+                .observe(getViewLifecycleOwner(), infos -> loadEvidenceUsage());
+    }
+
+    private void onRetentionChanged() {
+        updateRetentionButtons();
+        EvidenceRetentionWorker.runNow(requireContext());
+    }
+
+    private void updateRetentionButtons() {
+        binding.btnEvidenceBudget.setText("Storage Limit: " + formatMb(db.getEvidenceBudgetMb()));
+        binding.btnEvidenceMaxAge.setText("Keep Uploaded Photos: " + formatDays(db.getEvidenceMaxAgeDays()));
+    }
+
+    private void loadEvidenceUsage() {
+        Context appContext = requireContext().getApplicationContext();
+        storageExecutor.execute(() -> {
+            EvidenceIndex.Usage usage = EvidenceIndex.getInstance(appContext).getUsage();
+            if (getActivity() == null || binding == null) return;
+            getActivity().runOnUiThread(() -> {
+                if (binding == null) return;
+                String text = usage.count + " photos, " + Formatter.formatShortFileSize(appContext, usage.bytes)
+                        + " of " + formatMb(db.getEvidenceBudgetMb());
+                if (usage.notUploadedCount > 0) {
+                    text += "\n" + usage.notUploadedCount + " not yet on Drive ("
+                            + Formatter.formatShortFileSize(appContext, usage.notUploadedBytes) + ", always kept)";
+                }
+                binding.tvEvidenceUsage.setText(text);
+            });
+        });
+    }
+
+    private static String formatMb(int megabytes) {
+        return megabytes >= 1024 ? (megabytes / 1024) + " GB" : megabytes + " MB";
+    }
+
+    private static String formatDays(int days) {
+        if (days <= 0) return "No age limit";
+        return days == 365 ? "1 year" : days + " days";
+    }
+
     private void showStealthWarning() {
         String currentPin = db.getMasterPin();
         new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
@@ -356,4 +535,12 @@ public class SettingsFragment extends Fragment {
         super.onDestroyView();
         binding = null;
     }
+
+    @Override
+    public void onDestroy() {
+        // Let a running folder setup finish; just stop accepting new work
+        driveExecutor.shutdown();
+        storageExecutor.shutdown();
+        super.onDestroy();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,439 @@
+package com.hfs.security.ui.views;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hfs.security.utils.EvidenceImageLoader;
+import com.hfs.security.utils.EvidenceVault;
+import com.hfs.security.utils.JpegExifInjector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Zoomable full-screen view of one evidence photo, decoded in tiles.
+ *
+ * Logic:
+ * 1. setEvidence() decodes, in the background, a base image subsampled to the screen size
+ *    (EvidenceImageLoader.decode) and opens a BitmapRegionDecoder on the decrypted stream.
+ * 2. At fit-to-screen zoom only the base image is drawn. Once zooming would upscale it, the
+ *    visible area is covered with TILE_SIZE tiles decoded from just that region of the
+ *    capture, at the power-of-two subsample that matches the zoom.
+ * 3. Tiles live in an LruCache sized to a few screens of pixels, and tiles that scroll out
+ *    of view before their turn are skipped. Memory stays bounded at any zoom level, and the
+ *    full-resolution bitmap is never decoded.
+ * 4. Coordinates are in EXIF-oriented space. Each tile's region is mapped back to sensor
+ *    coordinates for decoding, then the tile is rotated like the base image.
+ * 5. Pinch and double tap zoom, drag pans. While zoomed in, the parent (ViewPager2) may not
+ *    take the drag, so panning does not flip to the next capture.
+ */
+public class EvidenceTileView extends View {
+
+    private static final String TAG = "HFS_EvidenceTileView";
+    private static final int TILE_SIZE = 512;
+    // Deepest zoom: screen pixels per capture pixel
+    private static final float MAX_PIXEL_ZOOM = 3f;
+    private static final float DOUBLE_TAP_ZOOM = 3f;
+    // Tile cache: this many screens' worth of RGB_565 pixels
+    private static final int CACHED_SCREENS = 3;
+
+    private static final ExecutorService DECODE_EXECUTOR = Executors.newFixedThreadPool(2);
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private final LruCache<String, Bitmap> tiles;
+    private final Set<String> pendingTiles = new HashSet<>();
+    // Tiles the last frame needed; queued decodes for anything else are skipped
+    private volatile Set<String> wantedTiles = Collections.emptySet();
+
+    private File file;
+    // Bumped by setEvidence()/clear() so results for a previous file are dropped
+    private int generation;
+    private Bitmap base;
+    private BitmapRegionDecoder decoder;
+    private int orientation;
+    private int rawWidth, rawHeight;
+    private int imageWidth, imageHeight;
+
+    private float scale, minScale, maxScale;
+    private float offsetX, offsetY;
+    private OnEvidenceLoadedListener loadedListener;
+
+    /**
+     * Called on the main thread once the photo for setEvidence() is ready (or failed).
+     */
+    public interface OnEvidenceLoadedListener {
+        void onEvidenceLoaded(boolean success);
+    }
+
+    public EvidenceTileView(Context context) {
+        this(context, null);
+    }
+
+    public EvidenceTileView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int screenBytes = metrics.widthPixels * metrics.heightPixels * 2;
+        tiles = new LruCache<String, Bitmap>(screenBytes * CACHED_SCREENS) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+        scaleDetector = new ScaleGestureDetector(context, new ScaleListener());
+        gestureDetector = new GestureDetector(context, new PanListener());
+    }
+
+    // --- CONTENT ---
+
+    public void setOnEvidenceLoadedListener(OnEvidenceLoadedListener listener) {
+        this.loadedListener = listener;
+    }
+
+    @Nullable
+    public File getEvidence() {
+        return file;
+    }
+
+    /**
+     * Shows an evidence file (vault or legacy plaintext). Main thread only.
+     */
+    public void setEvidence(File evidence) {
+        if (evidence.equals(file)) return;
+        clear();
+        file = evidence;
+        int requested = generation;
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        Context appContext = getContext().getApplicationContext();
+
+        DECODE_EXECUTOR.execute(() -> {
+            EvidenceVault vault = EvidenceVault.getInstance(appContext);
+            Bitmap baseImage = EvidenceImageLoader.getInstance(appContext)
+                    .decode(evidence, metrics.widthPixels, metrics.heightPixels);
+            int exif = JpegExifInjector.ORIENTATION_NORMAL;
+            BitmapRegionDecoder regionDecoder = null;
+            try {
+                try (InputStream in = vault.openInputStream(evidence)) {
+                    exif = JpegExifInjector.readOrientation(in);
+                }
+                // The decoder keeps the compressed JPEG (a few MB) in memory, never the pixels
+                try (InputStream in = vault.openInputStream(evidence)) {
+                    regionDecoder = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                            ? BitmapRegionDecoder.newInstance(in)
+                            : BitmapRegionDecoder.newInstance(in, false);
+                }
+            } catch (IOException e) {
+                // Base image only: zoom still works, without extra detail
+                Log.e(TAG, "Region decoder unavailable for " + evidence.getName() + ": " + e.getMessage());
+            }
+
+            int exifOrientation = exif;
+            BitmapRegionDecoder opened = regionDecoder;
+            MAIN.post(() -> {
+                if (requested != generation) {
+                    if (baseImage != null) baseImage.recycle();
+                    if (opened != null) opened.recycle();
+                    return;
+                }
+                onEvidenceLoaded(baseImage, opened, exifOrientation);
+            });
+        });
+    }
+
+    private void onEvidenceLoaded(Bitmap baseImage, BitmapRegionDecoder regionDecoder, int exifOrientation) {
+        base = baseImage;
+        decoder = regionDecoder;
+        orientation = exifOrientation;
+        if (decoder != null) {
+            rawWidth = decoder.getWidth();
+            rawHeight = decoder.getHeight();
+            boolean swapped = orientation >= JpegExifInjector.ORIENTATION_TRANSPOSE;
+            imageWidth = swapped ? rawHeight : rawWidth;
+            imageHeight = swapped ? rawWidth : rawHeight;
+        } else if (base != null) {
+            imageWidth = base.getWidth();
+            imageHeight = base.getHeight();
+        }
+        resetZoom();
+        invalidate();
+        if (loadedListener != null) {
+            loadedListener.onEvidenceLoaded(base != null);
+        }
+    }
+
+    /**
+     * Releases the decoder, base image and tiles (recycled pages, closed viewer).
+     */
+    public void clear() {
+        generation++;
+        file = null;
+        tiles.evictAll();
+        pendingTiles.clear();
+        wantedTiles = Collections.emptySet();
+        // Not recycled: the last frame may still reference it
+        base = null;
+        if (decoder != null) {
+            BitmapRegionDecoder closing = decoder;
+            decoder = null;
+            // recycle() waits for an in-flight decodeRegion; keep that off the main thread
+            DECODE_EXECUTOR.execute(closing::recycle);
+        }
+        imageWidth = imageHeight = 0;
+        invalidate();
+    }
+
+    // --- ZOOM ---
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        resetZoom();
+    }
+
+    private void resetZoom() {
+        if (imageWidth == 0 || getWidth() == 0) return;
+        minScale = Math.min((float) getWidth() / imageWidth, (float) getHeight() / imageHeight);
+        maxScale = Math.max(minScale * 2, MAX_PIXEL_ZOOM);
+        scale = minScale;
+        clampOffsets();
+    }
+
+    private void zoomTo(float target, float focusX, float focusY) {
+        float newScale = Math.max(minScale, Math.min(maxScale, target));
+        offsetX = focusX - (focusX - offsetX) * (newScale / scale);
+        offsetY = focusY - (focusY - offsetY) * (newScale / scale);
+        scale = newScale;
+        clampOffsets();
+        invalidate();
+    }
+
+    /**
+     * Centres the image on an axis where it is smaller than the view, else keeps it on screen.
+     */
+    private void clampOffsets() {
+        float contentW = imageWidth * scale;
+        float contentH = imageHeight * scale;
+        offsetX = contentW <= getWidth()
+                ? (getWidth() - contentW) / 2
+                : Math.max(getWidth() - contentW, Math.min(0, offsetX));
+        offsetY = contentH <= getHeight()
+                ? (getHeight() - contentH) / 2
+                : Math.max(getHeight() - contentH, Math.min(0, offsetY));
+    }
+
+    private boolean isZoomedIn() {
+        return scale > minScale * 1.01f;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (imageWidth == 0) return false;
+        scaleDetector.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+        if (getParent() != null) {
+            getParent().requestDisallowInterceptTouchEvent(isZoomedIn() || event.getPointerCount() > 1);
+        }
+        return true;
+    }
+
+    private final class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        @Override
+        public boolean onScale(@NonNull ScaleGestureDetector detector) {
+            zoomTo(scale * detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+            return true;
+        }
+    }
+
+    private final class PanListener extends GestureDetector.SimpleOnGestureListener {
+        @Override
+        public boolean onDown(@NonNull MotionEvent e) {
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2, float distanceX, float distanceY) {
+            if (!isZoomedIn()) return false;
+            offsetX -= distanceX;
+            offsetY -= distanceY;
+            clampOffsets();
+            invalidate();
+            return true;
+        }
+
+        @Override
+        public boolean onDoubleTap(@NonNull MotionEvent e) {
+            zoomTo(isZoomedIn() ? minScale : minScale * DOUBLE_TAP_ZOOM, e.getX(), e.getY());
+            return true;
+        }
+    }
+
+    // --- DRAWING ---
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (base == null || imageWidth == 0) return;
+
+        RectF dst = new RectF(offsetX, offsetY, offsetX + imageWidth * scale, offsetY + imageHeight * scale);
+        canvas.drawBitmap(base, null, dst, paint);
+
+        // The base image is enough until it would be shown larger than it was decoded
+        float baseScale = (float) base.getWidth() / imageWidth;
+        if (decoder == null || scale <= baseScale) {
+            wantedTiles = Collections.emptySet();
+            return;
+        }
+        drawTiles(canvas);
+    }
+
+    private void drawTiles(Canvas canvas) {
+        int sample = sampleSizeFor(scale);
+        int step = TILE_SIZE * sample;
+
+        // Visible part of the image, in oriented image pixels
+        int left = Math.max(0, (int) (-offsetX / scale));
+        int top = Math.max(0, (int) (-offsetY / scale));
+        int right = Math.min(imageWidth, (int) Math.ceil((getWidth() - offsetX) / scale));
+        int bottom = Math.min(imageHeight, (int) Math.ceil((getHeight() - offsetY) / scale));
+
+        List<Rect> regions = new ArrayList<>();
+        Set<String> wanted = new HashSet<>();
+        for (int y = top / step * step; y < bottom; y += step) {
+            for (int x = left / step * step; x < right; x += step) {
+                regions.add(new Rect(x, y, Math.min(x + step, imageWidth), Math.min(y + step, imageHeight)));
+                wanted.add(tileKey(sample, x, y));
+            }
+        }
+        // Published before any request so queued decodes see the current viewport
+        wantedTiles = wanted;
+
+        RectF dst = new RectF();
+        for (Rect region : regions) {
+            String key = tileKey(sample, region.left, region.top);
+            Bitmap tile = tiles.get(key);
+            if (tile == null) {
+                requestTile(key, region, sample);
+                continue;
+            }
+            dst.set(offsetX + region.left * scale, offsetY + region.top * scale,
+                    offsetX + region.right * scale, offsetY + region.bottom * scale);
+            canvas.drawBitmap(tile, null, dst, paint);
+        }
+    }
+
+    private static String tileKey(int sample, int x, int y) {
+        return sample + ":" + x + ":" + y;
+    }
+
+    private void requestTile(String key, Rect region, int sample) {
+        if (!pendingTiles.add(key)) return;
+        BitmapRegionDecoder regionDecoder = decoder;
+        int requested = generation;
+        int exif = orientation;
+        Rect raw = toRawRegion(region);
+
+        DECODE_EXECUTOR.execute(() -> {
+            Bitmap tile = null;
+            if (wantedTiles.contains(key)) {
+                try {
+                    BitmapFactory.Options options = new BitmapFactory.Options();
+                    options.inSampleSize = sample;
+                    options.inPreferredConfig = Bitmap.Config.RGB_565;
+                    Bitmap decoded = regionDecoder.decodeRegion(raw, options);
+                    tile = decoded != null ? EvidenceImageLoader.applyOrientation(decoded, exif) : null;
+                } catch (IllegalStateException | IllegalArgumentException e) {
+                    // Decoder recycled (page left) or region outside a truncated image
+                    Log.w(TAG, "Tile skipped: " + e.getMessage());
+                }
+            }
+            Bitmap result = tile;
+            MAIN.post(() -> {
+                if (requested != generation) {
+                    if (result != null) result.recycle();
+                    return;
+                }
+                pendingTiles.remove(key);
+                if (result != null) {
+                    tiles.put(key, result);
+                    invalidate();
+                }
+            });
+        });
+    }
+
+    /**
+     * Largest power of two that does not drop below one capture pixel per screen pixel.
+     */
+    private static int sampleSizeFor(float scale) {
+        int sample = 1;
+        while (sample * 2 * scale <= 1f) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    /**
+     * Maps a rectangle in EXIF-oriented image space back to sensor (stored) coordinates.
+     */
+    private Rect toRawRegion(Rect r) {
+        int w = rawWidth;
+        int h = rawHeight;
+        switch (orientation) {
+            case JpegExifInjector.ORIENTATION_FLIP_HORIZONTAL:
+                return new Rect(w - r.right, r.top, w - r.left, r.bottom);
+            case JpegExifInjector.ORIENTATION_ROTATE_180:
+                return new Rect(w - r.right, h - r.bottom, w - r.left, h - r.top);
+            case JpegExifInjector.ORIENTATION_FLIP_VERTICAL:
+                return new Rect(r.left, h - r.bottom, r.right, h - r.top);
+            case JpegExifInjector.ORIENTATION_TRANSPOSE:
+                return new Rect(r.top, r.left, r.bottom, r.right);
+            case JpegExifInjector.ORIENTATION_ROTATE_90:
+                return new Rect(r.top, h - r.right, r.bottom, h - r.left);
+            case JpegExifInjector.ORIENTATION_TRANSVERSE:
+                return new Rect(w - r.bottom, h - r.right, w - r.top, h - r.left);
+            case JpegExifInjector.ORIENTATION_ROTATE_270:
+                return new Rect(w - r.bottom, r.left, w - r.top, r.right);
+            default:
+                return new Rect(r);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // Offscreen pages are detached too; only drop tiles, the base image stays for swiping back
+        tiles.evictAll();
+        pendingTiles.clear();
+        wantedTiles = Collections.emptySet();
+    }
+}
@@ -0,0 +1,382 @@
+package com.hfs.security.utils;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Streaming AEAD file format for the evidence vault (chunked AES-256-GCM).
+ * Plaintext is cut into CHUNK_SIZE pieces and each piece is sealed on its own, so writers
+ * and readers only ever hold one chunk in memory and readers can decrypt any byte range
+ * without touching the rest of the file.
+ *
+ * Layout:
+ *   header  = MAGIC(4) | VERSION(1) | chunkSize(4) | noncePrefix(7) | keyLength(2) | wrappedKey
+ *   chunk i = AES-GCM(dataKey, nonce_i, plaintext_i, aad = header) -> ciphertext_i | tag(16)
+ *   nonce_i = noncePrefix(7) | i (4, big endian) | lastFlag(1)
+ *
+ * Logic:
+ * 1. Every file has its own random data key; only its wrapped form (KeyWrapper, e.g. the
+ *    Keystore in EvidenceVault) is stored in the header.
+ * 2. The chunk index and "last chunk" flag live in the nonce, so reordering, dropping or
+ *    truncating chunks fails authentication. The header is the AAD of every chunk.
+ * 3. The writer only emits a chunk once it knows whether more data follows, so the last
+ *    chunk is never empty (except for an empty file) and the plaintext length follows from
+ *    the file length alone.
+ *
+ * Pure Java; no Android dependencies.
+ */
+public final class ChunkedAeadFile {
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+    private static final byte[] MAGIC = {'H', 'F', 'S', 'V'};
+    private static final int VERSION = 1;
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int TAG_LENGTH = 16;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    /**
+     * Seals and opens per-file data keys with a master key kept elsewhere.
+     */
+    public interface KeyWrapper {
+        SecretKey newDataKey() throws GeneralSecurityException;
+        byte[] wrap(SecretKey dataKey) throws GeneralSecurityException;
+        SecretKey unwrap(byte[] wrappedKey) throws GeneralSecurityException;
+    }
+
+    /**
+     * The file can never be opened: bad header, truncated body, a chunk that fails
+     * authentication, or a data key the master key cannot unwrap. Retrying will not help.
+     */
+    public static final class IntegrityException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public IntegrityException(String message) {
+            super(message);
+        }
+
+        public IntegrityException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private ChunkedAeadFile() {}
+
+    /**
+     * @return true if the file starts with the vault magic (false for legacy plaintext files).
+     */
+    public static boolean isVaultFile(File file) {
+        if (file.length() < MAGIC.length) return false;
+        byte[] head = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(file)) {
+            new DataInputStream(in).readFully(head);
+            return Arrays.equals(head, MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static byte[] nonce(byte[] prefix, long chunkIndex, boolean last) {
+        byte[] nonce = new byte[NONCE_PREFIX_LENGTH + 5];
+        System.arraycopy(prefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+        nonce[7] = (byte) (chunkIndex >>> 24);
+        nonce[8] = (byte) (chunkIndex >>> 16);
+        nonce[9] = (byte) (chunkIndex >>> 8);
+        nonce[10] = (byte) chunkIndex;
+        nonce[11] = (byte) (last ? 1 : 0);
+        return nonce;
+    }
+
+    // --- WRITER ---
+
+    /**
+     * Encrypting OutputStream. close() seals the final chunk; a stream that is not closed
+     * leaves a file that fails authentication on read.
+     */
+    public static final class Writer extends OutputStream {
+
+        private final OutputStream out;
+        private final Cipher cipher;
+        private final SecretKey dataKey;
+        private final byte[] header;
+        private final byte[] noncePrefix;
+        private final byte[] plain = new byte[CHUNK_SIZE];
+        private final byte[] sealed = new byte[CHUNK_SIZE + TAG_LENGTH];
+        private int buffered;
+        private long chunkIndex;
+        private boolean closed;
+
+        public Writer(OutputStream out, KeyWrapper keys) throws IOException {
+            this.out = out;
+            try {
+                cipher = Cipher.getInstance(TRANSFORMATION);
+                dataKey = keys.newDataKey();
+                byte[] wrapped = keys.wrap(dataKey);
+                noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+                new SecureRandom().nextBytes(noncePrefix);
+
+                ByteBuffer h = ByteBuffer.allocate(MAGIC.length + 1 + 4 + NONCE_PREFIX_LENGTH + 2 + wrapped.length);
+                h.put(MAGIC).put((byte) VERSION).putInt(CHUNK_SIZE).put(noncePrefix)
+                        .putShort((short) wrapped.length).put(wrapped);
+                header = h.array();
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Vault key setup failed", e);
+            }
+            out.write(header);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            while (len > 0) {
+                if (buffered == CHUNK_SIZE) {
+                    // More data follows, so the buffered chunk is not the last one
+                    seal(false);
+                }
+                int n = Math.min(len, CHUNK_SIZE - buffered);
+                System.arraycopy(b, off, plain, buffered, n);
+                buffered += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                seal(true);
+            } finally {
+                Arrays.fill(plain, (byte) 0);
+                out.close();
+            }
+        }
+
+        private void seal(boolean last) throws IOException {
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, dataKey,
+                        new GCMParameterSpec(TAG_LENGTH * 8, nonce(noncePrefix, chunkIndex, last)));
+                cipher.updateAAD(header);
+                int n = cipher.doFinal(plain, 0, buffered, sealed, 0);
+                out.write(sealed, 0, n);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Chunk encryption failed", e);
+            }
+            chunkIndex++;
+            buffered = 0;
+        }
+    }
+
+    // --- READER ---
+
+    /**
+     * Random-access decrypting reader. read(position, ...) decrypts only the chunks that
+     * cover the requested range; the most recent chunk is kept for sequential reads.
+     */
+    public static final class Reader implements Closeable {
+
+        private final RandomAccessFile file;
+        private final Cipher cipher;
+        private final SecretKey dataKey;
+        private final byte[] header;
+        private final byte[] noncePrefix;
+        private final int chunkSize;
+        private final long chunkCount;
+        private final long length;
+
+        private final byte[] sealed;
+        private final byte[] plain;
+        private long cachedChunk = -1;
+        private int cachedLength;
+
+        public Reader(File source, KeyWrapper keys) throws IOException {
+            file = new RandomAccessFile(source, "r");
+            try {
+                byte[] magic = new byte[MAGIC.length];
+                file.readFully(magic);
+                if (!Arrays.equals(magic, MAGIC)) throw new IntegrityException("Not a vault file");
+                int version = file.readUnsignedByte();
+                if (version != VERSION) throw new IntegrityException("Unsupported vault version " + version);
+                chunkSize = file.readInt();
+                if (chunkSize <= 0 || chunkSize > 16 * CHUNK_SIZE) throw new IntegrityException("Bad chunk size");
+                noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+                file.readFully(noncePrefix);
+                byte[] wrapped = new byte[file.readUnsignedShort()];
+                file.readFully(wrapped);
+
+                int headerLength = (int) file.getFilePointer();
+                header = new byte[headerLength];
+                file.seek(0);
+                file.readFully(header);
+
+                long body = file.length() - headerLength;
+                long sealedChunk = chunkSize + TAG_LENGTH;
+                chunkCount = Math.max(1, (body + sealedChunk - 1) / sealedChunk);
+                long lastSealed = body - (chunkCount - 1) * sealedChunk;
+                if (lastSealed < TAG_LENGTH) throw new IntegrityException("Truncated vault file");
+                length = (chunkCount - 1) * chunkSize + (lastSealed - TAG_LENGTH);
+
+                cipher = Cipher.getInstance(TRANSFORMATION);
+                dataKey = keys.unwrap(wrapped);
+                sealed = new byte[chunkSize + TAG_LENGTH];
+                plain = new byte[chunkSize];
+            } catch (GeneralSecurityException e) {
+                file.close();
+                // A Keystore that is only unavailable right now is not a broken file
+                if (e.getCause() instanceof IOException) throw new IOException("Vault key unwrap failed", e);
+                throw new IntegrityException("Vault key unwrap failed", e);
+            } catch (EOFException e) {
+                file.close();
+                throw new IntegrityException("Truncated vault header", e);
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return Plaintext length in bytes.
+         */
+        public long length() {
+            return length;
+        }
+
+        /**
+         * Reads up to len plaintext bytes starting at position.
+         * @return bytes read, or -1 at end of file.
+         */
+        public synchronized int read(long position, byte[] b, int off, int len) throws IOException {
+            if (position >= length) return -1;
+            int total = 0;
+            while (len > 0 && position < length) {
+                long chunk = position / chunkSize;
+                loadChunk(chunk);
+                int inChunk = (int) (position - chunk * chunkSize);
+                int n = Math.min(len, cachedLength - inChunk);
+                System.arraycopy(plain, inChunk, b, off, n);
+                position += n;
+                off += n;
+                len -= n;
+                total += n;
+            }
+            return total;
+        }
+
+        /**
+         * Fills b completely from position or throws EOFException.
+         */
+        public void readFully(long position, byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = read(position, b, off, len);
+                if (n < 0) throw new EOFException();
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Sequential InputStream over the plaintext starting at position (shares this reader;
+         * closing the stream closes the reader).
+         */
+        public InputStream openStream(long position) {
+            return new InputStream() {
+                private long pos = position;
+                private long mark = position;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (len == 0) return 0;
+                    int n = Reader.this.read(pos, b, off, len);
+                    if (n > 0) pos += n;
+                    return n;
+                }
+
+                @Override
+                public long skip(long n) {
+                    long skipped = Math.max(0, Math.min(n, length - pos));
+                    pos += skipped;
+                    return skipped;
+                }
+
+                @Override
+                public int available() {
+                    return (int) Math.min(Integer.MAX_VALUE, length - pos);
+                }
+
+                @Override
+                public boolean markSupported() {
+                    return true;
+                }
+
+                @Override
+                public synchronized void mark(int readLimit) {
+                    mark = pos;
+                }
+
+                @Override
+                public synchronized void reset() {
+                    pos = mark;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    Reader.this.close();
+                }
+            };
+        }
+
+        private void loadChunk(long chunk) throws IOException {
+            if (chunk == cachedChunk) return;
+            boolean last = chunk == chunkCount - 1;
+            int sealedLength = last
+                    ? (int) (length - chunk * chunkSize) + TAG_LENGTH
+                    : chunkSize + TAG_LENGTH;
+            file.seek(header.length + chunk * (chunkSize + TAG_LENGTH));
+            file.readFully(sealed, 0, sealedLength);
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, dataKey,
+                        new GCMParameterSpec(TAG_LENGTH * 8, nonce(noncePrefix, chunk, last)));
+                cipher.updateAAD(header);
+                cachedLength = cipher.doFinal(sealed, 0, sealedLength, plain, 0);
+                cachedChunk = chunk;
+            } catch (GeneralSecurityException e) {
+                cachedChunk = -1;
+                throw new IntegrityException("Vault chunk " + chunk + " failed authentication", e);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            Arrays.fill(plain, (byte) 0);
+            cachedChunk = -1;
+            file.close();
+        }
+    }
+}
@@ -3,81 +3,129 @@ package com.hfs.security.utils;
 import android.content.Context;
 import android.util.Log;
 
-import com.google.api.client.http.FileContent;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.model.File;
 import com.google.api.services.drive.model.FileList;
 import com.google.api.services.drive.model.Permission;
 
 import java.io.IOException;
-import java.util.Collections;
 import java.util.List;
 
 /**
  * Google Drive REST API Utility.
  * This class handles:
- * 1. Searching for and creating the 'HFS Security' folder.
- * 2. Uploading intruder JPEG files to that specific folder.
- * 3. Setting public 'anyone with link' permissions for the file.
- * 4. Generating the final shareable URL for the SMS alert.
+ * 1. Creating the 'HFS Security' folder and sharing it ('anyone with link') once, at sign-in.
+ * 2. Uploading intruder JPEG files to that folder (ResumableDriveUploader). Files inherit the
+ *    folder's link sharing, so no per-file permission call is needed and the link works straight away.
+ * 3. Generating the final shareable URL for the SMS alert.
  */
 public class DriveHelper {
 
     private static final String TAG = "HFS_DriveHelper";
     private static final String FOLDER_NAME = "HFS Security";
     private static final String FOLDER_MIME = "application/vnd.google-apps.folder";
+    private static final String VIEW_LINK_PREFIX = "https://drive.google.com/file/d/";
     private final Drive driveService;
     private final HFSDatabaseHelper db;
+    private final ResumableDriveUploader uploader;
 
     public DriveHelper(Context context, Drive driveService) {
         this.driveService = driveService;
         this.db = HFSDatabaseHelper.getInstance(context);
+        this.uploader = new ResumableDriveUploader(context, driveService);
     }
 
     /**
      * Main task: Uploads a local file and returns its public shareable link.
+     * One request on the hot path; the folder is only (re)prepared if the cached one is missing.
      */
     public String uploadFileAndGetLink(java.io.File localFile) throws IOException {
-        // 1. Ensure the HFS Security folder exists
-        String folderId = getOrCreateHfsFolder();
-        if (folderId == null) {
-            throw new IOException("Failed to identify or create HFS Drive folder.");
+        return uploadFileAndGetLink(localFile, null);
+    }
+
+    /**
+     * Same as above, reporting acknowledged bytes after every resumable chunk.
+     */
+    public String uploadFileAndGetLink(java.io.File localFile,
+                                       ResumableDriveUploader.ProgressListener listener) throws IOException {
+        // 1. Shared folder prepared at sign-in (fallback: prepare it now, once)
+        String folderId = db.getDriveFolderId();
+        if (folderId == null || !db.isDriveFolderShared()) {
+            folderId = prepareSharedFolder();
         }
 
-        // 2. Prepare File Metadata
-        File fileMetadata = new File();
-        fileMetadata.setName(localFile.getName());
-        fileMetadata.setMimeType("image/jpeg");
-        fileMetadata.setParents(Collections.singletonList(folderId));
+        try {
+            return createInFolder(localFile, folderId, listener);
+        } catch (GoogleJsonResponseException e) {
+            // Folder was deleted or trashed by the user since sign-in: rebuild it and retry once
+            if (e.getStatusCode() != 404) throw e;
+            Log.w(TAG, "Cached HFS folder is gone. Recreating.");
+            db.saveDriveFolderId(null);
+            db.setDriveFolderShared(false);
+            return createInFolder(localFile, prepareSharedFolder(), listener);
+        }
+    }
 
-        // 3. Prepare File Content
-        FileContent mediaContent = new FileContent("image/jpeg", localFile);
+    /**
+     * Ensures the 'HFS Security' folder exists, is not trashed, and is readable by anyone with
+     * the link. Called from SettingsFragment right after sign-in (background thread).
+     * @return the validated folder ID (also cached in HFSDatabaseHelper).
+     */
+    public String prepareSharedFolder() throws IOException {
+        String folderId = validateCachedFolder(db.getDriveFolderId());
+        if (folderId != null && db.isDriveFolderShared()) {
+            return folderId;
+        }
 
-        // 4. Execute Upload
-        File uploadedFile = driveService.files().create(fileMetadata, mediaContent)
-                .setFields("id, webViewLink")
-                .execute();
+        if (folderId == null) {
+            folderId = findOrCreateHfsFolder();
+            db.saveDriveFolderId(folderId);
+        }
+
+        makeFilePublic(folderId);
+        db.setDriveFolderShared(true);
+        Log.i(TAG, "HFS folder ready and shared: " + folderId);
+        return folderId;
+    }
+
+    private String createInFolder(java.io.File localFile, String folderId,
+                                  ResumableDriveUploader.ProgressListener listener) throws IOException {
+        // Resumable + idempotent: a retry continues the same session and never duplicates the file
+        File uploadedFile = uploader.upload(localFile, "image/jpeg", folderId, listener);
 
         String fileId = uploadedFile.getId();
         Log.i(TAG, "File uploaded successfully. ID: " + fileId);
 
-        // 5. Make the file public (Anyone with link can read)
-        makeFilePublic(fileId);
-
-        // 6. Return the finalized view link
-        return uploadedFile.getWebViewLink();
+        // Return the view link (computed from the ID if the server omitted it)
+        String link = uploadedFile.getWebViewLink();
+        return link != null ? link : VIEW_LINK_PREFIX + fileId + "/view";
     }
 
     /**
-     * Logic: Searches for 'HFS Security' folder. Creates it if not found.
+     * @return the cached folder ID if it still exists and is not trashed, otherwise null.
      */
-    private String getOrCreateHfsFolder() throws IOException {
-        // Check database first to avoid redundant API calls
-        String savedFolderId = db.getDriveFolderId();
-        if (savedFolderId != null && !savedFolderId.isEmpty()) {
-            return savedFolderId;
+    private String validateCachedFolder(String folderId) throws IOException {
+        if (folderId == null || folderId.isEmpty()) return null;
+        try {
+            File folder = driveService.files().get(folderId)
+                    .setFields("id, trashed")
+                    .execute();
+            if (folder != null && !Boolean.TRUE.equals(folder.getTrashed())) {
+                return folder.getId();
+            }
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() != 404) throw e;
         }
+        Log.w(TAG, "Cached HFS folder no longer valid.");
+        db.setDriveFolderShared(false);
+        return null;
+    }
 
+    /**
+     * Logic: Searches for 'HFS Security' folder. Creates it if not found.
+     */
+    private String findOrCreateHfsFolder() throws IOException {
         // Search for folder by name
         String query = "name = '" + FOLDER_NAME + "' and mimeType = '" + FOLDER_MIME + "' and trashed = false";
         FileList result = driveService.files().list()
@@ -88,9 +136,7 @@ public class DriveHelper {
 
         List<File> files = result.getFiles();
         if (files != null && !files.isEmpty()) {
-            String foundId = files.get(0).getId();
-            db.saveDriveFolderId(foundId);
-            return foundId;
+            return files.get(0).getId();
         }
 
         // Create folder if it doesn't exist
@@ -102,17 +148,16 @@ public class DriveHelper {
                 .setFields("id")
                 .execute();
 
-        if (folder != null) {
-            db.saveDriveFolderId(folder.getId());
-            Log.i(TAG, "Created new HFS Security folder on Drive.");
-            return folder.getId();
+        if (folder == null || folder.getId() == null) {
+            throw new IOException("Failed to identify or create HFS Drive folder.");
         }
-
-        return null;
+        Log.i(TAG, "Created new HFS Security folder on Drive.");
+        return folder.getId();
     }
 
     /**
      * Logic: Sets permissions so the second phone doesn't need to log in to see the photo.
+     * Applied to the folder; uploaded files inherit it.
      * Role: reader | Type: anyone
      */
     private void makeFilePublic(String fileId) throws IOException {
@@ -121,6 +166,6 @@ public class DriveHelper {
         permission.setType("anyone");
 
         driveService.permissions().create(fileId, permission).execute();
-        Log.d(TAG, "Permissions updated: File is now public-viewable.");
+        Log.d(TAG, "Permissions updated: Folder is now public-viewable.");
     }
-}
\ No newline at end of file
+}
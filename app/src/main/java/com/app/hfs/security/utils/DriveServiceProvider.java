@@ -0,0 +1,260 @@
+package com.hfs.security.utils;
+
+import android.accounts.Account;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.auth.GoogleAuthException;
+import com.google.android.gms.auth.GoogleAuthUtil;
+import com.google.android.gms.auth.api.signin.GoogleSignIn;
+import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.DriveScopes;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process-wide Google Drive client.
+ * Previously every alert (and every DriveUploadWorker run) built a fresh credential,
+ * transport and Drive client, paying for a new OAuth token and a cold TLS handshake.
+ *
+ * Logic:
+ * 1. One Drive client per signed-in account, reused by IntruderAlertPipeline and DriveUploadWorker.
+ * 2. The OAuth access token is cached in memory and attached to every request.
+ * 3. Proactive refresh: once the token is older than TOKEN_REFRESH_AFTER_MS, a new one is
+ *    fetched in the background while the current one keeps being used.
+ * 4. A 401 clears the token from Play Services, fetches a new one and retries the request once.
+ * 5. invalidate() drops the client and token (called by SettingsFragment on account change).
+ * 6. Transport: pooled HTTP/2 OkHttpTransport; every Drive call is timed in the debug log.
+ */
+public class DriveServiceProvider {
+
+    private static final String TAG = "HFS_DriveProvider";
+    private static final String APP_NAME = "HFS Security";
+    private static final String OAUTH_SCOPE = "oauth2:" + DriveScopes.DRIVE_FILE;
+
+    // Google access tokens live for 60 minutes; Play Services does not expose the exact expiry
+    private static final long TOKEN_LIFETIME_MS = 55 * 60 * 1000L;
+    private static final long TOKEN_REFRESH_AFTER_MS = 45 * 60 * 1000L;
+
+    private static DriveServiceProvider instance;
+
+    private final Context context;
+    private final OkHttpTransport transport = new OkHttpTransport();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean refreshInFlight = new AtomicBoolean(false);
+
+    // Guarded by "this"
+    private Drive drive;
+    private String driveAccountName;
+    private String token;
+    private String tokenAccountName;
+    private long tokenFetchedAt;
+
+    private DriveServiceProvider(Context context) {
+        this.context = context.getApplicationContext();
+        transport.setTimingListener(new OkHttpTransport.TimingListener() {
+            @Override
+            public void onRequestCompleted(String method, String url, int statusCode, String protocol,
+                                           long requestBytes, long elapsedNanos) {
+                Log.d(TAG, String.format(Locale.US, "%s %s -> %d (%s, %d B) in %.1f ms",
+                        method, url, statusCode, protocol, requestBytes, elapsedNanos / 1e6));
+            }
+
+            @Override
+            public void onRequestFailed(String method, String url, IOException error, long elapsedNanos) {
+                Log.w(TAG, String.format(Locale.US, "%s %s failed after %.1f ms: %s",
+                        method, url, elapsedNanos / 1e6, error.getMessage()));
+            }
+        });
+    }
+
+    public static synchronized DriveServiceProvider getInstance(Context context) {
+        if (instance == null) {
+            instance = new DriveServiceProvider(context);
+        }
+        return instance;
+    }
+
+    /**
+     * @return Drive client for the signed-in account. Rebuilt only when the account changes.
+     * @throws IOException if no Google account is connected.
+     */
+    public synchronized Drive getDrive() throws IOException {
+        Account account = getSignedInAccount();
+        if (drive == null || !account.name.equals(driveAccountName)) {
+            // Keep a prefetched token if it belongs to this account
+            if (!account.name.equals(tokenAccountName)) {
+                clearTokenLocked();
+            }
+            driveAccountName = account.name;
+            drive = new Drive.Builder(transport, GsonFactory.getDefaultInstance(), new TokenInitializer())
+                    .setApplicationName(APP_NAME)
+                    .build();
+            Log.d(TAG, "Drive client built for " + account.name);
+        }
+        return drive;
+    }
+
+    /**
+     * Fetches the access token in the background so it is ready by the time the
+     * intruder photo is saved. No-op if a fresh token is already cached.
+     */
+    public void prefetchToken() {
+        if (GoogleSignIn.getLastSignedInAccount(context) == null) return;
+        synchronized (this) {
+            if (token != null && age() < TOKEN_REFRESH_AFTER_MS) return;
+        }
+        scheduleRefresh();
+    }
+
+    /**
+     * Drops the cached client and token. Call when the user changes or disconnects the account.
+     */
+    public synchronized void invalidate() {
+        drive = null;
+        driveAccountName = null;
+        clearTokenLocked();
+        Log.i(TAG, "Drive client invalidated.");
+    }
+
+    // --- TOKEN CACHE ---
+
+    /**
+     * Returns the cached token, fetching synchronously only if none is usable.
+     */
+    private String getToken() throws IOException {
+        synchronized (this) {
+            if (token != null) {
+                long age = age();
+                if (age < TOKEN_LIFETIME_MS) {
+                    if (age >= TOKEN_REFRESH_AFTER_MS) {
+                        scheduleRefresh();
+                    }
+                    return token;
+                }
+            }
+        }
+        return fetchToken();
+    }
+
+    private String fetchToken() throws IOException {
+        Account account = getSignedInAccount();
+        try {
+            // Blocking Play Services IPC; never called on the main thread
+            String fresh = GoogleAuthUtil.getToken(context, account, OAUTH_SCOPE);
+            synchronized (this) {
+                if (account.name.equals(driveAccountName) || driveAccountName == null) {
+                    token = fresh;
+                    tokenAccountName = account.name;
+                    tokenFetchedAt = SystemClock.elapsedRealtime();
+                }
+            }
+            return fresh;
+        } catch (GoogleAuthException e) {
+            throw new IOException("Token fetch failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void scheduleRefresh() {
+        if (!refreshInFlight.compareAndSet(false, true)) return;
+        refreshExecutor.execute(() -> {
+            try {
+                fetchToken();
+                Log.d(TAG, "Access token refreshed.");
+            } catch (IOException e) {
+                Log.w(TAG, "Background token refresh failed: " + e.getMessage());
+            } finally {
+                refreshInFlight.set(false);
+            }
+        });
+    }
+
+    /**
+     * Removes a rejected token from both our cache and Play Services' own cache.
+     */
+    private void discardToken(String rejected) {
+        synchronized (this) {
+            if (rejected != null && rejected.equals(token)) {
+                clearTokenLocked();
+            }
+        }
+        try {
+            if (rejected != null) {
+                GoogleAuthUtil.clearToken(context, rejected);
+            }
+        } catch (GoogleAuthException | IOException e) {
+            Log.w(TAG, "Failed to clear rejected token: " + e.getMessage());
+        }
+    }
+
+    private void clearTokenLocked() {
+        token = null;
+        tokenAccountName = null;
+        tokenFetchedAt = 0;
+    }
+
+    private long age() {
+        return SystemClock.elapsedRealtime() - tokenFetchedAt;
+    }
+
+    private Account getSignedInAccount() throws IOException {
+        GoogleSignInAccount signIn = GoogleSignIn.getLastSignedInAccount(context);
+        Account account = signIn != null ? signIn.getAccount() : null;
+        if (account == null) throw new IOException("Google Account Disconnected");
+        return account;
+    }
+
+    // --- REQUEST AUTH ---
+
+    /**
+     * Attaches the cached bearer token to every request and retries once on 401.
+     * Also applies the transport's tuned timeouts (google-http-client defaults to 20s/20s).
+     */
+    private class TokenInitializer implements HttpRequestInitializer {
+        @Override
+        public void initialize(HttpRequest request) {
+            request.setConnectTimeout(OkHttpTransport.DEFAULT_CONNECT_TIMEOUT_MS);
+            request.setReadTimeout(OkHttpTransport.DEFAULT_READ_TIMEOUT_MS);
+            request.setWriteTimeout(OkHttpTransport.DEFAULT_WRITE_TIMEOUT_MS);
+            RequestAuth auth = new RequestAuth();
+            request.setInterceptor(auth);
+            request.setUnsuccessfulResponseHandler(auth);
+        }
+    }
+
+    private class RequestAuth implements HttpExecuteInterceptor, HttpUnsuccessfulResponseHandler {
+        private String sentToken;
+        private boolean retried;
+
+        @Override
+        public void intercept(HttpRequest request) throws IOException {
+            sentToken = getToken();
+            request.getHeaders().setAuthorization("Bearer " + sentToken);
+        }
+
+        @Override
+        public boolean handleResponse(HttpRequest request, HttpResponse response, boolean supportsRetry) {
+            if (response.getStatusCode() != HttpStatusCodes.STATUS_CODE_UNAUTHORIZED || retried) {
+                return false;
+            }
+            retried = true;
+            Log.w(TAG, "401 from Drive; refreshing token and retrying.");
+            discardToken(sentToken);
+            // intercept() runs again on retry and fetches a fresh token
+            return supportsRetry;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads encrypted evidence photos into ImageViews (Glide cannot read the vault format).
+ *
+ * Logic:
+ * 1. Decoding runs on a small background pool; results are posted to the main thread only if
+ *    the ImageView is still bound to the same file (RecyclerView recycling).
+ * 2. Each decode streams from EvidenceVault: the EXIF orientation and image bounds come from
+ *    the first chunk only, then the image is decoded with an inSampleSize for the target size,
+ *    so a 160dp grid cell never materialises a full-resolution bitmap.
+ * 3. EXIF orientation (written by FileSecureHelper) is applied to the small bitmap.
+ * 4. Grid cells use loadThumbnail(): only the capture-time thumbnail is decoded, and decoded
+ *    thumbnails live in an LruCache sized by sizeCacheForWindow() to the visible window plus
+ *    the same again for scroll-back, so scrolling back does not decode again. Captures from
+ *    before thumbnails existed get one generated (once) from the full file.
+ */
+public class EvidenceImageLoader {
+
+    private static final String TAG = "HFS_EvidenceLoader";
+    private static final int DECODE_THREADS = 2;
+    // Visible window plus one more for scroll-back
+    private static final int CACHED_WINDOWS = 2;
+    // Until the grid reports its window: ~24 thumbnails of 384x288 ARGB
+    private static final int DEFAULT_CACHE_BYTES = 24 * 384 * 288 * 4;
+    private static final int BACKFILL_QUALITY = 75;
+
+    private static EvidenceImageLoader instance;
+
+    private final EvidenceVault vault;
+    private final ExecutorService decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // In-flight decode per view, cancelled when the view is rebound
+    private final Map<ImageView, Future<?>> pending = new WeakHashMap<>();
+
+    // Decoded thumbnails by thumbnail path
+    private final LruCache<String, Bitmap> thumbnailCache = new LruCache<String, Bitmap>(DEFAULT_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getAllocationByteCount();
+        }
+    };
+
+    private EvidenceImageLoader(Context context) {
+        this.vault = EvidenceVault.getInstance(context);
+    }
+
+    public static synchronized EvidenceImageLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new EvidenceImageLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Sizes the thumbnail cache for a grid showing visibleItems cells at once.
+     * Call again when the grid geometry changes (rotation, column count).
+     */
+    public void sizeCacheForWindow(int visibleItems) {
+        // Thumbnails are decoded at their stored size: at most THUMB_MAX_DIMENSION, 4:3, ARGB_8888
+        int longEdge = FileSecureHelper.THUMB_MAX_DIMENSION;
+        int perItem = longEdge * (longEdge * 3 / 4) * 4;
+        thumbnailCache.resize(Math.max(1, visibleItems) * perItem * CACHED_WINDOWS);
+    }
+
+    /**
+     * Shows the thumbnail for a capture. Cache hits are set synchronously; misses show
+     * placeholderRes and decode in the background. Main thread only.
+     */
+    public void loadThumbnail(Context context, File capture, ImageView target, int placeholderRes) {
+        File thumbnail = FileSecureHelper.getThumbnailFile(context, capture);
+        String key = thumbnail.getAbsolutePath();
+        cancel(target);
+        target.setTag(key);
+
+        Bitmap cached = thumbnailCache.get(key);
+        if (cached != null) {
+            target.setImageBitmap(cached);
+            return;
+        }
+        target.setImageResource(placeholderRes);
+        submit(target, key, () -> {
+            if (!thumbnail.exists() && !backfillThumbnail(capture, thumbnail)) return null;
+            // Stored thumbnails are already small: decoded whole (inSampleSize 1)
+            int max = FileSecureHelper.THUMB_MAX_DIMENSION;
+            Bitmap bitmap = decode(thumbnail, max, max);
+            if (bitmap != null) thumbnailCache.put(key, bitmap);
+            return bitmap;
+        });
+    }
+
+    private interface DecodeTask {
+        Bitmap run();
+    }
+
+    private void submit(ImageView target, String key, DecodeTask task) {
+        Future<?> future = decodeExecutor.submit(() -> {
+            Bitmap bitmap = task.run();
+            mainHandler.post(() -> {
+                if (bitmap != null && key.equals(target.getTag())) {
+                    target.setImageBitmap(bitmap);
+                }
+            });
+        });
+        synchronized (pending) {
+            pending.put(target, future);
+        }
+    }
+
+    /**
+     * Legacy captures (no thumbnail): decode the full file once, subsampled, and store the
+     * result in the vault so the grid never has to touch the full file again.
+     */
+    private boolean backfillThumbnail(File capture, File thumbnail) {
+        if (!capture.exists()) return false;
+        int max = FileSecureHelper.THUMB_MAX_DIMENSION;
+        Bitmap decoded = decode(capture, max, max);
+        if (decoded == null) return false;
+        // inSampleSize only gets within 2x of the target; finish the scale here
+        float scale = Math.min(1f, (float) max / Math.max(decoded.getWidth(), decoded.getHeight()));
+        Bitmap bitmap = scale < 1f
+                ? Bitmap.createScaledBitmap(decoded, Math.round(decoded.getWidth() * scale),
+                        Math.round(decoded.getHeight() * scale), true)
+                : decoded;
+        if (bitmap != decoded) decoded.recycle();
+
+        File directory = thumbnail.getParentFile();
+        if (directory != null && !directory.exists()) {
+            directory.mkdirs();
+        }
+        // Orientation is already applied to the decoded bitmap
+        try (OutputStream out = vault.openOutput(thumbnail)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, BACKFILL_QUALITY, out);
+            Log.d(TAG, "Backfilled thumbnail for " + capture.getName());
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Thumbnail backfill failed for " + capture.getName() + ": " + e.getMessage());
+            thumbnail.delete();
+            return false;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Stops any decode still running for this view.
+     */
+    public void cancel(ImageView target) {
+        synchronized (pending) {
+            Future<?> previous = pending.remove(target);
+            if (previous != null) previous.cancel(true);
+        }
+    }
+
+    /**
+     * Decodes an evidence file to at least reqWidth x reqHeight (power-of-two subsampled)
+     * with EXIF orientation applied. Blocking; call off the main thread.
+     * @return the bitmap, or null if the file cannot be read or authenticated.
+     */
+    public Bitmap decode(File file, int reqWidth, int reqHeight) {
+        try {
+            int orientation;
+            try (InputStream in = vault.openInputStream(file)) {
+                orientation = JpegExifInjector.readOrientation(in);
+            }
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            try (InputStream in = vault.openInputStream(file)) {
+                BitmapFactory.decodeStream(in, null, options);
+            }
+            if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+            // Bounds are in sensor orientation; compare against the rotated request
+            boolean swapped = orientation >= JpegExifInjector.ORIENTATION_TRANSPOSE;
+            int targetW = swapped ? reqHeight : reqWidth;
+            int targetH = swapped ? reqWidth : reqHeight;
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, targetW, targetH);
+            options.inJustDecodeBounds = false;
+
+            Bitmap bitmap;
+            try (InputStream in = vault.openInputStream(file)) {
+                bitmap = BitmapFactory.decodeStream(in, null, options);
+            }
+            return bitmap != null ? applyOrientation(bitmap, orientation) : null;
+        } catch (IOException e) {
+            Log.e(TAG, "Evidence decode failed for " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Applies an EXIF orientation value to a bitmap (recycling the source if a copy is made).
+     */
+    public static Bitmap applyOrientation(Bitmap source, int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case JpegExifInjector.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case JpegExifInjector.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case JpegExifInjector.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case JpegExifInjector.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case JpegExifInjector.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case JpegExifInjector.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case JpegExifInjector.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                return source;
+        }
+        Bitmap rotated = Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, true);
+        if (rotated != source) source.recycle();
+        return rotated;
+    }
+}
@@ -0,0 +1,412 @@
+package com.hfs.security.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import com.hfs.security.models.IntruderLog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Indexed metadata store for intruder evidence (SQLite).
+ * Replaces the History screen's directory scan (listFiles + length/lastModified per file +
+ * sort on every refresh) and the file-name parsing that never matched FileSecureHelper's names.
+ *
+ * Logic:
+ * 1. Written at capture time: FileSecureHelper records the file, IntruderAlertPipeline attaches
+ *    the incident (ID, trigger, target app), then location and upload state as they arrive.
+ *    DriveUploadWorker records background uploads and their Drive links.
+ * 2. Read with keyset paging (captured_at, _id descending) and optional filters, always
+ *    off the main thread. Every filter column is covered by an index with captured_at.
+ * 3. On first creation the existing intruders directory is imported once, so older
+ *    captures stay visible (app and trigger unknown for those).
+ * 4. Every write that changes rows notifies OnChangeListeners; EvidencePagingSource uses
+ *    this to invalidate the History pages (the grid then diffs old against new).
+ */
+public class EvidenceIndex extends SQLiteOpenHelper {
+
+    private static final String TAG = "HFS_EvidenceIndex";
+    private static final String DATABASE_NAME = "hfs_evidence.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE = "evidence";
+    private static final String COL_ID = "_id";
+    private static final String COL_INCIDENT = "incident_id";
+    private static final String COL_PATH = "file_path";
+    private static final String COL_CAPTURED_AT = "captured_at";
+    private static final String COL_TRIGGER = "trigger_type";
+    private static final String COL_APP = "target_app";
+    private static final String COL_LOCATION = "location";
+    private static final String COL_SIZE = "size_bytes";
+    private static final String COL_UPLOAD_STATE = "upload_state";
+    private static final String COL_DRIVE_LINK = "drive_link";
+
+    // Upload states (ordered: a state only ever moves forward)
+    // FAILED sorts below LOCAL: it still counts as "not uploaded" and a later enqueue can move it forward
+    public static final int UPLOAD_FAILED = -1;
+    public static final int UPLOAD_LOCAL = 0;
+    public static final int UPLOAD_QUEUED = 1;
+    public static final int UPLOAD_PREVIEW = 2;
+    public static final int UPLOAD_DONE = 3;
+
+    private static final String[] COLUMNS = {COL_ID, COL_INCIDENT, COL_PATH, COL_CAPTURED_AT, COL_TRIGGER,
+            COL_APP, COL_LOCATION, COL_SIZE, COL_UPLOAD_STATE, COL_DRIVE_LINK};
+
+    private static EvidenceIndex instance;
+
+    private final Context context;
+    private final List<OnChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Called on the writing thread after rows were inserted, updated or deleted.
+     */
+    public interface OnChangeListener {
+        void onEvidenceChanged();
+    }
+    /**
+     * Evidence storage totals (size_bytes includes previews and thumbnails).
+     */
+    public static final class Usage {
+        public final long count;
+        public final long bytes;
+        public final long notUploadedCount;
+        public final long notUploadedBytes;
+
+        Usage(long count, long bytes, long notUploadedCount, long notUploadedBytes) {
+            this.count = count;
+            this.bytes = bytes;
+            this.notUploadedCount = notUploadedCount;
+            this.notUploadedBytes = notUploadedBytes;
+        }
+    }
+
+    /**
+     * Query filter; null / negative fields match everything.
+     */
+    public static final class Filter {
+        public String targetApp;
+        public String triggerType;
+        public int maxUploadState = -1;
+
+        public static Filter all() {
+            return new Filter();
+        }
+
+        public static Filter forApp(String targetApp) {
+            Filter filter = new Filter();
+            filter.targetApp = targetApp;
+            return filter;
+        }
+
+        /**
+         * Captures that are not fully on Drive yet.
+         */
+        public static Filter notUploaded() {
+            Filter filter = new Filter();
+            filter.maxUploadState = UPLOAD_PREVIEW;
+            return filter;
+        }
+    }
+
+    private EvidenceIndex(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+    }
+
+    public static synchronized EvidenceIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new EvidenceIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public void addOnChangeListener(OnChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeOnChangeListener(OnChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyChanged(boolean changed) {
+        if (!changed) return;
+        for (OnChangeListener listener : listeners) {
+            listener.onEvidenceChanged();
+        }
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COL_INCIDENT + " TEXT, "
+                + COL_PATH + " TEXT NOT NULL UNIQUE, "
+                + COL_CAPTURED_AT + " INTEGER NOT NULL, "
+                + COL_TRIGGER + " TEXT, "
+                + COL_APP + " TEXT, "
+                + COL_LOCATION + " TEXT, "
+                + COL_SIZE + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_UPLOAD_STATE + " INTEGER NOT NULL DEFAULT " + UPLOAD_LOCAL + ", "
+                + COL_DRIVE_LINK + " TEXT)");
+        db.execSQL("CREATE INDEX idx_evidence_time ON " + TABLE + " (" + COL_CAPTURED_AT + ", " + COL_ID + ")");
+        db.execSQL("CREATE INDEX idx_evidence_app ON " + TABLE + " (" + COL_APP + ", " + COL_CAPTURED_AT + ")");
+        db.execSQL("CREATE INDEX idx_evidence_upload ON " + TABLE + " (" + COL_UPLOAD_STATE + ", " + COL_CAPTURED_AT + ")");
+        db.execSQL("CREATE INDEX idx_evidence_incident ON " + TABLE + " (" + COL_INCIDENT + ")");
+        importExistingCaptures(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Version 1 is the first schema
+    }
+
+    /**
+     * One-time import of captures that predate the index (file facts only).
+     */
+    private void importExistingCaptures(SQLiteDatabase db) {
+        File[] files = FileSecureHelper.getCaptureDirectory(context).listFiles((dir, name) -> name.endsWith(".jpg"));
+        if (files == null) return;
+        for (File file : files) {
+            ContentValues values = new ContentValues();
+            values.put(COL_PATH, file.getAbsolutePath());
+            values.put(COL_CAPTURED_AT, file.lastModified());
+            values.put(COL_SIZE, FileSecureHelper.getDiskUsage(context, file));
+            db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        }
+        Log.i(TAG, "Imported " + files.length + " existing captures into the evidence index.");
+    }
+
+    // --- WRITES ---
+
+    /**
+     * Called by FileSecureHelper once the capture, its preview and its thumbnail are on disk.
+     *
+     * @param sizeBytes Disk usage of all three (what evicting the capture frees).
+     */
+    public void recordCapture(File file, long capturedAt, long sizeBytes) {
+        ContentValues values = new ContentValues();
+        values.put(COL_PATH, file.getAbsolutePath());
+        values.put(COL_CAPTURED_AT, capturedAt);
+        values.put(COL_SIZE, sizeBytes);
+        notifyChanged(getWritableDatabase().insertWithOnConflict(
+                TABLE, null, values, SQLiteDatabase.CONFLICT_IGNORE) != -1);
+    }
+
+    /**
+     * Links a capture to the alert that triggered it.
+     */
+    public void attachIncident(File file, String incidentId, String triggerType, String targetApp) {
+        ContentValues values = new ContentValues();
+        values.put(COL_INCIDENT, incidentId);
+        values.put(COL_TRIGGER, triggerType);
+        values.put(COL_APP, targetApp);
+        notifyChanged(getWritableDatabase().update(
+                TABLE, values, COL_PATH + " = ?", new String[]{file.getAbsolutePath()}) > 0);
+    }
+
+    public void updateLocation(String incidentId, String location) {
+        if (incidentId == null || location == null) return;
+        ContentValues values = new ContentValues();
+        values.put(COL_LOCATION, location);
+        notifyChanged(getWritableDatabase().update(
+                TABLE, values, COL_INCIDENT + " = ?", new String[]{incidentId}) > 0);
+    }
+
+    /**
+     * Upload state for a capture, or for its preview (recorded against the original).
+     * States only move forward; the full-resolution link replaces a preview link.
+     */
+    public void updateUpload(File uploadedFile, int state, String driveLink) {
+        File capture = FileSecureHelper.getCaptureForDerived(context, uploadedFile);
+        boolean isPreview = !capture.equals(uploadedFile);
+        int recorded = isPreview && state == UPLOAD_DONE ? UPLOAD_PREVIEW : state;
+
+        ContentValues values = new ContentValues();
+        values.put(COL_UPLOAD_STATE, recorded);
+        if (driveLink != null) {
+            values.put(COL_DRIVE_LINK, driveLink);
+        }
+        // Forward-only also keeps a preview link from replacing the full-resolution one
+        String where = COL_PATH + " = ? AND " + COL_UPLOAD_STATE + " < ?";
+        notifyChanged(getWritableDatabase().update(TABLE, values, where,
+                new String[]{capture.getAbsolutePath(), String.valueOf(recorded)}) > 0);
+    }
+
+    /**
+     * The upload was given up for good (rejected by Drive or unreadable vault file).
+     * Only replaces LOCAL/QUEUED, so a capture whose preview already reached Drive keeps its link.
+     */
+    public void markUploadFailed(File uploadedFile) {
+        File capture = FileSecureHelper.getCaptureForDerived(context, uploadedFile);
+        ContentValues values = new ContentValues();
+        values.put(COL_UPLOAD_STATE, UPLOAD_FAILED);
+        String where = COL_PATH + " = ? AND " + COL_UPLOAD_STATE + " < ?";
+        notifyChanged(getWritableDatabase().update(TABLE, values, where,
+                new String[]{capture.getAbsolutePath(), String.valueOf(UPLOAD_PREVIEW)}) > 0);
+    }
+
+    public void delete(File file) {
+        notifyChanged(getWritableDatabase().delete(
+                TABLE, COL_PATH + " = ?", new String[]{file.getAbsolutePath()}) > 0);
+    }
+
+    /**
+     * Removes many rows in one transaction (one change notification for the batch).
+     */
+    public void delete(List<File> files) {
+        SQLiteDatabase db = getWritableDatabase();
+        int deleted = 0;
+        db.beginTransaction();
+        try {
+            for (File file : files) {
+                deleted += db.delete(TABLE, COL_PATH + " = ?", new String[]{file.getAbsolutePath()});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyChanged(deleted > 0);
+    }
+
+    public void deleteAll() {
+        notifyChanged(getWritableDatabase().delete(TABLE, "1", null) > 0);
+    }
+
+    // --- READS (background threads only) ---
+
+    /**
+     * One page, newest first, older than from (or starting at from when inclusive; null
+     * starts at the newest). Keyset paging keeps every page an index range scan.
+     */
+    public List<IntruderLog> queryOlder(Filter filter, IntruderLog from, boolean inclusive, int limit) {
+        StringBuilder where = new StringBuilder("1");
+        List<String> args = new ArrayList<>();
+        appendFilter(filter, where, args);
+        if (from != null) {
+            appendKeyset(where, args, from, inclusive ? "<=" : "<");
+        }
+        return query(where, args, COL_CAPTURED_AT + " DESC, " + COL_ID + " DESC", limit);
+    }
+
+    /**
+     * The limit records just newer than before, returned newest first like queryOlder()
+     * so pages can be prepended as-is.
+     */
+    public List<IntruderLog> queryNewer(Filter filter, IntruderLog before, int limit) {
+        StringBuilder where = new StringBuilder("1");
+        List<String> args = new ArrayList<>();
+        appendFilter(filter, where, args);
+        appendKeyset(where, args, before, ">");
+        List<IntruderLog> page = query(where, args, COL_CAPTURED_AT + " ASC, " + COL_ID + " ASC", limit);
+        Collections.reverse(page);
+        return page;
+    }
+
+    private List<IntruderLog> query(StringBuilder where, List<String> args, String orderBy, int limit) {
+        List<IntruderLog> page = new ArrayList<>(limit);
+        try (Cursor c = getReadableDatabase().query(TABLE, COLUMNS, where.toString(),
+                args.toArray(new String[0]), null, null, orderBy, String.valueOf(limit))) {
+            while (c.moveToNext()) {
+                page.add(new IntruderLog(
+                        c.getLong(0), c.getString(1), c.getString(2), c.getLong(3), c.getString(4),
+                        c.getString(5), c.getString(6), c.getLong(7), c.getInt(8), c.getString(9)));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * (captured_at, _id) compared as a pair against the key record; op is <, <= or >.
+     */
+    private static void appendKeyset(StringBuilder where, List<String> args, IntruderLog key, String op) {
+        String strict = op.substring(0, 1);
+        where.append(" AND (").append(COL_CAPTURED_AT).append(' ').append(strict).append(" ? OR (")
+                .append(COL_CAPTURED_AT).append(" = ? AND ").append(COL_ID).append(' ').append(op).append(" ?))");
+        args.add(String.valueOf(key.getTimestamp()));
+        args.add(String.valueOf(key.getTimestamp()));
+        args.add(String.valueOf(key.getId()));
+    }
+
+    public long count(Filter filter) {
+        StringBuilder where = new StringBuilder("1");
+        List<String> args = new ArrayList<>();
+        appendFilter(filter, where, args);
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE, where.toString(),
+                args.toArray(new String[0]));
+    }
+
+    /**
+     * Records newer (newer = true) or older than key; the placeholder counts around a page.
+     */
+    public long countBeyond(Filter filter, IntruderLog key, boolean newer) {
+        StringBuilder where = new StringBuilder("1");
+        List<String> args = new ArrayList<>();
+        appendFilter(filter, where, args);
+        appendKeyset(where, args, key, newer ? ">" : "<");
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE, where.toString(),
+                args.toArray(new String[0]));
+    }
+
+    /**
+     * Totals for the Settings screen and the retention budget (one aggregate query).
+     */
+    public Usage getUsage() {
+        String notUploaded = COL_UPLOAD_STATE + " < " + UPLOAD_DONE;
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT COUNT(*), TOTAL(" + COL_SIZE + "), "
+                + "TOTAL(CASE WHEN " + notUploaded + " THEN 1 ELSE 0 END), "
+                + "TOTAL(CASE WHEN " + notUploaded + " THEN " + COL_SIZE + " ELSE 0 END) FROM " + TABLE, null)) {
+            c.moveToFirst();
+            return new Usage(c.getLong(0), c.getLong(1), c.getLong(2), c.getLong(3));
+        }
+    }
+
+    /**
+     * Eviction candidates: fully uploaded captures, oldest first (idx_evidence_upload range).
+     * Evidence that is not on Drive yet is never returned.
+     */
+    public List<IntruderLog> queryEvictable(int limit) {
+        StringBuilder where = new StringBuilder(COL_UPLOAD_STATE + " = ?");
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(UPLOAD_DONE));
+        return query(where, args, COL_CAPTURED_AT + " ASC, " + COL_ID + " ASC", limit);
+    }
+
+    /**
+     * Target apps that have evidence, for the History filter.
+     */
+    public List<String> getTargetApps() {
+        List<String> apps = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(true, TABLE, new String[]{COL_APP},
+                COL_APP + " IS NOT NULL", null, null, null, COL_APP, null)) {
+            while (c.moveToNext()) {
+                apps.add(c.getString(0));
+            }
+        }
+        return apps;
+    }
+
+    private static void appendFilter(Filter filter, StringBuilder where, List<String> args) {
+        if (filter == null) return;
+        if (filter.targetApp != null) {
+            where.append(" AND ").append(COL_APP).append(" = ?");
+            args.add(filter.targetApp);
+        }
+        if (filter.triggerType != null) {
+            where.append(" AND ").append(COL_TRIGGER).append(" = ?");
+            args.add(filter.triggerType);
+        }
+        if (filter.maxUploadState >= 0) {
+            where.append(" AND ").append(COL_UPLOAD_STATE).append(" <= ?");
+            args.add(String.valueOf(filter.maxUploadState));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.hfs.security.utils;
+
+import android.database.SQLException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingState;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.hfs.security.models.IntruderLog;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/**
+ * Paging 3 source for the History grid, backed by EvidenceIndex keyset queries.
+ *
+ * Logic:
+ * 1. The key is a record: a refresh loads from that record (inclusive), an append loads
+ *    records older than the last one, a prepend loads records newer than the first one.
+ *    Every load is an index range scan, however deep the user has scrolled.
+ * 2. Loads run on a dedicated background thread, never on the main thread.
+ * 3. Any change to the index invalidates the source; the next source refreshes around the
+ *    record the user was looking at, and PagingDataAdapter diffs the pages so only the
+ *    rows that changed are rebound.
+ * 4. With countPlaceholders, a refresh also counts the records before and after it, so a
+ *    pager with placeholders gives every record a fixed position (the evidence viewer
+ *    opens at the tapped record and swipes both ways without positions shifting).
+ */
+public class EvidencePagingSource extends ListenableFuturePagingSource<IntruderLog, IntruderLog> {
+
+    private static final ListeningExecutorService QUERY_EXECUTOR =
+            MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+
+    private final EvidenceIndex index;
+    private final EvidenceIndex.Filter filter;
+    private final boolean countPlaceholders;
+    private final EvidenceIndex.OnChangeListener invalidator = this::invalidate;
+
+    public EvidencePagingSource(EvidenceIndex index, EvidenceIndex.Filter filter) {
+        this(index, filter, false);
+    }
+
+    public EvidencePagingSource(EvidenceIndex index, EvidenceIndex.Filter filter, boolean countPlaceholders) {
+        this.index = index;
+        this.filter = filter;
+        this.countPlaceholders = countPlaceholders;
+        index.addOnChangeListener(invalidator);
+        registerInvalidatedCallback(() -> {
+            index.removeOnChangeListener(invalidator);
+            return kotlin.Unit.INSTANCE;
+        });
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<IntruderLog, IntruderLog>> loadFuture(@NonNull LoadParams<IntruderLog> params) {
+        return QUERY_EXECUTOR.submit(() -> load(params));
+    }
+
+    private LoadResult<IntruderLog, IntruderLog> load(LoadParams<IntruderLog> params) {
+        IntruderLog key = params.getKey();
+        int size = params.getLoadSize();
+        try {
+            if (params instanceof LoadParams.Prepend) {
+                List<IntruderLog> page = index.queryNewer(filter, key, size);
+                return page(page, page.size() == size, false);
+            }
+            boolean append = params instanceof LoadParams.Append;
+            List<IntruderLog> page = index.queryOlder(filter, key, !append, size);
+            if (page.isEmpty() && key != null && !append) {
+                // Everything from the refresh key down is gone: start again at the top
+                key = null;
+                page = index.queryOlder(filter, null, true, size);
+            }
+            if (!append && countPlaceholders && !page.isEmpty()) {
+                return new LoadResult.Page<>(page,
+                        key != null ? page.get(0) : null,
+                        page.size() == size ? page.get(page.size() - 1) : null,
+                        (int) index.countBeyond(filter, page.get(0), true),
+                        (int) index.countBeyond(filter, page.get(page.size() - 1), false));
+            }
+            return page(page, key != null, page.size() == size);
+        } catch (SQLException e) {
+            return new LoadResult.Error<>(e);
+        }
+    }
+
+    /**
+     * Keys are the page's own first and last records (null when that end is known to be
+     * the end), so a page dropped by maxSize reloads exactly.
+     */
+    private static LoadResult<IntruderLog, IntruderLog> page(List<IntruderLog> page, boolean newerMayExist,
+                                                           boolean olderMayExist) {
+        boolean empty = page.isEmpty();
+        return new LoadResult.Page<>(page,
+                newerMayExist && !empty ? page.get(0) : null,
+                olderMayExist && !empty ? page.get(page.size() - 1) : null);
+    }
+
+    /**
+     * Refresh from half an initial load above the anchor, so the visible rows stay put.
+     */
+    @Nullable
+    @Override
+    public IntruderLog getRefreshKey(@NonNull PagingState<IntruderLog, IntruderLog> state) {
+        Integer anchor = state.getAnchorPosition();
+        if (anchor == null) return null;
+        return state.closestItemToPosition(Math.max(0, anchor - state.getConfig().initialLoadSize / 2));
+    }
+}
@@ -0,0 +1,229 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypted storage for intruder evidence (captures and previews).
+ * Files keep their names and locations; their contents are ChunkedAeadFile streams.
+ *
+ * Logic:
+ * 1. Envelope encryption: each file gets a random AES-256 data key that encrypts its chunks
+ *    in software; the data key is wrapped by a non-exportable Android Keystore key. One
+ *    Keystore operation per file instead of one per 64 KiB chunk.
+ * 2. Writers stream plaintext through ChunkedAeadFile.Writer straight to disk; nothing
+ *    larger than one chunk is held in memory.
+ * 3. Readers decrypt chunk by chunk with random access (thumbnails, viewer, Drive upload).
+ *    Unwrapped data keys are cached briefly so scrolling the history grid does not hit the
+ *    Keystore for every bind.
+ * 4. Files written before the vault existed (plain JPEG) are still readable as-is.
+ */
+public class EvidenceVault {
+
+    private static final String TAG = "HFS_EvidenceVault";
+    private static final String ANDROID_KEYSTORE = "AndroidKeyStore";
+    private static final String ALIAS = "hfs_evidence_vault_key";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int DATA_KEY_BYTES = 32;
+    private static final int WRAP_IV_BYTES = 12;
+    private static final int KEY_CACHE_SIZE = 32;
+
+    private static EvidenceVault instance;
+
+    private final ChunkedAeadFile.KeyWrapper keyWrapper = new KeystoreKeyWrapper();
+    // Keystore handle of the master key, loaded once (guarded by this)
+    private SecretKey masterKey;
+
+    // Wrapped key (as string) -> unwrapped data key
+    private final Map<String, SecretKey> keyCache =
+            new LinkedHashMap<String, SecretKey>(KEY_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SecretKey> eldest) {
+                    return size() > KEY_CACHE_SIZE;
+                }
+            };
+
+    private EvidenceVault() {
+    }
+
+    public static synchronized EvidenceVault getInstance(Context context) {
+        if (instance == null) {
+            instance = new EvidenceVault();
+        }
+        return instance;
+    }
+
+    // --- WRITE ---
+
+    /**
+     * Opens an encrypting stream to file. The file is only valid once the stream is closed.
+     */
+    public OutputStream openOutput(File file) throws IOException {
+        OutputStream raw = new BufferedOutputStream(new FileOutputStream(file), ChunkedAeadFile.CHUNK_SIZE / 4);
+        try {
+            return new ChunkedAeadFile.Writer(raw, keyWrapper);
+        } catch (IOException e) {
+            raw.close();
+            file.delete();
+            throw e;
+        }
+    }
+
+    // --- READ ---
+
+    /**
+     * Random-access plaintext view of an evidence file (vault or legacy plaintext).
+     */
+    public EvidenceReader openReader(File file) throws IOException {
+        if (ChunkedAeadFile.isVaultFile(file)) {
+            return new EvidenceReader(new ChunkedAeadFile.Reader(file, keyWrapper), null);
+        }
+        return new EvidenceReader(null, new RandomAccessFile(file, "r"));
+    }
+
+    /**
+     * Sequential plaintext stream (closing it closes the underlying file).
+     */
+    public InputStream openInputStream(File file) throws IOException {
+        if (ChunkedAeadFile.isVaultFile(file)) {
+            return new ChunkedAeadFile.Reader(file, keyWrapper).openStream(0);
+        }
+        return new FileInputStream(file);
+    }
+
+    /**
+     * Uniform random access over encrypted and legacy plaintext evidence.
+     */
+    public static final class EvidenceReader implements Closeable {
+        private final ChunkedAeadFile.Reader vault;
+        private final RandomAccessFile plain;
+
+        private EvidenceReader(ChunkedAeadFile.Reader vault, RandomAccessFile plain) {
+            this.vault = vault;
+            this.plain = plain;
+        }
+
+        public long length() throws IOException {
+            return vault != null ? vault.length() : plain.length();
+        }
+
+        public void readFully(long position, byte[] b, int off, int len) throws IOException {
+            if (vault != null) {
+                vault.readFully(position, b, off, len);
+            } else {
+                plain.seek(position);
+                plain.readFully(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (vault != null) vault.close();
+            else plain.close();
+        }
+    }
+
+    // --- KEYS ---
+
+    /**
+     * Loads (or creates, once) the Keystore master key. Synchronized: two writers generating
+     * ALIAS at the same time would leave every data key wrapped by the first key unreadable.
+     */
+    private synchronized SecretKey getMasterKey() throws GeneralSecurityException, IOException {
+        if (masterKey != null) return masterKey;
+        KeyStore keyStore = KeyStore.getInstance(ANDROID_KEYSTORE);
+        keyStore.load(null);
+        if (!keyStore.containsAlias(ALIAS)) {
+            KeyGenerator keyGenerator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, ANDROID_KEYSTORE);
+            keyGenerator.init(new KeyGenParameterSpec.Builder(
+                    ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            masterKey = keyGenerator.generateKey();
+            Log.i(TAG, "Evidence vault key generated.");
+        } else {
+            masterKey = ((KeyStore.SecretKeyEntry) keyStore.getEntry(ALIAS, null)).getSecretKey();
+        }
+        return masterKey;
+    }
+
+    /**
+     * Data keys wrapped as IV(12) | AES-GCM(masterKey, rawKey) | tag.
+     */
+    private final class KeystoreKeyWrapper implements ChunkedAeadFile.KeyWrapper {
+        private final SecureRandom random = new SecureRandom();
+
+        @Override
+        public SecretKey newDataKey() {
+            byte[] raw = new byte[DATA_KEY_BYTES];
+            random.nextBytes(raw);
+            return new SecretKeySpec(raw, "AES");
+        }
+
+        @Override
+        public byte[] wrap(SecretKey dataKey) throws GeneralSecurityException {
+            try {
+                Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+                // Keystore picks the IV (randomized encryption is enforced)
+                cipher.init(Cipher.ENCRYPT_MODE, getMasterKey());
+                byte[] iv = cipher.getIV();
+                byte[] sealed = cipher.doFinal(dataKey.getEncoded());
+                byte[] wrapped = Arrays.copyOf(iv, iv.length + sealed.length);
+                System.arraycopy(sealed, 0, wrapped, iv.length, sealed.length);
+                return wrapped;
+            } catch (IOException e) {
+                throw new GeneralSecurityException("Keystore unavailable", e);
+            }
+        }
+
+        @Override
+        public SecretKey unwrap(byte[] wrappedKey) throws GeneralSecurityException {
+            String cacheKey = Base64.encodeToString(wrappedKey, Base64.NO_WRAP);
+            synchronized (keyCache) {
+                SecretKey cached = keyCache.get(cacheKey);
+                if (cached != null) return cached;
+            }
+            try {
+                Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+                cipher.init(Cipher.DECRYPT_MODE, getMasterKey(),
+                        new GCMParameterSpec(128, wrappedKey, 0, WRAP_IV_BYTES));
+                SecretKey key = new SecretKeySpec(
+                        cipher.doFinal(wrappedKey, WRAP_IV_BYTES, wrappedKey.length - WRAP_IV_BYTES), "AES");
+                synchronized (keyCache) {
+                    keyCache.put(cacheKey, key);
+                }
+                return key;
+            } catch (IOException e) {
+                throw new GeneralSecurityException("Keystore unavailable", e);
+            }
+        }
+    }
+}
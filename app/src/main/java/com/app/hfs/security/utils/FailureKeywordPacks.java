@@ -0,0 +1,86 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import com.hfs.security.services.FailureTextMatcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Loads the biometric failure keyword packs from assets/failure_keywords and compiles
+ * them into a FailureTextMatcher.
+ *
+ * Pack resolution (all found packs are merged):
+ * 1. en.txt (always, systemui falls back to English on partially translated ROMs).
+ * 2. <language>.txt and <language>-<COUNTRY>.txt for the current locale.
+ * 3. oem/<manufacturer>.txt for OEM-specific wording (Realme/OnePlus share the Oppo pack).
+ *
+ * Format: one phrase per line, '#' starts a comment line. Matching is case-insensitive.
+ */
+public final class FailureKeywordPacks {
+
+    private static final String TAG = "HFS_KeywordPacks";
+    private static final String PACK_DIR = "failure_keywords/";
+    private static final String FALLBACK_PACK = "en";
+
+    private FailureKeywordPacks() {}
+
+    public static FailureTextMatcher load(Context context, Locale locale) {
+        Set<String> keywords = new LinkedHashSet<>();
+        readPack(context, PACK_DIR + FALLBACK_PACK + ".txt", keywords);
+
+        String language = locale.getLanguage();
+        // Indonesian is "in" on Android but "id" on newer JDK-style locales
+        if ("id".equals(language)) language = "in";
+        if (!language.isEmpty() && !FALLBACK_PACK.equals(language)) {
+            readPack(context, PACK_DIR + language + ".txt", keywords);
+        }
+        if (!locale.getCountry().isEmpty()) {
+            readPack(context, PACK_DIR + language + "-" + locale.getCountry() + ".txt", keywords);
+        }
+
+        readPack(context, PACK_DIR + "oem/" + oemPackName() + ".txt", keywords);
+
+        FailureTextMatcher matcher = new FailureTextMatcher(keywords);
+        Log.d(TAG, "Failure matcher built: " + matcher.getKeywordCount() + " phrases for " + locale);
+        return matcher;
+    }
+
+    private static String oemPackName() {
+        String manufacturer = Build.MANUFACTURER != null ? Build.MANUFACTURER.toLowerCase(Locale.US) : "";
+        switch (manufacturer) {
+            case "realme":
+            case "oneplus":
+                return "oppo";
+            case "redmi":
+            case "poco":
+                return "xiaomi";
+            default:
+                return manufacturer;
+        }
+    }
+
+    private static void readPack(Context context, String assetPath, Set<String> out) {
+        try (InputStream in = context.getAssets().open(assetPath);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    out.add(line);
+                }
+            }
+        } catch (IOException e) {
+            // Missing pack for this locale/OEM is normal
+        }
+    }
+}
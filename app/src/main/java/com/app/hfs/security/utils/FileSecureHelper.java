@@ -1,65 +1,253 @@
 package com.hfs.security.utils;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.ImageFormat;
-import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.YuvImage;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.camera.core.ImageProxy;
 
-import java.io.ByteArrayOutputStream;
+import com.hfs.security.diagnostics.CaptureLatencyTracker;
+
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 /**
  * Data Storage Utility.
  * FIXED: Added saveIntruderCaptureAndGetFile to support Google Drive uploads.
  * This class handles the conversion of live camera frames into secure local JPEG files.
+ * UPDATED: Also writes a small preview JPEG at capture time, sized for the current
+ * NetworkProfile, so the alert SMS can carry a link within seconds on slow networks.
+ * UPDATED: Single-pass capture. The NV21 frame is encoded to JPEG exactly once, in sensor
+ * orientation; rotation and front-camera mirroring are recorded as EXIF orientation
+ * (JpegExifInjector) and applied by the viewer. No Bitmap decode/rotate/re-encode round trip.
+ * UPDATED: YUV_420_888 planes are converted stride-correctly into pooled NV21 buffers
+ * (YuvToNv21Converter); the old plane concatenation broke on padded or planar layouts.
+ * UPDATED: Captures and previews are encrypted at rest (EvidenceVault). The encoder writes
+ * through the EXIF inserter and the chunked AES-GCM stream straight to disk, so the JPEG
+ * never exists as a whole in memory or as plaintext on storage. Read evidence back through
+ * EvidenceVault (or EvidenceImageLoader for display), never with a plain file stream.
+ * UPDATED: A grid thumbnail is encoded from the same NV21 frame at capture time, so the
+ * history grid never decodes a full-resolution capture.
+ * UPDATED: Every capture is recorded in EvidenceIndex once it, its preview and its thumbnail
+ * are on disk, together with their combined size (used by EvidenceRetentionWorker).
  */
 public class FileSecureHelper {
 
     private static final String TAG = "HFS_FileSecure";
     private static final String INTRUDER_DIR = "intruders";
+    // Kept out of INTRUDER_DIR so the history grid only shows originals
+    private static final String PREVIEW_DIR = "intruder_previews";
+    private static final String PREVIEW_SUFFIX = "_preview.jpg";
+    // Grid thumbnails, also kept out of INTRUDER_DIR
+    private static final String THUMB_DIR = "intruder_thumbs";
+    private static final String THUMB_SUFFIX = "_thumb.jpg";
+    // A two-column grid cell is ~540 px wide on a 1080p phone; 384 px is plenty after centerCrop
+    public static final int THUMB_MAX_DIMENSION = 384;
+    private static final int THUMB_QUALITY = 75;
+    private static final int JPEG_QUALITY = 90;
+    // Intruder captures always come from the front camera
+    private static final boolean MIRRORED = true;
+    // Capture and preview share the frame, so two pooled buffers cover back-to-back captures
+    private static final YuvToNv21Converter NV21_CONVERTER = new YuvToNv21Converter(2);
 
     /**
      * NEW: Saves the capture and returns the File object for Google Drive upload.
      * Required by LockScreenActivity to process cloud sync.
      */
     public static File saveIntruderCaptureAndGetFile(Context context, ImageProxy imageProxy) {
-        Bitmap bitmap = imageProxyToBitmap(imageProxy);
-        if (bitmap == null) return null;
+        CaptureLatencyTracker tracker = CaptureLatencyTracker.getInstance(context);
+        long start = SystemClock.elapsedRealtimeNanos();
+
+        // 1. YUV_420_888 -> NV21
+        int width = imageProxy.getWidth();
+        int height = imageProxy.getHeight();
+        byte[] nv21 = imageProxyToNv21(imageProxy);
+        if (nv21 == null) return null;
+        long converted = SystemClock.elapsedRealtimeNanos();
 
-        int rotation = imageProxy.getImageInfo().getRotationDegrees();
-        bitmap = rotateBitmap(bitmap, rotation);
+        int orientation = JpegExifInjector.orientationFor(
+                imageProxy.getImageInfo().getRotationDegrees(), MIRRORED);
 
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        long capturedAt = System.currentTimeMillis();
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date(capturedAt));
         String fileName = "HFS_INTRUDER_" + timestamp + ".jpg";
 
-        File directory = new File(context.getExternalFilesDir(null), INTRUDER_DIR);
+        File directory = getCaptureDirectory(context);
         if (!directory.exists()) {
             directory.mkdirs();
         }
 
         File file = new File(directory, fileName);
+        EvidenceVault vault = EvidenceVault.getInstance(context);
 
-        try (FileOutputStream out = new FileOutputStream(file)) {
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
-            Log.i(TAG, "Local evidence stored for upload: " + file.getAbsolutePath());
-            return file;
+        // 2. The only full-frame encode, streamed through EXIF insertion and encryption to disk
+        long encoded;
+        try {
+            OutputStream out = JpegExifInjector.wrap(vault.openOutput(file), orientation);
+            try {
+                encodeJpeg(nv21, width, height, JPEG_QUALITY, out);
+                encoded = SystemClock.elapsedRealtimeNanos();
+            } finally {
+                // 3. Seals the final chunk
+                out.close();
+            }
+            Log.i(TAG, "Encrypted evidence stored for upload: " + file.getAbsolutePath());
         } catch (IOException e) {
             Log.e(TAG, "File creation failed: " + e.getMessage());
+            file.delete();
+            NV21_CONVERTER.release(nv21);
             return null;
-        } finally {
-            bitmap.recycle();
+        }
+        long written = SystemClock.elapsedRealtimeNanos();
+
+        // 4. Preview straight from the NV21 frame (no decode)
+        savePreview(context, nv21, width, height, orientation, file, NetworkProfile.current(context));
+        long previewed = SystemClock.elapsedRealtimeNanos();
+
+        // 5. Grid thumbnail from the same frame (no decode of the full JPEG, ever)
+        saveDownscaled(context, nv21, width, height, orientation, getThumbnailFile(context, file),
+                THUMB_MAX_DIMENSION, THUMB_QUALITY);
+        NV21_CONVERTER.release(nv21);
+        long done = SystemClock.elapsedRealtimeNanos();
+
+        // 6. History and retention read the index, never the directory
+        EvidenceIndex.getInstance(context).recordCapture(file, capturedAt, getDiskUsage(context, file));
+
+        tracker.record(CaptureLatencyTracker.STAGE_CONVERT, converted - start);
+        tracker.record(CaptureLatencyTracker.STAGE_ENCODE, encoded - converted);
+        tracker.record(CaptureLatencyTracker.STAGE_WRITE, written - encoded);
+        tracker.record(CaptureLatencyTracker.STAGE_PREVIEW, previewed - written);
+        tracker.record(CaptureLatencyTracker.STAGE_THUMBNAIL, done - previewed);
+        tracker.record(CaptureLatencyTracker.STAGE_TOTAL, done - start);
+        return file;
+    }
+
+    /**
+     * @return Directory holding the full-resolution captures.
+     */
+    public static File getCaptureDirectory(Context context) {
+        return new File(context.getExternalFilesDir(null), INTRUDER_DIR);
+    }
+
+    /**
+     * Bytes a capture occupies on disk, together with its preview and thumbnail.
+     */
+    public static long getDiskUsage(Context context, File fullFile) {
+        return fullFile.length() + getPreviewFile(context, fullFile).length()
+                + getThumbnailFile(context, fullFile).length();
+    }
+
+    /**
+     * Maps a preview or thumbnail back to its full-resolution capture (a capture maps to itself).
+     */
+    public static File getCaptureForDerived(Context context, File file) {
+        String name = file.getName();
+        for (String suffix : new String[]{PREVIEW_SUFFIX, THUMB_SUFFIX}) {
+            if (name.endsWith(suffix)) {
+                return new File(getCaptureDirectory(context), name.substring(0, name.length() - suffix.length()) + ".jpg");
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @return Location of the preview for a full-resolution capture (may not exist).
+     */
+    public static File getPreviewFile(Context context, File fullFile) {
+        return new File(new File(context.getExternalFilesDir(null), PREVIEW_DIR), baseName(fullFile) + PREVIEW_SUFFIX);
+    }
+
+    /**
+     * @return Location of the grid thumbnail for a full-resolution capture (may not exist
+     * for captures taken before thumbnails were introduced).
+     */
+    public static File getThumbnailFile(Context context, File fullFile) {
+        return new File(new File(context.getExternalFilesDir(null), THUMB_DIR), baseName(fullFile) + THUMB_SUFFIX);
+    }
+
+    private static String baseName(File fullFile) {
+        String name = fullFile.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Writes a downscaled, aggressively compressed copy sized for the network tier.
+     */
+    private static void savePreview(Context context, byte[] nv21, int width, int height,
+                                    int orientation, File fullFile, NetworkProfile profile) {
+        saveDownscaled(context, nv21, width, height, orientation, getPreviewFile(context, fullFile),
+                profile.getPreviewMaxDimension(), profile.getPreviewQuality());
+    }
+
+    /**
+     * Encodes a small copy of the frame into the vault. The NV21 frame is subsampled by a
+     * power of two, so the result is at most maxDimension on its longest edge and costs one
+     * small encode.
+     */
+    private static void saveDownscaled(Context context, byte[] nv21, int width, int height,
+                                       int orientation, File target, int maxDimension, int quality) {
+        File directory = target.getParentFile();
+        if (directory != null && !directory.exists()) {
+            directory.mkdirs();
+        }
+
+        int factor = 1;
+        while (Math.max(width, height) / factor > maxDimension) {
+            factor <<= 1;
+        }
+        int smallWidth = (width / factor) & ~1;
+        int smallHeight = (height / factor) & ~1;
+        byte[] small = factor == 1 ? nv21 : downsampleNv21(nv21, width, height, factor, smallWidth, smallHeight);
+
+        try (OutputStream out = JpegExifInjector.wrap(
+                EvidenceVault.getInstance(context).openOutput(target), orientation)) {
+            encodeJpeg(small, smallWidth, smallHeight, quality, out);
+            Log.d(TAG, "Stored " + target.getName() + ": " + target.length() + " bytes");
+        } catch (IOException e) {
+            Log.e(TAG, "Downscaled copy failed (" + target.getName() + "): " + e.getMessage());
+            target.delete();
+        }
+    }
+
+    /**
+     * Nearest-neighbour NV21 subsample: every factor-th luma sample and every factor-th VU pair.
+     */
+    private static byte[] downsampleNv21(byte[] src, int width, int height, int factor,
+                                         int outWidth, int outHeight) {
+        byte[] out = new byte[outWidth * outHeight * 3 / 2];
+        int o = 0;
+        for (int y = 0; y < outHeight; y++) {
+            int row = y * factor * width;
+            for (int x = 0; x < outWidth; x++) {
+                out[o++] = src[row + x * factor];
+            }
+        }
+        int chromaBase = width * height;
+        for (int cy = 0; cy < outHeight / 2; cy++) {
+            int row = chromaBase + cy * factor * width;
+            for (int cx = 0; cx < outWidth / 2; cx++) {
+                int s = row + cx * factor * 2;
+                out[o++] = src[s];
+                out[o++] = src[s + 1];
+            }
+        }
+        return out;
+    }
+
+    private static void encodeJpeg(byte[] nv21, int width, int height, int quality, OutputStream out)
+            throws IOException {
+        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
+        if (!yuvImage.compressToJpeg(new Rect(0, 0, width, height), quality, out)) {
+            throw new IOException("JPEG encode failed");
         }
     }
 
@@ -71,53 +259,58 @@ public class FileSecureHelper {
     }
 
     /**
-     * Helper to convert CameraX YUV_420_888 format to Bitmap.
+     * Helper to convert CameraX YUV_420_888 planes to a packed NV21 buffer.
+     * Honours row/pixel strides; the result is pooled and must go back via NV21_CONVERTER.release().
      */
-    private static Bitmap imageProxyToBitmap(ImageProxy image) {
+    private static byte[] imageProxyToNv21(ImageProxy image) {
         try {
             ImageProxy.PlaneProxy[] planes = image.getPlanes();
-            ByteBuffer yBuffer = planes[0].getBuffer();
-            ByteBuffer uBuffer = planes[1].getBuffer();
-            ByteBuffer vBuffer = planes[2].getBuffer();
-
-            int ySize = yBuffer.remaining();
-            int uSize = uBuffer.remaining();
-            int vSize = vBuffer.remaining();
-
-            byte[] nv21 = new byte[ySize + uSize + vSize];
-            yBuffer.get(nv21, 0, ySize);
-            vBuffer.get(nv21, ySize, vSize);
-            uBuffer.get(nv21, ySize + vSize, uSize);
-
-            YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, image.getWidth(), image.getHeight(), null);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            yuvImage.compressToJpeg(new Rect(0, 0, yuvImage.getWidth(), yuvImage.getHeight()), 100, out);
-
-            byte[] imageBytes = out.toByteArray();
-            return BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+            return NV21_CONVERTER.convert(
+                    planes[0].getBuffer(), planes[0].getRowStride(),
+                    planes[1].getBuffer(), planes[2].getBuffer(),
+                    planes[1].getRowStride(), planes[1].getPixelStride(),
+                    image.getWidth(), image.getHeight());
         } catch (Exception e) {
-            Log.e(TAG, "Bitmap conversion failed: " + e.getMessage());
+            Log.e(TAG, "NV21 conversion failed: " + e.getMessage());
             return null;
         }
     }
 
     /**
-     * Rotates a bitmap to the correct orientation based on camera sensor data.
+     * Deletes one capture together with its preview and thumbnail.
+     * @return true if the full-resolution file was removed.
+     */
+    public static boolean deleteCapture(Context context, File fullFile) {
+        EvidenceIndex.getInstance(context).delete(fullFile);
+        getPreviewFile(context, fullFile).delete();
+        getThumbnailFile(context, fullFile).delete();
+        return fullFile.delete();
+    }
+
+    /**
+     * Deletes a batch of captures (with their previews and thumbnails); the index rows go
+     * in one transaction, so the History grid refreshes once per batch.
      */
-    private static Bitmap rotateBitmap(Bitmap bitmap, int degrees) {
-        if (degrees == 0) return bitmap;
-        Matrix matrix = new Matrix();
-        matrix.postRotate(degrees);
-        // Flip horizontally for front camera mirror effect
-        matrix.postScale(-1, 1, bitmap.getWidth() / 2f, bitmap.getHeight() / 2f);
-        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    public static void deleteCaptures(Context context, List<File> fullFiles) {
+        for (File fullFile : fullFiles) {
+            getPreviewFile(context, fullFile).delete();
+            getThumbnailFile(context, fullFile).delete();
+            fullFile.delete();
+        }
+        EvidenceIndex.getInstance(context).delete(fullFiles);
     }
 
     /**
      * Purges all locally stored intruder images.
      */
     public static void deleteAllLogs(Context context) {
-        File directory = new File(context.getExternalFilesDir(null), INTRUDER_DIR);
+        EvidenceIndex.getInstance(context).deleteAll();
+        deleteDirectoryContents(getCaptureDirectory(context));
+        deleteDirectoryContents(new File(context.getExternalFilesDir(null), PREVIEW_DIR));
+        deleteDirectoryContents(new File(context.getExternalFilesDir(null), THUMB_DIR));
+    }
+
+    private static void deleteDirectoryContents(File directory) {
         if (directory.exists() && directory.isDirectory()) {
             File[] files = directory.listFiles();
             if (files != null) {
@@ -127,4 +320,4 @@ public class FileSecureHelper {
             }
         }
     }
-}
\ No newline at end of file
+}
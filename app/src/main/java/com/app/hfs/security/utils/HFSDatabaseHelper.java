@@ -2,13 +2,22 @@ package com.hfs.security.utils;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.hfs.security.models.PendingUpload;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class HFSDatabaseHelper {
 
@@ -25,11 +34,22 @@ public class HFSDatabaseHelper {
 
     // System Lock Screen Protection Key
     private static final String KEY_PHONE_PROTECTION = "phone_protection_enabled";
+    private static final String KEY_SESSION_GRACE_MAP = "session_grace_map";
+    private static final String KEY_LOCK_OVERLAY = "lock_overlay_enabled";
+
+    // Default unlock grace period (matches UnlockSessionRegistry.DEFAULT_GRACE_MS)
+    public static final long DEFAULT_SESSION_GRACE_MS = 10000;
 
     // Google Drive Cloud Sync Keys
     private static final String KEY_DRIVE_ENABLED = "drive_sync_enabled";
     private static final String KEY_GOOGLE_ACCOUNT = "google_account_email";
     private static final String KEY_DRIVE_FOLDER_ID = "google_drive_folder_id";
+    private static final String KEY_DRIVE_FOLDER_SHARED = "google_drive_folder_shared";
+    private static final String KEY_UPLOAD_SESSIONS = "drive_upload_sessions";
+    private static final String KEY_PENDING_UPLOADS = "drive_pending_uploads";
+    private static final String KEY_UPLOAD_ATTEMPTS = "drive_upload_attempts";
+    // Most recent attempt markers kept (far more than the evidence retention keeps on disk)
+    private static final int MAX_UPLOAD_ATTEMPTS = 256;
 
     // --- NEW: ANTI-THEFT & HARDWARE SECURITY KEYS ---
     private static final String KEY_ANTI_THEFT_ENABLED = "anti_theft_enabled";
@@ -41,13 +61,48 @@ public class HFSDatabaseHelper {
     private static final String KEY_HAS_PENDING_ALERT = "has_pending_alert";
     private static final String KEY_PENDING_ALERT_BODY = "pending_alert_body";
 
+    // --- DIAGNOSTICS KEYS ---
+    private static final String KEY_EVENT_TRACE = "event_trace_enabled";
+
+    // --- EVIDENCE RETENTION KEYS ---
+    private static final String KEY_EVIDENCE_BUDGET_MB = "evidence_budget_mb";
+    private static final String KEY_EVIDENCE_MAX_AGE_DAYS = "evidence_max_age_days";
+
+    public static final int DEFAULT_EVIDENCE_BUDGET_MB = 512;
+    public static final int DEFAULT_EVIDENCE_MAX_AGE_DAYS = 30;
+
     private static HFSDatabaseHelper instance;
     private final SharedPreferences prefs;
     private final Gson gson;
 
+    // --- IN-MEMORY PROTECTED APPS INDEX ---
+    // Decoded once, then swapped atomically on every save. Read lock-free by the Accessibility hot path.
+    private volatile ProtectedPackageIndex protectedIndex;
+    private final CopyOnWriteArrayList<OnProtectedAppsChangedListener> protectedAppsListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<OnPhoneProtectionChangedListener> phoneProtectionListeners = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Interface for components that must react when the protected app list changes
+     * (HFSAccessibilityService, HomeFragment, ProtectedAppsFragment).
+     * Always delivered on the main thread.
+     */
+    public interface OnProtectedAppsChangedListener {
+        void onProtectedAppsChanged(ProtectedPackageIndex index);
+    }
+
+    /**
+     * Interface for components that depend on the System Phone Lock toggle.
+     * Always delivered on the main thread.
+     */
+    public interface OnPhoneProtectionChangedListener {
+        void onPhoneProtectionChanged(boolean enabled);
+    }
+
     private HFSDatabaseHelper(Context context) {
         prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
         gson = new Gson();
+        protectedIndex = ProtectedPackageIndex.of(readProtectedPackagesFromPrefs());
     }
 
     public static synchronized HFSDatabaseHelper getInstance(Context context) {
@@ -61,6 +116,7 @@ public class HFSDatabaseHelper {
 
     public void setPhoneProtectionEnabled(boolean enabled) {
         prefs.edit().putBoolean(KEY_PHONE_PROTECTION, enabled).apply();
+        dispatchPhoneProtectionChanged(enabled);
     }
 
     // FIXED: Changed default to TRUE so it works immediately without UI toggle
@@ -68,6 +124,26 @@ public class HFSDatabaseHelper {
         return prefs.getBoolean(KEY_PHONE_PROTECTION, true);
     }
 
+    public void registerPhoneProtectionListener(OnPhoneProtectionChangedListener listener) {
+        if (listener != null) {
+            phoneProtectionListeners.addIfAbsent(listener);
+        }
+    }
+
+    public void unregisterPhoneProtectionListener(OnPhoneProtectionChangedListener listener) {
+        phoneProtectionListeners.remove(listener);
+    }
+
+    private void dispatchPhoneProtectionChanged(boolean enabled) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            for (OnPhoneProtectionChangedListener listener : phoneProtectionListeners) {
+                listener.onPhoneProtectionChanged(enabled);
+            }
+        } else {
+            mainHandler.post(() -> dispatchPhoneProtectionChanged(enabled));
+        }
+    }
+
     // --- GOOGLE DRIVE / CLOUD SETTINGS ---
 
     public void setDriveEnabled(boolean enabled) {
@@ -94,24 +170,244 @@ public class HFSDatabaseHelper {
         return prefs.getString(KEY_DRIVE_FOLDER_ID, null);
     }
 
+    /**
+     * True once the cached folder has its 'anyone with link' permission (DriveHelper.prepareSharedFolder).
+     */
+    public void setDriveFolderShared(boolean shared) {
+        prefs.edit().putBoolean(KEY_DRIVE_FOLDER_SHARED, shared).apply();
+    }
+
+    public boolean isDriveFolderShared() {
+        return prefs.getBoolean(KEY_DRIVE_FOLDER_SHARED, false);
+    }
+
+    // --- RESUMABLE UPLOAD SESSIONS (idempotency key -> Drive session URI) ---
+
+    public synchronized void saveUploadSession(String idempotencyKey, String sessionUri) {
+        Map<String, String> sessions = readUploadSessions();
+        sessions.put(idempotencyKey, sessionUri);
+        prefs.edit().putString(KEY_UPLOAD_SESSIONS, gson.toJson(sessions)).apply();
+    }
+
+    public synchronized String getUploadSession(String idempotencyKey) {
+        return readUploadSessions().get(idempotencyKey);
+    }
+
+    public synchronized void removeUploadSession(String idempotencyKey) {
+        Map<String, String> sessions = readUploadSessions();
+        if (sessions.remove(idempotencyKey) != null) {
+            prefs.edit().putString(KEY_UPLOAD_SESSIONS, gson.toJson(sessions)).apply();
+        }
+    }
+
+    // --- UPLOAD ATTEMPT MARKERS (idempotency keys that may already be on Drive) ---
+
+    /**
+     * Recorded before a resumable session is opened. The marker is kept after the upload
+     * completes: a second upload of the same file with no session must still look on Drive.
+     */
+    public synchronized void markUploadAttempted(String idempotencyKey) {
+        List<String> attempts = readUploadAttempts();
+        attempts.remove(idempotencyKey);
+        attempts.add(idempotencyKey);
+        while (attempts.size() > MAX_UPLOAD_ATTEMPTS) {
+            attempts.remove(0);
+        }
+        prefs.edit().putString(KEY_UPLOAD_ATTEMPTS, gson.toJson(attempts)).apply();
+    }
+
+    public synchronized boolean wasUploadAttempted(String idempotencyKey) {
+        return readUploadAttempts().contains(idempotencyKey);
+    }
+
+    private List<String> readUploadAttempts() {
+        String json = prefs.getString(KEY_UPLOAD_ATTEMPTS, null);
+        if (json == null) {
+            return new ArrayList<>();
+        }
+        Type type = new TypeToken<ArrayList<String>>() {}.getType();
+        List<String> stored = gson.fromJson(json, type);
+        return stored != null ? stored : new ArrayList<>();
+    }
+
+    // --- PENDING UPLOAD QUEUE (drained by DriveUploadWorker) ---
+
+    /**
+     * Adds a file to the upload queue. A file already queued is not added twice.
+     */
+    public synchronized void addPendingUpload(PendingUpload upload) {
+        List<PendingUpload> queue = getPendingUploads();
+        for (PendingUpload queued : queue) {
+            if (queued.getFilePath().equals(upload.getFilePath())) return;
+        }
+        queue.add(upload);
+        prefs.edit().putString(KEY_PENDING_UPLOADS, gson.toJson(queue)).apply();
+    }
+
+    public synchronized List<PendingUpload> getPendingUploads() {
+        String json = prefs.getString(KEY_PENDING_UPLOADS, null);
+        if (json == null) {
+            return new ArrayList<>();
+        }
+        Type type = new TypeToken<ArrayList<PendingUpload>>() {}.getType();
+        List<PendingUpload> stored = gson.fromJson(json, type);
+        return stored != null ? stored : new ArrayList<>();
+    }
+
+    public synchronized void removePendingUpload(String filePath) {
+        List<PendingUpload> queue = getPendingUploads();
+        Iterator<PendingUpload> it = queue.iterator();
+        boolean removed = false;
+        while (it.hasNext()) {
+            if (it.next().getFilePath().equals(filePath)) {
+                it.remove();
+                removed = true;
+            }
+        }
+        if (removed) {
+            prefs.edit().putString(KEY_PENDING_UPLOADS, gson.toJson(queue)).apply();
+        }
+    }
+
+    /**
+     * Counts one more unexpected failure against a queued file.
+     *
+     * @return The new failure count (0 if the file is no longer queued).
+     */
+    public synchronized int recordPendingUploadFailure(String filePath) {
+        List<PendingUpload> queue = getPendingUploads();
+        for (PendingUpload queued : queue) {
+            if (queued.getFilePath().equals(filePath)) {
+                queued.setFailedAttempts(queued.getFailedAttempts() + 1);
+                prefs.edit().putString(KEY_PENDING_UPLOADS, gson.toJson(queue)).apply();
+                return queued.getFailedAttempts();
+            }
+        }
+        return 0;
+    }
+
+    private Map<String, String> readUploadSessions() {
+        String json = prefs.getString(KEY_UPLOAD_SESSIONS, null);
+        if (json == null) {
+            return new HashMap<>();
+        }
+        Type type = new TypeToken<HashMap<String, String>>() {}.getType();
+        Map<String, String> stored = gson.fromJson(json, type);
+        return stored != null ? stored : new HashMap<>();
+    }
+
     // --- PROTECTED APPS STORAGE ---
 
     public void saveProtectedPackages(Set<String> packages) {
         String json = gson.toJson(packages);
         prefs.edit().putString(KEY_PROTECTED_PACKAGES, json).apply();
+
+        // Swap the in-memory index atomically, then notify subscribers
+        ProtectedPackageIndex updated = ProtectedPackageIndex.of(packages);
+        protectedIndex = updated;
+        dispatchProtectedAppsChanged(updated);
     }
 
+    /**
+     * Returns a read-only view of the protected packages.
+     * Copy the result before modifying it.
+     */
     public Set<String> getProtectedPackages() {
+        return protectedIndex.asSet();
+    }
+
+    /**
+     * Current immutable snapshot. Safe to hold and query from any thread.
+     */
+    public ProtectedPackageIndex getProtectedIndex() {
+        return protectedIndex;
+    }
+
+    /**
+     * Hot path check: one hash probe, no allocation.
+     */
+    public boolean isPackageProtected(String packageName) {
+        return protectedIndex.contains(packageName);
+    }
+
+    public int getProtectedAppsCount() {
+        return protectedIndex.size();
+    }
+
+    public void registerProtectedAppsListener(OnProtectedAppsChangedListener listener) {
+        if (listener != null) {
+            protectedAppsListeners.addIfAbsent(listener);
+        }
+    }
+
+    public void unregisterProtectedAppsListener(OnProtectedAppsChangedListener listener) {
+        protectedAppsListeners.remove(listener);
+    }
+
+    private void dispatchProtectedAppsChanged(ProtectedPackageIndex index) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            for (OnProtectedAppsChangedListener listener : protectedAppsListeners) {
+                listener.onProtectedAppsChanged(index);
+            }
+        } else {
+            mainHandler.post(() -> dispatchProtectedAppsChanged(index));
+        }
+    }
+
+    // --- INSTANT OVERLAY LOCK ---
+
+    /**
+     * When enabled, the Accessibility Service covers protected apps with its own
+     * pre-attached window instead of launching LockScreenActivity.
+     */
+    public void setLockOverlayEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_LOCK_OVERLAY, enabled).apply();
+    }
+
+    public boolean isLockOverlayEnabled() {
+        return prefs.getBoolean(KEY_LOCK_OVERLAY, false);
+    }
+
+    // --- UNLOCK SESSION GRACE (PER APP) ---
+
+    /**
+     * Sets how long an app stays unlocked after the owner stops using it.
+     * Pass 0 or less to fall back to the default.
+     */
+    public void setSessionGraceMs(String packageName, long graceMs) {
+        if (packageName == null) return;
+        Map<String, Long> graces = readSessionGraceMap();
+        if (graceMs > 0) {
+            graces.put(packageName, graceMs);
+        } else {
+            graces.remove(packageName);
+        }
+        prefs.edit().putString(KEY_SESSION_GRACE_MAP, gson.toJson(graces)).apply();
+    }
+
+    public long getSessionGraceMs(String packageName) {
+        Long graceMs = readSessionGraceMap().get(packageName);
+        return graceMs != null ? graceMs : DEFAULT_SESSION_GRACE_MS;
+    }
+
+    private Map<String, Long> readSessionGraceMap() {
+        String json = prefs.getString(KEY_SESSION_GRACE_MAP, null);
+        if (json == null) {
+            return new HashMap<>();
+        }
+        Type type = new TypeToken<HashMap<String, Long>>() {}.getType();
+        Map<String, Long> stored = gson.fromJson(json, type);
+        return stored != null ? stored : new HashMap<>();
+    }
+
+    private Set<String> readProtectedPackagesFromPrefs() {
         String json = prefs.getString(KEY_PROTECTED_PACKAGES, null);
         if (json == null) {
             return new HashSet<>();
         }
         Type type = new TypeToken<HashSet<String>>() {}.getType();
-        return gson.fromJson(json, type);
-    }
-
-    public int getProtectedAppsCount() {
-        return getProtectedPackages().size();
+        Set<String> stored = gson.fromJson(json, type);
+        return stored != null ? stored : new HashSet<>();
     }
 
     // --- SECURITY CREDENTIALS ---
@@ -174,6 +470,8 @@ public class HFSDatabaseHelper {
 
     public void clearDatabase() {
         prefs.edit().clear().apply();
+        protectedIndex = ProtectedPackageIndex.EMPTY;
+        dispatchProtectedAppsChanged(ProtectedPackageIndex.EMPTY);
     }
 
     // =========================================================================
@@ -237,4 +535,37 @@ public class HFSDatabaseHelper {
                 .putBoolean(KEY_HAS_PENDING_ALERT, false)
                 .apply();
     }
-}
\ No newline at end of file
+
+    // --- DIAGNOSTICS ---
+
+    public void setEventTraceEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_EVENT_TRACE, enabled).apply();
+    }
+
+    public boolean isEventTraceEnabled() {
+        return prefs.getBoolean(KEY_EVENT_TRACE, false);
+    }
+
+    // --- EVIDENCE RETENTION ---
+    // Limits enforced by EvidenceRetentionWorker (only uploaded captures are ever evicted).
+
+    public void setEvidenceBudgetMb(int megabytes) {
+        prefs.edit().putInt(KEY_EVIDENCE_BUDGET_MB, megabytes).apply();
+    }
+
+    public int getEvidenceBudgetMb() {
+        return prefs.getInt(KEY_EVIDENCE_BUDGET_MB, DEFAULT_EVIDENCE_BUDGET_MB);
+    }
+
+    /**
+     * @param days Age after which uploaded captures are removed; 0 keeps them until the
+     *             storage budget needs the space.
+     */
+    public void setEvidenceMaxAgeDays(int days) {
+        prefs.edit().putInt(KEY_EVIDENCE_MAX_AGE_DAYS, days).apply();
+    }
+
+    public int getEvidenceMaxAgeDays() {
+        return prefs.getInt(KEY_EVIDENCE_MAX_AGE_DAYS, DEFAULT_EVIDENCE_MAX_AGE_DAYS);
+    }
+}
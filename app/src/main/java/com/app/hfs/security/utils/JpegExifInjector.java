@@ -0,0 +1,250 @@
+package com.hfs.security.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes a JPEG with a minimal EXIF block carrying only the Orientation tag.
+ * Lets the capture path encode the camera frame once, in sensor orientation, and leave
+ * rotation/mirroring to the viewer (Glide, Drive, Gallery all honour EXIF orientation)
+ * instead of decoding, rotating and re-encoding the whole frame.
+ *
+ * Logic:
+ * 1. The APP1 "Exif" segment is a big-endian TIFF header with a single IFD0 entry (0x0112).
+ * 2. It is written right after SOI, or after the JFIF APP0 segment if the encoder emitted one
+ *    (JFIF requires APP0 to come first; EXIF readers scan all APPn segments).
+ * 3. The source JPEG is streamed around the insertion point, never copied. wrap() does the
+ *    same for an encoder writing straight to an OutputStream (e.g. the evidence vault).
+ * 4. readOrientation() scans only the APPn segments in front of the image data, so viewers
+ *    decoding with BitmapFactory can apply the orientation without reading the whole file.
+ *
+ * Pure Java; no Android dependencies.
+ */
+public final class JpegExifInjector {
+
+    // EXIF Orientation values (TIFF 6.0 / EXIF 2.3)
+    public static final int ORIENTATION_NORMAL = 1;
+    public static final int ORIENTATION_FLIP_HORIZONTAL = 2;
+    public static final int ORIENTATION_ROTATE_180 = 3;
+    public static final int ORIENTATION_FLIP_VERTICAL = 4;
+    public static final int ORIENTATION_TRANSPOSE = 5;
+    public static final int ORIENTATION_ROTATE_90 = 6;
+    public static final int ORIENTATION_TRANSVERSE = 7;
+    public static final int ORIENTATION_ROTATE_270 = 8;
+
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TYPE_SHORT = 3;
+
+    private JpegExifInjector() {}
+
+    /**
+     * Maps a clockwise display rotation (0/90/180/270) plus an optional horizontal
+     * mirror (front camera) to the EXIF orientation value.
+     */
+    public static int orientationFor(int rotationDegrees, boolean mirrored) {
+        int rotation = ((rotationDegrees % 360) + 360) % 360;
+        if (!mirrored) {
+            switch (rotation) {
+                case 90: return ORIENTATION_ROTATE_90;
+                case 180: return ORIENTATION_ROTATE_180;
+                case 270: return ORIENTATION_ROTATE_270;
+                default: return ORIENTATION_NORMAL;
+            }
+        }
+        switch (rotation) {
+            case 90: return ORIENTATION_TRANSVERSE;
+            case 180: return ORIENTATION_FLIP_VERTICAL;
+            case 270: return ORIENTATION_TRANSPOSE;
+            default: return ORIENTATION_FLIP_HORIZONTAL;
+        }
+    }
+
+    /**
+     * Streams jpeg[offset, offset + length) to out with an EXIF Orientation segment inserted.
+     * @throws IOException if the data does not start with a JPEG SOI marker.
+     */
+    public static void write(byte[] jpeg, int offset, int length, int orientation, OutputStream out)
+            throws IOException {
+        if (length < 4 || (jpeg[offset] & 0xFF) != 0xFF || (jpeg[offset + 1] & 0xFF) != 0xD8) {
+            throw new IOException("Not a JPEG stream");
+        }
+
+        int insertAt = offset + 2;
+        // Keep JFIF APP0 first if present
+        if ((jpeg[insertAt] & 0xFF) == 0xFF && (jpeg[insertAt + 1] & 0xFF) == 0xE0 && length > 6) {
+            int app0Length = ((jpeg[insertAt + 2] & 0xFF) << 8) | (jpeg[insertAt + 3] & 0xFF);
+            if (insertAt + 2 + app0Length <= offset + length) {
+                insertAt += 2 + app0Length;
+            }
+        }
+
+        out.write(jpeg, offset, insertAt - offset);
+        out.write(buildExifSegment(orientation));
+        out.write(jpeg, insertAt, offset + length - insertAt);
+    }
+
+    /**
+     * Streaming variant of write(): returns a stream that inserts the EXIF segment into
+     * whatever JPEG is written to it and passes everything else straight through to out.
+     * Only the SOI/APP0 prefix (a few dozen bytes) is ever buffered.
+     */
+    public static OutputStream wrap(OutputStream out, int orientation) {
+        return new ExifInsertingStream(out, orientation);
+    }
+
+    /**
+     * Reads the EXIF Orientation tag from the JPEG header segments.
+     * @return the orientation, or ORIENTATION_NORMAL if there is none.
+     */
+    public static int readOrientation(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readUnsignedByte() != 0xFF || data.readUnsignedByte() != 0xD8) {
+            return ORIENTATION_NORMAL;
+        }
+        while (true) {
+            int marker = data.readUnsignedByte();
+            if (marker != 0xFF) return ORIENTATION_NORMAL;
+            int type = data.readUnsignedByte();
+            // Only APPn segments carry metadata; SOS and frame markers end the search
+            if (type < 0xE0 || type > 0xEF) return ORIENTATION_NORMAL;
+            int length = data.readUnsignedShort() - 2;
+            if (length < 0) return ORIENTATION_NORMAL;
+            byte[] segment = new byte[length];
+            data.readFully(segment);
+            if (type == 0xE1) {
+                int orientation = parseOrientation(segment);
+                if (orientation > 0) return orientation;
+            }
+        }
+    }
+
+    private static int parseOrientation(byte[] s) {
+        if (s.length < 14 || s[0] != 'E' || s[1] != 'x' || s[2] != 'i' || s[3] != 'f') return -1;
+        int tiff = 6;
+        boolean bigEndian = s[tiff] == 'M';
+        int ifd = tiff + readInt(s, tiff + 4, bigEndian);
+        if (ifd + 2 > s.length) return -1;
+        int entries = readShort(s, ifd, bigEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > s.length) return -1;
+            if (readShort(s, entry, bigEndian) == TAG_ORIENTATION) {
+                return readShort(s, entry + 8, bigEndian);
+            }
+        }
+        return -1;
+    }
+
+    private static int readShort(byte[] s, int at, boolean bigEndian) {
+        return bigEndian
+                ? ((s[at] & 0xFF) << 8) | (s[at + 1] & 0xFF)
+                : ((s[at + 1] & 0xFF) << 8) | (s[at] & 0xFF);
+    }
+
+    private static int readInt(byte[] s, int at, boolean bigEndian) {
+        return bigEndian
+                ? (readShort(s, at, true) << 16) | readShort(s, at + 2, true)
+                : (readShort(s, at + 2, false) << 16) | readShort(s, at, false);
+    }
+
+    /**
+     * APP1 segment: marker, length, "Exif\0\0", TIFF header (MM), IFD0 with one SHORT entry.
+     */
+    static byte[] buildExifSegment(int orientation) {
+        byte[] segment = new byte[36];
+        int p = 0;
+        // APP1 marker + length (everything after the marker: 34 bytes)
+        segment[p++] = (byte) 0xFF;
+        segment[p++] = (byte) 0xE1;
+        segment[p++] = 0;
+        segment[p++] = 34;
+        // "Exif\0\0"
+        segment[p++] = 'E';
+        segment[p++] = 'x';
+        segment[p++] = 'i';
+        segment[p++] = 'f';
+        segment[p++] = 0;
+        segment[p++] = 0;
+        // TIFF header: big endian, magic 42, IFD0 at offset 8
+        segment[p++] = 'M';
+        segment[p++] = 'M';
+        segment[p++] = 0;
+        segment[p++] = 42;
+        segment[p++] = 0;
+        segment[p++] = 0;
+        segment[p++] = 0;
+        segment[p++] = 8;
+        // IFD0: 1 entry
+        segment[p++] = 0;
+        segment[p++] = 1;
+        // Entry: tag, type SHORT, count 1, value left-justified in the 4-byte field
+        segment[p++] = (byte) (TAG_ORIENTATION >> 8);
+        segment[p++] = (byte) TAG_ORIENTATION;
+        segment[p++] = 0;
+        segment[p++] = TYPE_SHORT;
+        segment[p++] = 0;
+        segment[p++] = 0;
+        segment[p++] = 0;
+        segment[p++] = 1;
+        segment[p++] = (byte) (orientation >> 8);
+        segment[p++] = (byte) orientation;
+        segment[p++] = 0;
+        segment[p++] = 0;
+        // Next IFD offset: none
+        segment[p++] = 0;
+        segment[p++] = 0;
+        segment[p++] = 0;
+        segment[p] = 0;
+        return segment;
+    }
+
+    /**
+     * Buffers the JPEG prefix until the insertion point is known, then streams.
+     */
+    private static final class ExifInsertingStream extends FilterOutputStream {
+        private final int orientation;
+        private ByteArrayOutputStream head = new ByteArrayOutputStream(64);
+
+        ExifInsertingStream(OutputStream out, int orientation) {
+            super(out);
+            this.orientation = orientation;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (head == null) {
+                out.write(b, off, len);
+                return;
+            }
+            head.write(b, off, len);
+            byte[] prefix = head.toByteArray();
+            if (prefix.length < 6) return;
+            int insertAt = 2;
+            if ((prefix[2] & 0xFF) == 0xFF && (prefix[3] & 0xFF) == 0xE0) {
+                insertAt = 4 + (((prefix[4] & 0xFF) << 8) | (prefix[5] & 0xFF));
+                if (prefix.length < insertAt) return;
+            }
+            head = null;
+            JpegExifInjector.write(prefix, 0, prefix.length, orientation, out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (head != null) {
+                byte[] prefix = head.toByteArray();
+                head = null;
+                JpegExifInjector.write(prefix, 0, prefix.length, orientation, out);
+            }
+            super.close();
+        }
+    }
+}
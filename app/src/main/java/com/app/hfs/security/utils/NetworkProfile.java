@@ -0,0 +1,75 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Build;
+
+/**
+ * Current network class and the evidence upload targets that go with it.
+ *
+ * Tiers:
+ * 1. UNMETERED (Wi-Fi, Ethernet): full-resolution photo goes straight into the alert SMS.
+ * 2. CELLULAR: a small preview is uploaded first for the SMS; full-res follows via the queue.
+ * 3. ROAMING: smallest, most compressed preview first; full-res follows via the queue.
+ * 4. OFFLINE: nothing uploads now; both files are queued.
+ */
+public enum NetworkProfile {
+
+    UNMETERED(false, 960, 80),
+    CELLULAR(true, 480, 60),
+    ROAMING(true, 320, 45),
+    OFFLINE(true, 480, 60);
+
+    private final boolean previewFirst;
+    private final int previewMaxDimension;
+    private final int previewQuality;
+
+    NetworkProfile(boolean previewFirst, int previewMaxDimension, int previewQuality) {
+        this.previewFirst = previewFirst;
+        this.previewMaxDimension = previewMaxDimension;
+        this.previewQuality = previewQuality;
+    }
+
+    /**
+     * True if the SMS should carry the preview link rather than wait for the full-res upload.
+     */
+    public boolean isPreviewFirst() {
+        return previewFirst;
+    }
+
+    /**
+     * Longest edge of the preview JPEG, in pixels.
+     */
+    public int getPreviewMaxDimension() {
+        return previewMaxDimension;
+    }
+
+    /**
+     * JPEG quality (0-100) of the preview.
+     */
+    public int getPreviewQuality() {
+        return previewQuality;
+    }
+
+    public static NetworkProfile current(Context context) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) return OFFLINE;
+
+        Network network = cm.getActiveNetwork();
+        NetworkCapabilities caps = network != null ? cm.getNetworkCapabilities(network) : null;
+        if (caps == null || !caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+            return OFFLINE;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                && !caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_ROAMING)) {
+            return ROAMING;
+        }
+        if (caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)) {
+            return UNMETERED;
+        }
+        return CELLULAR;
+    }
+}
@@ -0,0 +1,287 @@
+package com.hfs.security.utils;
+
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.util.StreamingContent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+
+/**
+ * google-http-client transport backed by OkHttp.
+ * Replaces AndroidHttp.newCompatibleTransport() (plain HttpURLConnection) for Drive traffic.
+ *
+ * Logic:
+ * 1. One OkHttpClient per transport: a shared ConnectionPool keeps the TLS connection to
+ *    www.googleapis.com warm between files().create and permissions().create.
+ * 2. HTTP/2 is negotiated via ALPN, so concurrent Drive calls multiplex over one socket.
+ * 3. Per-request timeouts from google-http-client derive a client from the shared one
+ *    (same pool and dispatcher, only the timeouts differ).
+ * 4. Optional TimingListener receives method, URL, status, protocol and wall time of every call.
+ *
+ * Pure Java (no Android imports) so the offline benchmark can run it on a plain JVM.
+ */
+public final class OkHttpTransport extends HttpTransport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    public static final int DEFAULT_READ_TIMEOUT_MS = 30000;
+    public static final int DEFAULT_WRITE_TIMEOUT_MS = 30000;
+
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    // Detects dead HTTP/2 connections after a network switch instead of waiting for the read timeout
+    private static final long PING_INTERVAL_SECONDS = 30;
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    /**
+     * Request/response timing hook.
+     */
+    public interface TimingListener {
+        void onRequestCompleted(String method, String url, int statusCode, String protocol,
+                                long requestBytes, long elapsedNanos);
+
+        void onRequestFailed(String method, String url, IOException error, long elapsedNanos);
+    }
+
+    private final OkHttpClient client;
+    private volatile TimingListener timingListener;
+
+    public OkHttpTransport() {
+        this(new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(DEFAULT_CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .readTimeout(DEFAULT_READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .writeTimeout(DEFAULT_WRITE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .pingInterval(PING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                .build());
+    }
+
+    /**
+     * @param client Preconfigured client (e.g. with an interceptor or a mock server's TLS setup).
+     */
+    public OkHttpTransport(OkHttpClient client) {
+        this.client = client;
+    }
+
+    public void setTimingListener(TimingListener listener) {
+        this.timingListener = listener;
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    @Override
+    public boolean supportsMethod(String method) {
+        return true;
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildRequest(String method, String url) {
+        return new OkHttpRequest(method, url);
+    }
+
+    @Override
+    public void shutdown() {
+        client.connectionPool().evictAll();
+        client.dispatcher().executorService().shutdown();
+    }
+
+    // --- REQUEST ---
+
+    private final class OkHttpRequest extends LowLevelHttpRequest {
+        private final String method;
+        private final String url;
+        private final Request.Builder builder;
+        private int connectTimeout = DEFAULT_CONNECT_TIMEOUT_MS;
+        private int readTimeout = DEFAULT_READ_TIMEOUT_MS;
+        private int writeTimeout = DEFAULT_WRITE_TIMEOUT_MS;
+
+        OkHttpRequest(String method, String url) {
+            this.method = method;
+            this.url = url;
+            this.builder = new Request.Builder().url(url);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            builder.addHeader(name, value);
+        }
+
+        @Override
+        public void setTimeout(int connectTimeout, int readTimeout) {
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+        }
+
+        @Override
+        public void setWriteTimeout(int writeTimeout) {
+            this.writeTimeout = writeTimeout;
+        }
+
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+            RequestBody body = buildBody();
+            if (getContentEncoding() != null) {
+                builder.header("Content-Encoding", getContentEncoding());
+            }
+            builder.method(method, body);
+
+            OkHttpClient call = client;
+            if (connectTimeout != client.connectTimeoutMillis()
+                    || readTimeout != client.readTimeoutMillis()
+                    || writeTimeout != client.writeTimeoutMillis()) {
+                call = client.newBuilder()
+                        .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                        .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                        .writeTimeout(writeTimeout, TimeUnit.MILLISECONDS)
+                        .build();
+            }
+
+            TimingListener listener = timingListener;
+            long start = System.nanoTime();
+            try {
+                Response response = call.newCall(builder.build()).execute();
+                if (listener != null) {
+                    listener.onRequestCompleted(method, url, response.code(), response.protocol().toString(),
+                            getContentLength(), System.nanoTime() - start);
+                }
+                return new OkHttpResponse(response);
+            } catch (IOException e) {
+                if (listener != null) {
+                    listener.onRequestFailed(method, url, e, System.nanoTime() - start);
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * StreamingContent is deprecated but is still the type LowLevelHttpRequest hands out;
+         * the suppression is confined to this method.
+         * A body that cannot be written twice is one-shot, so retryOnConnectionFailure never
+         * resends a partially streamed upload. Only HttpContent reports retrySupported();
+         * anything else (e.g. the gzip wrapper) is assumed not to be replayable.
+         */
+        @SuppressWarnings("deprecation")
+        private RequestBody buildBody() {
+            final StreamingContent content = getStreamingContent();
+            final MediaType type = getContentType() != null ? MediaType.parse(getContentType()) : null;
+            if (content == null) {
+                // OkHttp rejects a body on GET/DELETE/HEAD but requires one on POST/PUT/PATCH
+                boolean needsBody = "POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method);
+                return needsBody ? RequestBody.create(EMPTY_BODY, type) : null;
+            }
+            final long length = getContentLength();
+            final boolean oneShot = !(content instanceof HttpContent) || !((HttpContent) content).retrySupported();
+            return new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return type;
+                }
+
+                @Override
+                public long contentLength() {
+                    return length;
+                }
+
+                @Override
+                public boolean isOneShot() {
+                    return oneShot;
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    content.writeTo(sink.outputStream());
+                }
+            };
+        }
+    }
+
+    // --- RESPONSE ---
+
+    private static final class OkHttpResponse extends LowLevelHttpResponse {
+        private final Response response;
+        private final Headers headers;
+
+        OkHttpResponse(Response response) {
+            this.response = response;
+            this.headers = response.headers();
+        }
+
+        @Override
+        public InputStream getContent() {
+            ResponseBody body = response.body();
+            return body != null ? body.byteStream() : null;
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return response.header("Content-Encoding");
+        }
+
+        @Override
+        public long getContentLength() {
+            ResponseBody body = response.body();
+            return body != null ? body.contentLength() : 0;
+        }
+
+        @Override
+        public String getContentType() {
+            return response.header("Content-Type");
+        }
+
+        @Override
+        public String getStatusLine() {
+            return response.protocol() + " " + response.code() + " " + response.message();
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.code();
+        }
+
+        @Override
+        public String getReasonPhrase() {
+            return response.message();
+        }
+
+        @Override
+        public int getHeaderCount() {
+            return headers.size();
+        }
+
+        @Override
+        public String getHeaderName(int index) {
+            return headers.name(index);
+        }
+
+        @Override
+        public String getHeaderValue(int index) {
+            return headers.value(index);
+        }
+
+        @Override
+        public void disconnect() {
+            // Returns the connection to the pool (or releases the HTTP/2 stream)
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.inputmethod.InputMethodInfo;
+import android.view.inputmethod.InputMethodManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory cache of PackageManager metadata used on the lock trigger path.
+ * Readers never do IPC: every getter returns the last resolved snapshot.
+ *
+ * Logic:
+ * 1. warmUp(): Resolves launchers, keyboards (IMEs) and the labels of the given packages
+ *    on a background thread.
+ * 2. Package broadcasts (ADDED/REMOVED/CHANGED) call invalidate(), which drops the label
+ *    and re-resolves the launcher/IME sets (a new launcher or keyboard may have been installed).
+ * 3. refreshEnvironment(): Re-resolves the default home. Android has no broadcast for a
+ *    default-home change, so the service also calls this on screen on/off.
+ * 4. A label miss returns the package name and schedules a background load.
+ */
+public class PackageMetadataCache {
+
+    private static final String TAG = "HFS_PackageCache";
+
+    private static PackageMetadataCache instance;
+
+    private final PackageManager packageManager;
+    private final InputMethodManager inputMethodManager;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final ConcurrentHashMap<String, String> labels = new ConcurrentHashMap<>();
+    private volatile String defaultLauncher = "";
+    private volatile Set<String> launcherPackages = Collections.emptySet();
+    private volatile Set<String> imePackages = Collections.emptySet();
+
+    private final CopyOnWriteArrayList<OnEnvironmentChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Fired on the main thread when the launcher or IME sets change.
+     */
+    public interface OnEnvironmentChangedListener {
+        void onEnvironmentChanged(PackageMetadataCache cache);
+    }
+
+    private PackageMetadataCache(Context context) {
+        packageManager = context.getPackageManager();
+        inputMethodManager = (InputMethodManager) context.getSystemService(Context.INPUT_METHOD_SERVICE);
+    }
+
+    public static synchronized PackageMetadataCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new PackageMetadataCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // --- READERS (no IPC) ---
+
+    /**
+     * Cached user-facing label. Falls back to the package name on a miss.
+     */
+    public String getLabel(String packageName) {
+        String label = labels.get(packageName);
+        if (label != null) return label;
+
+        executor.execute(() -> loadLabel(packageName));
+        return packageName;
+    }
+
+    public String getDefaultLauncher() {
+        return defaultLauncher;
+    }
+
+    /**
+     * Every package with a HOME activity (default launcher, OEM launchers, recents hosts).
+     */
+    public Set<String> getLauncherPackages() {
+        return launcherPackages;
+    }
+
+    public Set<String> getImePackages() {
+        return imePackages;
+    }
+
+    // --- REFRESH ---
+
+    public void warmUp(Collection<String> packages) {
+        final Set<String> snapshot = new HashSet<>(packages);
+        executor.execute(() -> {
+            resolveEnvironment();
+            for (String pkg : snapshot) {
+                loadLabel(pkg);
+            }
+            Log.d(TAG, "Warmed " + labels.size() + " labels, " + launcherPackages.size()
+                    + " launchers, " + imePackages.size() + " keyboards.");
+        });
+    }
+
+    /**
+     * Called for PACKAGE_ADDED / REMOVED / CHANGED / REPLACED.
+     */
+    public void invalidate(String packageName) {
+        if (packageName != null) {
+            labels.remove(packageName);
+        }
+        executor.execute(() -> {
+            resolveEnvironment();
+            if (packageName != null) {
+                loadLabel(packageName);
+            }
+        });
+    }
+
+    public void refreshEnvironment() {
+        executor.execute(this::resolveEnvironment);
+    }
+
+    public void registerListener(OnEnvironmentChangedListener listener) {
+        if (listener != null) {
+            listeners.addIfAbsent(listener);
+        }
+    }
+
+    public void unregisterListener(OnEnvironmentChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    // --- BACKGROUND WORK ---
+
+    private void loadLabel(String packageName) {
+        try {
+            ApplicationInfo ai = packageManager.getApplicationInfo(packageName, 0);
+            labels.put(packageName, packageManager.getApplicationLabel(ai).toString());
+        } catch (PackageManager.NameNotFoundException e) {
+            // Uninstalled or pseudo package ("System Phone Lock"): keep the raw name
+            labels.put(packageName, packageName);
+        }
+    }
+
+    private void resolveEnvironment() {
+        String resolvedDefault = "";
+        Set<String> resolvedLaunchers = new HashSet<>();
+        Set<String> resolvedImes = new HashSet<>();
+
+        try {
+            Intent home = new Intent(Intent.ACTION_MAIN);
+            home.addCategory(Intent.CATEGORY_HOME);
+
+            ResolveInfo preferred = packageManager.resolveActivity(home, PackageManager.MATCH_DEFAULT_ONLY);
+            if (preferred != null && preferred.activityInfo != null) {
+                resolvedDefault = preferred.activityInfo.packageName;
+            }
+
+            List<ResolveInfo> homes = packageManager.queryIntentActivities(home, 0);
+            for (ResolveInfo info : homes) {
+                if (info.activityInfo != null) {
+                    resolvedLaunchers.add(info.activityInfo.packageName);
+                }
+            }
+            // The resolver chooser ("android") is not a real launcher
+            resolvedLaunchers.remove("android");
+            if (!resolvedDefault.isEmpty() && !"android".equals(resolvedDefault)) {
+                resolvedLaunchers.add(resolvedDefault);
+            }
+
+            if (inputMethodManager != null) {
+                for (InputMethodInfo ime : inputMethodManager.getInputMethodList()) {
+                    resolvedImes.add(ime.getPackageName());
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Environment resolution failed: " + e.getMessage());
+            return;
+        }
+
+        boolean changed = !resolvedDefault.equals(defaultLauncher)
+                || !resolvedLaunchers.equals(launcherPackages)
+                || !resolvedImes.equals(imePackages);
+
+        defaultLauncher = resolvedDefault;
+        launcherPackages = Collections.unmodifiableSet(resolvedLaunchers);
+        imePackages = Collections.unmodifiableSet(resolvedImes);
+
+        if (changed) {
+            mainHandler.post(() -> {
+                for (OnEnvironmentChangedListener listener : listeners) {
+                    listener.onEnvironmentChanged(this);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.hfs.security.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable, in-memory snapshot of the protected package list.
+ * Built once per save by HFSDatabaseHelper and swapped atomically, so the
+ * Accessibility hot path never touches SharedPreferences or Gson.
+ *
+ * Logic:
+ * 1. Package names are interned, so lookups against framework strings hit the cached hash.
+ * 2. contains() is a single hash probe and allocates nothing.
+ * 3. Instances are never mutated after construction and can be shared across threads.
+ */
+public final class ProtectedPackageIndex {
+
+    public static final ProtectedPackageIndex EMPTY = new ProtectedPackageIndex(Collections.<String>emptySet());
+
+    private final Set<String> packages;
+
+    private ProtectedPackageIndex(Set<String> packages) {
+        this.packages = packages;
+    }
+
+    /**
+     * Builds a new index from any collection of package names.
+     * Null and empty entries are dropped.
+     */
+    public static ProtectedPackageIndex of(Collection<String> source) {
+        if (source == null || source.isEmpty()) {
+            return EMPTY;
+        }
+        Set<String> interned = new HashSet<>(Math.max(16, (int) (source.size() / 0.75f) + 1));
+        for (String pkg : source) {
+            if (pkg != null && !pkg.isEmpty()) {
+                interned.add(pkg.intern());
+            }
+        }
+        return interned.isEmpty() ? EMPTY : new ProtectedPackageIndex(Collections.unmodifiableSet(interned));
+    }
+
+    /**
+     * Hot path lookup used for every Accessibility event.
+     */
+    public boolean contains(String packageName) {
+        return packageName != null && packages.contains(packageName);
+    }
+
+    public int size() {
+        return packages.size();
+    }
+
+    public boolean isEmpty() {
+        return packages.isEmpty();
+    }
+
+    /**
+     * Read-only view of the indexed packages. Callers that need to edit
+     * the list must copy it first.
+     */
+    public Set<String> asSet() {
+        return packages;
+    }
+}
@@ -0,0 +1,309 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import com.google.api.services.drive.model.FileList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resumable, chunked, idempotent Drive upload (Drive v3 "uploadType=resumable" protocol).
+ * Replaces the single-shot FileContent create: on 2G/EDGE a dropped connection used to restart
+ * the whole file, and a retry after a lost response created a duplicate in the HFS folder.
+ *
+ * Logic:
+ * 1. Idempotency key: SHA-256 of the file content, stored in the file's appProperties.
+ * 2. Session: the resumable session URI is persisted in HFSDatabaseHelper under that key,
+ *    so a restarted DriveUploadWorker (or the worker after the alert pipeline's deadline)
+ *    asks Drive how many bytes it has and continues from there.
+ * 3. Chunks: CHUNK_SIZE (a multiple of 256 KiB as required by Drive). Each dropped chunk is
+ *    retried from the last byte the server acknowledged, up to MAX_RESUME_ATTEMPTS per call.
+ * 4. Dedupe: every key is marked as attempted before its first session is opened. With no
+ *    usable session but a marker, the folder is searched for a file with the same key before
+ *    a new session is opened, so a lost final response never produces a second copy.
+ * 5. ProgressListener receives acknowledged bytes after every chunk.
+ * 6. Evidence is read through EvidenceVault, so Drive receives the plain JPEG while the
+ *    local copy stays encrypted.
+ */
+public class ResumableDriveUploader {
+
+    private static final String TAG = "HFS_ResumableUpload";
+
+    public static final String APP_PROPERTY_KEY = "hfs_idempotency_key";
+    public static final int CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_RESUME_ATTEMPTS = 5;
+
+    private static final int STATUS_RESUME_INCOMPLETE = 308;
+    private static final String RESPONSE_FIELDS = "id,webViewLink";
+
+    /**
+     * Upload progress (called on the uploading thread).
+     */
+    public interface ProgressListener {
+        void onProgress(long uploadedBytes, long totalBytes);
+    }
+
+    private final Drive driveService;
+    private final HFSDatabaseHelper db;
+    private final EvidenceVault vault;
+
+    public ResumableDriveUploader(Context context, Drive driveService) {
+        this.driveService = driveService;
+        this.db = HFSDatabaseHelper.getInstance(context);
+        this.vault = EvidenceVault.getInstance(context);
+    }
+
+    /**
+     * Uploads (or finishes uploading) the file into the given folder.
+     * @return the created Drive file (id, webViewLink).
+     */
+    public File upload(java.io.File localFile, String mimeType, String folderId,
+                       ProgressListener listener) throws IOException {
+        long total;
+        try (EvidenceVault.EvidenceReader reader = vault.openReader(localFile)) {
+            total = reader.length();
+        }
+        String key = idempotencyKey(localFile);
+
+        // 1. Continue a persisted session if Drive still knows it
+        String sessionUri = db.getUploadSession(key);
+        long offset = -1;
+        if (sessionUri != null) {
+            Status status = queryStatus(sessionUri, total);
+            if (status.file != null) {
+                db.removeUploadSession(key);
+                return status.file;
+            }
+            offset = status.offset;
+            if (offset < 0) {
+                Log.w(TAG, "Upload session expired for " + localFile.getName());
+                db.removeUploadSession(key);
+                sessionUri = null;
+            } else {
+                Log.i(TAG, "Resuming " + localFile.getName() + " at " + offset + "/" + total);
+            }
+        }
+
+        // 2. No usable session (expired, or removed when another caller finished the upload)
+        //    but an earlier attempt exists: it may already have completed. A first upload
+        //    skips the lookup and stays a single initiate + PUT
+        if (sessionUri == null && db.wasUploadAttempted(key)) {
+            File existing = findByKey(folderId, key);
+            if (existing != null) {
+                Log.i(TAG, "Duplicate suppressed: " + localFile.getName() + " already on Drive.");
+                return existing;
+            }
+        }
+
+        // 3. New session
+        if (sessionUri == null) {
+            db.markUploadAttempted(key);
+            sessionUri = initiate(localFile.getName(), mimeType, folderId, key, total);
+            db.saveUploadSession(key, sessionUri);
+            offset = 0;
+        }
+
+        // 4. Chunks
+        File uploaded = sendChunks(localFile, mimeType, sessionUri, offset, total, listener);
+        db.removeUploadSession(key);
+        return uploaded;
+    }
+
+    // --- PROTOCOL ---
+
+    private String initiate(String name, String mimeType, String folderId, String key, long total)
+            throws IOException {
+        File metadata = new File();
+        metadata.setName(name);
+        metadata.setMimeType(mimeType);
+        metadata.setParents(Collections.singletonList(folderId));
+        metadata.setAppProperties(Collections.singletonMap(APP_PROPERTY_KEY, key));
+
+        GenericUrl url = new GenericUrl(driveService.getRootUrl() + "upload/" + driveService.getServicePath() + "files");
+        url.put("uploadType", "resumable");
+        url.put("fields", RESPONSE_FIELDS);
+
+        HttpRequest request = driveService.getRequestFactory().buildPostRequest(url,
+                new JsonHttpContent(driveService.getJsonFactory(), metadata));
+        request.getHeaders().set("X-Upload-Content-Type", mimeType);
+        request.getHeaders().set("X-Upload-Content-Length", total);
+        request.setThrowExceptionOnExecuteError(false);
+
+        HttpResponse response = request.execute();
+        try {
+            String location = response.getHeaders().getLocation();
+            if (!response.isSuccessStatusCode() || location == null) {
+                // Same exception type as Drive API calls, so DriveHelper's 404 handling applies
+                throw GoogleJsonResponseException.from(driveService.getJsonFactory(), response);
+            }
+            return location;
+        } finally {
+            response.disconnect();
+        }
+    }
+
+    private File sendChunks(java.io.File localFile, String mimeType, String sessionUri, long offset,
+                            long total, ProgressListener listener) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(CHUNK_SIZE, Math.max(total, 1))];
+        int failures = 0;
+
+        // Evidence is encrypted at rest; only the chunk being sent is decrypted
+        try (EvidenceVault.EvidenceReader in = vault.openReader(localFile)) {
+            while (true) {
+                int length = (int) Math.min(buffer.length, total - offset);
+                in.readFully(offset, buffer, 0, length);
+
+                Status status;
+                try {
+                    status = putChunk(sessionUri, mimeType, buffer, length, offset, total);
+                } catch (IOException e) {
+                    if (Thread.currentThread().isInterrupted() || ++failures > MAX_RESUME_ATTEMPTS) throw e;
+                    Log.w(TAG, "Chunk at " + offset + " failed (" + e.getMessage() + "); asking Drive where to resume.");
+                    status = queryStatus(sessionUri, total);
+                }
+
+                if (status.file != null) {
+                    if (listener != null) listener.onProgress(total, total);
+                    return status.file;
+                }
+                if (status.offset < 0) {
+                    throw new IOException("Upload session expired mid-transfer.");
+                }
+                offset = status.offset;
+                if (listener != null) listener.onProgress(offset, total);
+            }
+        }
+    }
+
+    private Status putChunk(String sessionUri, String mimeType, byte[] buffer, int length,
+                            long offset, long total) throws IOException {
+        HttpRequest request = driveService.getRequestFactory().buildPutRequest(new GenericUrl(sessionUri),
+                new ByteArrayContent(mimeType, buffer, 0, length));
+        String range = length > 0 ? offset + "-" + (offset + length - 1) : "*";
+        request.getHeaders().setContentRange("bytes " + range + "/" + total);
+        return executeStatus(request);
+    }
+
+    /**
+     * Asks Drive how much of the session it has (empty PUT with "bytes * /total").
+     */
+    private Status queryStatus(String sessionUri, long total) throws IOException {
+        HttpRequest request = driveService.getRequestFactory().buildPutRequest(new GenericUrl(sessionUri),
+                new EmptyContent());
+        request.getHeaders().setContentRange("bytes */" + total);
+        return executeStatus(request);
+    }
+
+    private Status executeStatus(HttpRequest request) throws IOException {
+        request.setThrowExceptionOnExecuteError(false);
+        request.setFollowRedirects(false);
+        request.setParser(driveService.getObjectParser());
+
+        HttpResponse response = request.execute();
+        try {
+            int code = response.getStatusCode();
+            if (code == 200 || code == 201) {
+                return Status.done(response.parseAs(File.class));
+            }
+            if (code == STATUS_RESUME_INCOMPLETE) {
+                return Status.at(parseRange(response.getHeaders().getRange()));
+            }
+            if (code == 404 || code == 410) {
+                return Status.at(-1);
+            }
+            // Typed like Drive API errors, so DriveUploadWorker can tell a 4xx rejection from a 5xx
+            throw GoogleJsonResponseException.from(driveService.getJsonFactory(), response);
+        } finally {
+            response.disconnect();
+        }
+    }
+
+    /**
+     * "bytes=0-524287" -> 524288 (next byte to send). No header means nothing was received.
+     */
+    private static long parseRange(String range) {
+        if (range == null) return 0;
+        int dash = range.lastIndexOf('-');
+        if (dash < 0) return 0;
+        try {
+            return Long.parseLong(range.substring(dash + 1).trim()) + 1;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // --- IDEMPOTENCY ---
+
+    private File findByKey(String folderId, String key) throws IOException {
+        String query = "'" + folderId + "' in parents and trashed = false and appProperties has { key='"
+                + APP_PROPERTY_KEY + "' and value='" + key + "' }";
+        FileList result = driveService.files().list()
+                .setQ(query)
+                .setSpaces("drive")
+                .setFields("files(" + RESPONSE_FIELDS + ")")
+                .execute();
+        List<File> files = result.getFiles();
+        return files != null && !files.isEmpty() ? files.get(0) : null;
+    }
+
+    /**
+     * SHA-256 of the (decrypted) photo (hex, 128 bits): same photo, same key, across process restarts.
+     */
+    private String idempotencyKey(java.io.File localFile) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            try (InputStream in = vault.openInputStream(localFile)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            byte[] hash = digest.digest();
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(hash[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 unavailable", e);
+        }
+    }
+
+    /**
+     * Result of a chunk PUT or status query.
+     */
+    private static final class Status {
+        final File file;    // non-null when the upload is complete
+        final long offset;  // next byte to send; -1 when the session no longer exists
+
+        private Status(File file, long offset) {
+            this.file = file;
+            this.offset = offset;
+        }
+
+        static Status done(File file) {
+            return new Status(file, -1);
+        }
+
+        static Status at(long offset) {
+            return new Status(null, offset);
+        }
+    }
+}
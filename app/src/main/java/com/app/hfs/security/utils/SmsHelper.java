@@ -144,6 +144,48 @@ public class SmsHelper {
         }
     }
 
+    /**
+     * Follow-up for an alert that went out with "Drive: Pending Upload".
+     * Sent by DriveUploadWorker (or the alert pipeline) once the delayed upload has a link.
+     * Same cooldown and SIM routing as the main alert; not queued if no SIM is available.
+     */
+    public static void sendUploadFollowUpSms(Context context, String targetApp, String alertType, String driveLink) {
+        if (driveLink == null || driveLink.isEmpty()) return;
+
+        if (!isSmsAllowed(context)) {
+            Log.w(TAG, "SMS Limit Reached: Follow-up link suppressed.");
+            return;
+        }
+
+        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
+        String savedNumber = db.getEncryptedEmergencyNumber();
+        if (savedNumber != null && !savedNumber.isEmpty()) {
+            savedNumber = new CryptoManager().decrypt(savedNumber);
+        } else {
+            savedNumber = db.getTrustedNumber();
+        }
+        if (savedNumber == null || savedNumber.isEmpty()) return;
+
+        String time = new SimpleDateFormat("dd-MMM HH:mm", Locale.getDefault()).format(new Date());
+        String body = "HFS ALERT UPDATE\n"
+                + "Breach: " + alertType + "\n"
+                + "App: " + targetApp + "\n"
+                + "Uploaded: " + time + "\n"
+                + "Drive: " + driveLink;
+
+        try {
+            SmsManager smsManager = new SimManager(context).getBestSmsManager();
+            if (smsManager != null) {
+                java.util.ArrayList<String> parts = smsManager.divideMessage(body);
+                smsManager.sendMultipartTextMessage(formatInternationalNumber(savedNumber), null, parts, null, null);
+                Log.i(TAG, "Follow-up Drive link sent.");
+                trackSmsSent(context);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Follow-up SMS failed: " + e.getMessage());
+        }
+    }
+
     /**
      * Executes the "Time Bomb" trap.
      * Triggered by SimStateReceiver or AirplaneModeReceiver when connectivity returns.
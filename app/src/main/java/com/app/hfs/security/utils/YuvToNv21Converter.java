@@ -0,0 +1,179 @@
+package com.hfs.security.utils;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayDeque;
+
+/**
+ * Stride-correct YUV_420_888 to NV21 conversion with pooled output buffers.
+ * The old capture path concatenated the Y, V and U plane buffers, ignoring rowStride and
+ * pixelStride; that corrupts frames on devices with row padding or fully planar chroma,
+ * and it allocated a new frame-sized byte[] per capture.
+ *
+ * Logic:
+ * 1. Luma: one bulk copy when rowStride == width, otherwise one bulk copy per row.
+ * 2. Chroma, three layouts:
+ *    a. NV21 in memory (pixelStride 2, V and U planes alias one interleaved VU buffer):
+ *       one bulk copy of the V buffer plus the final U byte.
+ *    b. Semi-planar with padding or non-aliased planes (pixelStride 2) and
+ *    c. Planar (pixelStride 1, I420-like): each V and U row is bulk-copied into a scratch
+ *       row, then interleaved into VU pairs at pixelStride.
+ * 3. Output buffers come from a small pool keyed by size; callers hand them back with release().
+ *
+ * Pure Java (plain ByteBuffer planes), so the golden-frame tests (YuvToNv21ConverterTest)
+ * and the benchmark (test-only diagnostics.YuvConversionBenchmark) run on a desktop JVM.
+ */
+public final class YuvToNv21Converter {
+
+    private final int maxPooled;
+    private final ArrayDeque<byte[]> pool = new ArrayDeque<>();
+    private byte[] scratchRow = new byte[0];
+
+    // Layout (a) detection result for the last plane buffers seen (weak: frames are closed)
+    private WeakReference<ByteBuffer> probedU = new WeakReference<>(null);
+    private WeakReference<ByteBuffer> probedV = new WeakReference<>(null);
+    private int probedRowStride = -1;
+    private boolean probedAliased;
+
+    /**
+     * @param maxPooled Frame buffers kept for reuse (2 covers capture + preview in flight).
+     */
+    public YuvToNv21Converter(int maxPooled) {
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Converts one frame. The returned array is exactly width * height * 3 / 2 bytes and
+     * should be passed to release() once the caller is done with it.
+     * Plane buffers are read with absolute indexes; their positions are not changed.
+     */
+    public synchronized byte[] convert(ByteBuffer yPlane, int yRowStride,
+                                       ByteBuffer uPlane, ByteBuffer vPlane,
+                                       int uvRowStride, int uvPixelStride,
+                                       int width, int height) {
+        int frameSize = width * height;
+        byte[] out = acquire(frameSize + frameSize / 2);
+
+        copyLuma(yPlane, yRowStride, width, height, out);
+
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        if (uvPixelStride == 2 && uvRowStride == width && isInterleavedVu(uPlane, vPlane, uvRowStride)) {
+            copyInterleavedVu(uPlane, vPlane, frameSize, out);
+        } else {
+            copyStrided(uPlane, vPlane, uvRowStride, uvPixelStride, chromaWidth, chromaHeight, frameSize, out);
+        }
+        return out;
+    }
+
+    /**
+     * Returns a buffer obtained from convert() to the pool.
+     */
+    public synchronized void release(byte[] buffer) {
+        if (buffer != null && pool.size() < maxPooled) {
+            pool.push(buffer);
+        }
+    }
+
+    private byte[] acquire(int size) {
+        byte[] candidate = pool.poll();
+        while (candidate != null && candidate.length != size) {
+            // Resolution changed: drop stale buffers
+            candidate = pool.poll();
+        }
+        return candidate != null ? candidate : new byte[size];
+    }
+
+    // --- LUMA ---
+
+    private void copyLuma(ByteBuffer y, int rowStride, int width, int height, byte[] out) {
+        ByteBuffer src = y.duplicate();
+        int base = y.position();
+        if (rowStride == width) {
+            src.position(base);
+            src.get(out, 0, width * height);
+            return;
+        }
+        for (int row = 0; row < height; row++) {
+            src.position(base + row * rowStride);
+            src.get(out, row * width, width);
+        }
+    }
+
+    // --- CHROMA ---
+
+    /**
+     * Layout (a): does the V plane's memory continue as U one byte later (V U V U ...)?
+     * Probed by flipping one V byte and watching U, as the Camera2 planes are writable.
+     * U must follow the byte both ways (equal before, flipped after): a U0 that merely
+     * happens to equal the flipped value (1 in 256) is not mistaken for aliasing.
+     * The result is cached for the same plane buffers and stride only.
+     */
+    private boolean isInterleavedVu(ByteBuffer u, ByteBuffer v, int rowStride) {
+        if (rowStride == probedRowStride && probedU.get() == u && probedV.get() == v) return probedAliased;
+        boolean aliased = false;
+        int vPos = v.position();
+        int uPos = u.position();
+        if (v.remaining() > 1 && u.remaining() > 0) {
+            byte original = v.get(vPos + 1);
+            try {
+                if (u.get(uPos) == original) {
+                    v.put(vPos + 1, (byte) ~original);
+                    aliased = u.get(uPos) == (byte) ~original;
+                }
+            } catch (ReadOnlyBufferException e) {
+                aliased = false;
+            } finally {
+                if (!v.isReadOnly()) v.put(vPos + 1, original);
+            }
+        }
+        probedU = new WeakReference<>(u);
+        probedV = new WeakReference<>(v);
+        probedRowStride = rowStride;
+        probedAliased = aliased;
+        return aliased;
+    }
+
+    private void copyInterleavedVu(ByteBuffer u, ByteBuffer v, int frameSize, byte[] out) {
+        int chromaBytes = frameSize / 2;
+        ByteBuffer src = v.duplicate();
+        // The V buffer covers V0 U0 ... V(n-1); the last U only lives in the U buffer
+        int available = Math.min(chromaBytes - 1, src.remaining());
+        src.get(out, frameSize, available);
+        out[frameSize + chromaBytes - 1] = u.get(u.position() + chromaBytes - 2);
+    }
+
+    /**
+     * Layouts (b) and (c): bulk-copy one V row and one U row into scratch, then gather VU pairs
+     * at pixelStride (2 for padded semi-planar, 1 for planar).
+     */
+    private void copyStrided(ByteBuffer u, ByteBuffer v, int rowStride, int pixelStride, int chromaWidth,
+                            int chromaHeight, int frameSize, byte[] out) {
+        ByteBuffer vSrc = v.duplicate();
+        ByteBuffer uSrc = u.duplicate();
+        int vBase = v.position();
+        int uBase = u.position();
+        int rowBytes = (chromaWidth - 1) * pixelStride + 1;
+        ensureScratch(rowBytes * 2);
+
+        int o = frameSize;
+        for (int row = 0; row < chromaHeight; row++) {
+            vSrc.position(vBase + row * rowStride);
+            vSrc.get(scratchRow, 0, rowBytes);
+            uSrc.position(uBase + row * rowStride);
+            uSrc.get(scratchRow, rowBytes, rowBytes);
+            for (int col = 0; col < chromaWidth; col++) {
+                int i = col * pixelStride;
+                out[o++] = scratchRow[i];
+                out[o++] = scratchRow[rowBytes + i];
+            }
+        }
+    }
+
+    private void ensureScratch(int size) {
+        if (scratchRow.length < size) {
+            scratchRow = new byte[size];
+        }
+    }
+}
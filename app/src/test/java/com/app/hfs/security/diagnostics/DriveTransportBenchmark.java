@@ -0,0 +1,165 @@
+package com.hfs.security.diagnostics;
+
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import com.hfs.security.utils.OkHttpTransport;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Offline benchmark for the Drive upload path (files().create into the pre-shared folder,
+ * the same call DriveHelper makes) against a MockWebServer standing in for Drive.
+ *
+ * The mock charges a configurable "handshake" delay on the first request of every new TCP
+ * connection and a per-request RTT, so connection reuse shows up the way it does on mobile.
+ *
+ * Modes:
+ *   legacy  New NetHttpTransport + Drive client per upload (the pre-DriveServiceProvider path).
+ *   okhttp  One shared OkHttpTransport + Drive client (the current path).
+ *
+ * Lives in the test source set (mockwebserver is a testImplementation dependency), so it
+ * never ships in the APK. Run it with the unit test runtime classpath, e.g.:
+ *   java -cp <testDebugUnitTest classpath> com.hfs.security.diagnostics.DriveTransportBenchmark okhttp 200 --handshake 150 --rtt 40
+ *
+ * Options:
+ *   --handshake ms  Delay added to the first request on a new connection (default: 150).
+ *   --rtt ms        Delay added to every request (default: 40).
+ *   --size bytes    Uploaded payload size (default: 60000, a typical intruder JPEG).
+ */
+public final class DriveTransportBenchmark {
+
+    private static final String FILE_JSON =
+            "{\"id\":\"mock-file\",\"webViewLink\":\"https://drive.google.com/file/d/mock-file/view\"}";
+
+    private final MockWebServer server = new MockWebServer();
+    private final long handshakeMs;
+    private final long rttMs;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public DriveTransportBenchmark(long handshakeMs, long rttMs) {
+        this.handshakeMs = handshakeMs;
+        this.rttMs = rttMs;
+        this.server.setDispatcher(new MockDrive());
+    }
+
+    // --- MOCK DRIVE ---
+
+    /**
+     * Answers every call like files().create. getSequenceNumber() counts requests per
+     * connection, so 0 marks a freshly opened connection.
+     */
+    private final class MockDrive extends Dispatcher {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            long delay = rttMs;
+            if (request.getSequenceNumber() == 0) {
+                connections.incrementAndGet();
+                delay += handshakeMs;
+            }
+
+            MockResponse response = new MockResponse()
+                    .setHeader("Content-Type", "application/json; charset=UTF-8")
+                    .setHeadersDelay(delay, TimeUnit.MILLISECONDS);
+            String query = request.getRequestUrl() != null ? request.getRequestUrl().query() : null;
+            if (query != null && query.contains("uploadType=resumable") && "POST".equals(request.getMethod())) {
+                // Resumable upload initiation: hand back the session URI
+                return response.setHeader("Location", server.url("/upload/session/mock").toString());
+            }
+            return response.setBody(FILE_JSON);
+        }
+    }
+
+    // --- CLIENT ---
+
+    private static Drive buildDrive(HttpTransport transport, String rootUrl) {
+        return new Drive.Builder(transport, GsonFactory.getDefaultInstance(), null)
+                .setApplicationName("HFS Security Benchmark")
+                .setRootUrl(rootUrl)
+                .build();
+    }
+
+    private static String upload(Drive drive, byte[] payload) throws IOException {
+        File metadata = new File();
+        metadata.setName("intruder.jpg");
+        metadata.setMimeType("image/jpeg");
+        metadata.setParents(Collections.singletonList("mock-folder"));
+
+        File uploaded = drive.files().create(metadata, new ByteArrayContent("image/jpeg", payload))
+                .setFields("id, webViewLink")
+                .execute();
+        return uploaded.getWebViewLink();
+    }
+
+    /**
+     * Runs the uploads and returns the latency histogram. getConnections() tells how many
+     * TCP connections the mode opened.
+     */
+    public LatencyHistogram run(String mode, int iterations, int size) throws IOException {
+        server.start();
+        String rootUrl = server.url("/").toString();
+        byte[] payload = new byte[size];
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        OkHttpTransport shared = "okhttp".equals(mode) ? new OkHttpTransport() : null;
+        Drive sharedDrive = shared != null ? buildDrive(shared, rootUrl) : null;
+
+        try {
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                Drive drive = sharedDrive != null ? sharedDrive : buildDrive(new NetHttpTransport(), rootUrl);
+                upload(drive, payload);
+                histogram.recordNanos(System.nanoTime() - start);
+            }
+        } finally {
+            if (shared != null) shared.shutdown();
+            server.shutdown();
+        }
+        return histogram;
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || !("legacy".equals(args[0]) || "okhttp".equals(args[0]))) {
+            System.err.println("Usage: DriveTransportBenchmark <legacy|okhttp> [iterations] [options]");
+            System.exit(2);
+        }
+
+        int iterations = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : 100;
+        long handshake = 150;
+        long rtt = 40;
+        int size = 60000;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--handshake": handshake = Long.parseLong(args[++i]); break;
+                case "--rtt": rtt = Long.parseLong(args[++i]); break;
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                default: break;
+            }
+        }
+
+        DriveTransportBenchmark benchmark = new DriveTransportBenchmark(handshake, rtt);
+        LatencyHistogram histogram = benchmark.run(args[0], iterations, size);
+        System.out.println(String.format(Locale.US,
+                "%s: %d uploads, %d connections opened, p50 %.1f ms, p95 %.1f ms, max %.1f ms",
+                args[0], histogram.getCount(), benchmark.getConnections(),
+                histogram.percentileNanos(50) / 1e6,
+                histogram.percentileNanos(95) / 1e6,
+                histogram.getMaxNanos() / 1e6));
+    }
+}
@@ -0,0 +1,103 @@
+package com.hfs.security.diagnostics;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * Reads HFST trace files written by EventTraceWriter.
+ * String definitions are resolved internally; callers only see event records.
+ */
+public final class EventTraceReader implements Closeable {
+
+    private final DataInputStream in;
+    private final ArrayList<String> strings = new ArrayList<>();
+    private long lastNanos = 0;
+
+    public EventTraceReader(InputStream source) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(source, 16 * 1024));
+        int magic = in.readInt();
+        if (magic != EventTraceFormat.MAGIC) {
+            throw new IOException("Not an HFS event trace (bad magic)");
+        }
+        short version = in.readShort();
+        if (version != EventTraceFormat.VERSION) {
+            throw new IOException("Unsupported trace version: " + version);
+        }
+    }
+
+    /**
+     * Fills the given record with the next event.
+     *
+     * @return false at end of file (a truncated trailing record is treated as end of file).
+     */
+    public boolean next(EventTraceRecord into) throws IOException {
+        while (true) {
+            int tag;
+            try {
+                tag = in.readByte();
+            } catch (EOFException e) {
+                return false;
+            }
+
+            try {
+                if (tag == EventTraceFormat.TAG_STRING) {
+                    int id = readVarInt();
+                    String value = in.readUTF();
+                    while (strings.size() <= id) strings.add("");
+                    strings.set(id, value);
+                } else if (tag == EventTraceFormat.TAG_EVENT) {
+                    into.packageName = stringAt(readVarInt());
+                    into.className = stringAt(readVarInt());
+                    into.eventType = readVarInt();
+                    into.flags = readVarInt();
+                    into.textHash = in.readInt();
+                    lastNanos += readVarLong();
+                    into.timestampNanos = lastNanos;
+                    return true;
+                } else {
+                    throw new IOException("Corrupt trace: unknown tag " + tag);
+                }
+            } catch (EOFException e) {
+                // Device was killed mid-flush; everything before this point is valid.
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String stringAt(int id) throws IOException {
+        if (id < 0 || id >= strings.size()) {
+            throw new IOException("Corrupt trace: undefined string id " + id);
+        }
+        return strings.get(id);
+    }
+
+    private int readVarInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Corrupt trace: varint too long");
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Corrupt trace: varlong too long");
+    }
+}
@@ -0,0 +1,19 @@
+package com.hfs.security.diagnostics;
+
+/**
+ * Mutable holder for one traced event. Reused by EventTraceReader to avoid
+ * allocating per record while loading large traces.
+ */
+public final class EventTraceRecord {
+
+    public String packageName;
+    public String className;
+    public int eventType;
+    public int flags;
+    public int textHash;
+    public long timestampNanos;
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+}
@@ -0,0 +1,211 @@
+package com.hfs.security.diagnostics;
+
+import com.hfs.security.services.LockDecisionEngine;
+import com.hfs.security.utils.ProtectedPackageIndex;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JVM replay harness for Accessibility event traces.
+ * Drives recorded (or synthetic) events through LockDecisionEngine and reports
+ * decisions, throughput and per-event decision latency. No device required.
+ *
+ * Lives in the test source set so it never ships in the APK. The engine and the trace
+ * format are plain Java, so it also runs without Gradle or the Android SDK. From app/src:
+ *   M=main/java/com/app/hfs/security; T=test/java/com/app/hfs/security
+ *   javac -d out $M/services/LockDecisionEngine.java $M/services/UnlockSessionRegistry.java $M/services/KeyguardInputDetector.java \
+ *       $M/utils/ProtectedPackageIndex.java $M/diagnostics/EventTraceFormat.java $M/diagnostics/EventTraceWriter.java \
+ *       $T/diagnostics/EventTraceReader.java $T/diagnostics/EventTraceRecord.java \
+ *       $T/diagnostics/EventTraceReplayer.java $T/diagnostics/SyntheticEventStorm.java
+ *   java -cp out com.hfs.security.diagnostics.EventTraceReplayer replay events.hfst --protected com.whatsapp
+ *   java -cp out com.hfs.security.diagnostics.EventTraceReplayer storm 200000 5000 --protected com.whatsapp,com.instagram.android
+ *
+ * Options:
+ *   --protected a,b   Protected package list for the engine.
+ *   --launcher pkg    Default launcher package (storm default: com.android.launcher3).
+ *   --self pkg        HFS package name (default: com.hfs.security).
+ *   --seed n          Storm seed (default: 42).
+ *   --out file        Storm only: also write the generated events as an HFST trace.
+ *   --verbose         Print every non-empty decision.
+ */
+public final class EventTraceReplayer {
+
+    private static final String DEFAULT_SELF_PACKAGE = "com.hfs.security";
+
+    private final LockDecisionEngine engine = new LockDecisionEngine();
+    private final PrintStream log;
+    private final boolean verbose;
+
+    public EventTraceReplayer(String selfPackage, String launcherPackage, String[] protectedApps,
+                              PrintStream log, boolean verbose) {
+        engine.setSelfPackage(selfPackage);
+        engine.setLauncherPackage(launcherPackage);
+        engine.setProtectedIndex(ProtectedPackageIndex.of(Arrays.asList(protectedApps)));
+        this.log = log;
+        this.verbose = verbose;
+    }
+
+    /**
+     * Aggregated outcome of one replay run.
+     */
+    public static final class Report {
+        public int events;
+        public int locks;
+        public int systemCaptures;
+        public long totalNanos;
+        public long[] latencies;
+
+        public double eventsPerSecond() {
+            return totalNanos == 0 ? 0 : events * 1_000_000_000.0 / totalNanos;
+        }
+
+        public long percentile(double p) {
+            if (latencies == null || latencies.length == 0) return 0;
+            int index = (int) Math.ceil(p / 100.0 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+        }
+
+        public void print(PrintStream out) {
+            out.println("Events replayed : " + events);
+            out.println("Lock decisions  : " + locks);
+            out.println("System captures : " + systemCaptures);
+            out.printf("Throughput      : %.0f events/s%n", eventsPerSecond());
+            out.println("Latency p50     : " + percentile(50) + " ns");
+            out.println("Latency p95     : " + percentile(95) + " ns");
+            out.println("Latency p99     : " + percentile(99) + " ns");
+            out.println("Latency max     : " + percentile(100) + " ns");
+        }
+    }
+
+    /**
+     * Replays the given events in order. Events must already be in memory so
+     * file I/O never pollutes the latency numbers.
+     */
+    public Report replay(List<EventTraceRecord> events) {
+        engine.reset();
+        Report report = new Report();
+        long[] latencies = new long[events.size()];
+        int measured = 0;
+
+        long runStart = System.nanoTime();
+        for (int i = 0; i < events.size(); i++) {
+            EventTraceRecord r = events.get(i);
+            long nowMs = r.timestampNanos / 1_000_000L;
+
+            // Pseudo events replay state changes made by LockScreenActivity
+            if (r.eventType == EventTraceFormat.TYPE_MARK_UNLOCK) {
+                engine.setLockActive(false);
+                // Recorded per-app grace (0 in older traces falls back to the default)
+                engine.unlockSession(r.packageName, nowMs, r.textHash);
+                continue;
+            } else if (r.eventType == EventTraceFormat.TYPE_MARK_LOCK_ACTIVE) {
+                engine.setLockActive(true);
+                continue;
+            } else if (r.eventType == EventTraceFormat.TYPE_MARK_LOCK_INACTIVE) {
+                engine.setLockActive(false);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            int action = engine.onEvent(r.packageName, r.className, r.eventType, nowMs);
+            if (r.hasFlag(EventTraceFormat.FLAG_KEYGUARD_INPUT)) {
+                engine.onKeyguardInput(nowMs);
+            }
+            if (r.hasFlag(EventTraceFormat.FLAG_FAILURE_TEXT)) {
+                action |= r.hasFlag(EventTraceFormat.FLAG_KEYGUARD_MESSAGE)
+                        ? engine.onKeyguardFailureText(nowMs)
+                        : engine.onSystemFailureText(nowMs);
+            }
+            latencies[measured++] = System.nanoTime() - start;
+
+            if ((action & LockDecisionEngine.ACTION_LOCK) != 0) report.locks++;
+            if ((action & LockDecisionEngine.ACTION_SYSTEM_CAPTURE) != 0) report.systemCaptures++;
+            if (verbose && action != LockDecisionEngine.ACTION_NONE) {
+                log.println("#" + i + " t=" + nowMs + "ms " + r.packageName + " type=" + r.eventType + " -> " + describe(action));
+            }
+        }
+        report.totalNanos = System.nanoTime() - runStart;
+        report.events = measured;
+        report.latencies = Arrays.copyOf(latencies, measured);
+        Arrays.sort(report.latencies);
+        return report;
+    }
+
+    private static String describe(int action) {
+        StringBuilder sb = new StringBuilder();
+        if ((action & LockDecisionEngine.ACTION_LOCK) != 0) sb.append("LOCK ");
+        if ((action & LockDecisionEngine.ACTION_SYSTEM_CAPTURE) != 0) sb.append("SYSTEM_CAPTURE");
+        return sb.toString().trim();
+    }
+
+    public static List<EventTraceRecord> load(String path) throws IOException {
+        List<EventTraceRecord> events = new ArrayList<>();
+        try (EventTraceReader reader = new EventTraceReader(new FileInputStream(path))) {
+            EventTraceRecord r = new EventTraceRecord();
+            while (reader.next(r)) {
+                events.add(r);
+                r = new EventTraceRecord();
+            }
+        }
+        return events;
+    }
+
+    public static void write(List<EventTraceRecord> events, String path) throws IOException {
+        try (EventTraceWriter writer = new EventTraceWriter(new FileOutputStream(path))) {
+            for (EventTraceRecord r : events) {
+                writer.write(r.packageName, r.className, r.eventType, r.flags, r.textHash, r.timestampNanos);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: EventTraceReplayer replay <trace.hfst> [options]");
+            System.err.println("       EventTraceReplayer storm <events> <eventsPerSecond> [options]");
+            System.exit(2);
+        }
+
+        String[] protectedApps = new String[0];
+        String launcher = SyntheticEventStorm.LAUNCHER_PACKAGE;
+        String self = DEFAULT_SELF_PACKAGE;
+        String out = null;
+        long seed = 42;
+        boolean verbose = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--protected": protectedApps = args[++i].split(","); break;
+                case "--launcher": launcher = args[++i]; break;
+                case "--self": self = args[++i]; break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--out": out = args[++i]; break;
+                case "--verbose": verbose = true; break;
+                default: break;
+            }
+        }
+
+        List<EventTraceRecord> events;
+        if ("storm".equals(args[0])) {
+            int count = Integer.parseInt(args[1]);
+            int rate = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+            events = new SyntheticEventStorm(seed, protectedApps).generate(count, rate);
+            System.out.println("Generated storm: " + count + " events @ " + rate + " events/s");
+            if (out != null) write(events, out);
+        } else {
+            events = load(args[1]);
+            System.out.println("Loaded trace: " + args[1]);
+        }
+
+        EventTraceReplayer replayer = new EventTraceReplayer(self, launcher, protectedApps, System.out, verbose);
+
+        // Warm-up pass so the JIT has compiled the decision path before we measure
+        replayer.replay(events);
+        replayer.replay(events).print(System.out);
+    }
+}
@@ -0,0 +1,186 @@
+package com.hfs.security.diagnostics;
+
+import com.hfs.security.utils.ChunkedAeadFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Throughput for the evidence vault format (ChunkedAeadFile), plus the file helpers
+ * ChunkedAeadFileTest uses for its format, tamper and EXIF checks.
+ * A software key wrapper stands in for the Android Keystore. No device required.
+ *
+ * Measures MB/s for streaming writes and sequential reads, and the cost of random 4 KiB reads.
+ *
+ * Lives in the test source set. Usage from app/src (pure-Java sources only, no Android SDK needed):
+ *   javac -d out main/java/com/app/hfs/security/utils/ChunkedAeadFile.java \
+ *       test/java/com/app/hfs/security/diagnostics/EvidenceVaultBenchmark.java
+ *   java -cp out com.hfs.security.diagnostics.EvidenceVaultBenchmark [sizeMiB]
+ */
+public final class EvidenceVaultBenchmark {
+
+    public static final int SEALED_CHUNK = ChunkedAeadFile.CHUNK_SIZE + 16;
+
+    public static void main(String[] args) throws Exception {
+        int sizeMiB = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        ChunkedAeadFile.KeyWrapper keys = softwareWrapper();
+        File tmp = File.createTempFile("hfs_vault", ".bin");
+        tmp.deleteOnExit();
+        Random random = new Random(7);
+
+        byte[] big = new byte[sizeMiB * 1024 * 1024];
+        random.nextBytes(big);
+        double mib = sizeMiB;
+        for (int warm = 0; warm < 10; warm++) writeVault(tmp, big, keys, 4096);
+
+        long start = System.nanoTime();
+        writeVault(tmp, big, keys, 4096);
+        report("write (4 KiB writes)", mib, System.nanoTime() - start);
+
+        try (ChunkedAeadFile.Reader reader = new ChunkedAeadFile.Reader(tmp, keys)) {
+            for (int warm = 0; warm < 10; warm++) readAll(reader.openStream(0));
+            start = System.nanoTime();
+            readAll(reader.openStream(0));
+            report("sequential read", mib, System.nanoTime() - start);
+
+            byte[] page = new byte[4096];
+            int reads = 2000;
+            start = System.nanoTime();
+            for (int i = 0; i < reads; i++) {
+                reader.readFully(random.nextInt(big.length - page.length), page, 0, page.length);
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.println(String.format(Locale.US, "%-22s %8.1f us/read (one chunk decrypt each)",
+                    "random 4 KiB read", elapsed / 1e3 / reads));
+        }
+        System.out.println(String.format(Locale.US, "file overhead          %d bytes for %d MiB",
+                tmp.length() - big.length, sizeMiB));
+    }
+
+    // --- HELPERS (shared with ChunkedAeadFileTest) ---
+
+    public static void flip(File f, long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0x01);
+        }
+    }
+
+    public static void dropLastChunk(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            long header = firstChunkOffset(raf);
+            long body = raf.length() - header;
+            long fullChunks = (body - 1) / SEALED_CHUNK;
+            raf.setLength(header + fullChunks * SEALED_CHUNK);
+        }
+    }
+
+    public static void swapFirstChunks(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            byte[] a = new byte[SEALED_CHUNK];
+            byte[] b = new byte[SEALED_CHUNK];
+            long start = firstChunkOffset(raf);
+            raf.seek(start);
+            raf.readFully(a);
+            raf.readFully(b);
+            raf.seek(start);
+            raf.write(b);
+            raf.write(a);
+        }
+    }
+
+    private static long firstChunkOffset(RandomAccessFile raf) throws IOException {
+        // MAGIC(4) VERSION(1) chunkSize(4) noncePrefix(7) keyLength(2) wrappedKey
+        raf.seek(16);
+        return 18 + raf.readUnsignedShort();
+    }
+
+    public static void writeVault(File f, byte[] plain, ChunkedAeadFile.KeyWrapper keys, int writeSize)
+            throws IOException {
+        try (OutputStream out = new ChunkedAeadFile.Writer(new FileOutputStream(f), keys)) {
+            for (int p = 0; p < plain.length; p += writeSize) {
+                out.write(plain, p, Math.min(writeSize, plain.length - p));
+            }
+        }
+    }
+
+    public static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * SOI, JFIF APP0, then random payload standing in for the scan data.
+     */
+    public static byte[] fakeJpeg(int size, Random random) {
+        byte[] jpeg = new byte[size];
+        random.nextBytes(jpeg);
+        byte[] head = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16,
+                'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0, (byte) 0xFF, (byte) 0xDA};
+        System.arraycopy(head, 0, jpeg, 0, head.length);
+        return jpeg;
+    }
+
+    private static void report(String name, double mib, long nanos) {
+        System.out.println(String.format(Locale.US, "%-22s %8.1f MB/s", name, mib / (nanos / 1e9)));
+    }
+
+    /**
+     * AES-GCM wrap under a random in-memory master key (stands in for EvidenceVault's Keystore key).
+     */
+    public static ChunkedAeadFile.KeyWrapper softwareWrapper() {
+        SecureRandom random = new SecureRandom();
+        byte[] master = new byte[32];
+        random.nextBytes(master);
+        SecretKey masterKey = new SecretKeySpec(master, "AES");
+        return new ChunkedAeadFile.KeyWrapper() {
+            @Override
+            public SecretKey newDataKey() {
+                byte[] raw = new byte[32];
+                random.nextBytes(raw);
+                return new SecretKeySpec(raw, "AES");
+            }
+
+            @Override
+            public byte[] wrap(SecretKey dataKey) throws GeneralSecurityException {
+                byte[] iv = new byte[12];
+                random.nextBytes(iv);
+                Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+                c.init(Cipher.ENCRYPT_MODE, masterKey, new GCMParameterSpec(128, iv));
+                byte[] sealed = c.doFinal(dataKey.getEncoded());
+                byte[] out = Arrays.copyOf(iv, iv.length + sealed.length);
+                System.arraycopy(sealed, 0, out, iv.length, sealed.length);
+                return out;
+            }
+
+            @Override
+            public SecretKey unwrap(byte[] wrapped) throws GeneralSecurityException {
+                Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+                c.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(128, wrapped, 0, 12));
+                return new SecretKeySpec(c.doFinal(wrapped, 12, wrapped.length - 12), "AES");
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.hfs.security.diagnostics;
+
+import com.hfs.security.services.LockDecisionEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic Accessibility event storms for the replay harness.
+ * The mix approximates a busy device: protected app clicks, launcher hops,
+ * keyboard typing, systemui content churn and occasional owner unlocks.
+ *
+ * Deterministic for a given seed so regressions can be compared run to run.
+ */
+public final class SyntheticEventStorm {
+
+    public static final String LAUNCHER_PACKAGE = "com.android.launcher3";
+    public static final String KEYBOARD_PACKAGE = "com.google.android.inputmethod.latin";
+
+    private static final String[] OTHER_APPS = {
+            "com.android.chrome", "com.spotify.music", "com.android.settings", "com.google.android.youtube"
+    };
+    private static final String[] CLASSES = {
+            "android.widget.FrameLayout", "android.widget.Button", "android.widget.TextView", "android.view.View"
+    };
+
+    private final Random random;
+    private final String[] protectedApps;
+
+    public SyntheticEventStorm(long seed, String[] protectedApps) {
+        this.random = new Random(seed);
+        this.protectedApps = protectedApps;
+    }
+
+    /**
+     * @param count Number of events to generate.
+     * @param eventsPerSecond Target arrival rate; timestamps are spaced with +/-50% jitter.
+     */
+    public List<EventTraceRecord> generate(int count, int eventsPerSecond) {
+        List<EventTraceRecord> events = new ArrayList<>(count);
+        long meanGapNanos = 1_000_000_000L / Math.max(1, eventsPerSecond);
+        long now = 0;
+
+        for (int i = 0; i < count; i++) {
+            now += meanGapNanos / 2 + (long) (random.nextDouble() * meanGapNanos);
+            EventTraceRecord r = new EventTraceRecord();
+            r.timestampNanos = now;
+            r.className = CLASSES[random.nextInt(CLASSES.length)];
+            r.textHash = random.nextInt();
+
+            int roll = random.nextInt(100);
+            if (roll < 40 && protectedApps.length > 0) {
+                r.packageName = protectedApps[random.nextInt(protectedApps.length)];
+                r.eventType = random.nextBoolean()
+                        ? LockDecisionEngine.TYPE_VIEW_CLICKED
+                        : LockDecisionEngine.TYPE_WINDOW_STATE_CHANGED;
+            } else if (roll < 55) {
+                r.packageName = LockDecisionEngine.SYSTEM_UI_PACKAGE;
+                r.eventType = random.nextInt(4) == 0
+                        ? LockDecisionEngine.TYPE_VIEW_CLICKED
+                        : LockDecisionEngine.TYPE_WINDOW_CONTENT_CHANGED;
+                if (r.eventType == LockDecisionEngine.TYPE_VIEW_CLICKED && random.nextBoolean()) {
+                    // Half the systemui clicks land on the PIN pad, the rest on the notification shade
+                    r.flags = EventTraceFormat.FLAG_KEYGUARD_INPUT;
+                } else if (r.eventType == LockDecisionEngine.TYPE_WINDOW_CONTENT_CHANGED && random.nextInt(50) == 0) {
+                    r.flags = EventTraceFormat.FLAG_FAILURE_TEXT;
+                    if (random.nextBoolean()) {
+                        r.flags |= EventTraceFormat.FLAG_KEYGUARD_MESSAGE;
+                    }
+                }
+            } else if (roll < 65) {
+                r.packageName = LAUNCHER_PACKAGE;
+                r.eventType = LockDecisionEngine.TYPE_WINDOW_STATE_CHANGED;
+            } else if (roll < 80) {
+                r.packageName = KEYBOARD_PACKAGE;
+                r.eventType = LockDecisionEngine.TYPE_VIEW_CLICKED;
+            } else if (roll < 83 && protectedApps.length > 0) {
+                // Owner authenticates on the lock screen
+                r.packageName = protectedApps[random.nextInt(protectedApps.length)];
+                r.eventType = EventTraceFormat.TYPE_MARK_UNLOCK;
+                r.textHash = 0; // grace field: default grace
+            } else {
+                r.packageName = OTHER_APPS[random.nextInt(OTHER_APPS.length)];
+                r.eventType = random.nextBoolean()
+                        ? LockDecisionEngine.TYPE_VIEW_FOCUSED
+                        : LockDecisionEngine.TYPE_WINDOW_STATE_CHANGED;
+            }
+            events.add(r);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,211 @@
+package com.hfs.security.diagnostics;
+
+import com.hfs.security.utils.YuvToNv21Converter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Golden-frame check and throughput benchmark for YuvToNv21Converter. No device required.
+ *
+ * 1. Golden frames: a synthetic frame with a known pattern is laid out the ways camera HALs
+ *    deliver YUV_420_888 (aliased NV21, semi-planar with row padding, planar, planar with
+ *    padding). Each conversion must match the reference NV21 byte for byte.
+ * 2. Benchmark: MB/s of NV21 output per layout at common capture resolutions, after a
+ *    JIT warm-up, next to the old plane-concatenation copy for reference.
+ *
+ * Lives in the test source set; YuvToNv21ConverterTest runs the golden frames as unit tests.
+ * Usage from app/src (pure-Java sources only, no Android SDK needed):
+ *   javac -d out main/java/com/app/hfs/security/utils/YuvToNv21Converter.java \
+ *       test/java/com/app/hfs/security/diagnostics/YuvConversionBenchmark.java
+ *   java -cp out com.hfs.security.diagnostics.YuvConversionBenchmark [iterations]
+ */
+public final class YuvConversionBenchmark {
+
+    private static final int[][] RESOLUTIONS = {{640, 480}, {1280, 720}, {1920, 1080}};
+    private static final String[] LAYOUTS = {"nv21-aliased", "semi-planar-padded", "planar", "planar-padded"};
+    private static final int ROW_PADDING = 64;
+
+    /**
+     * One synthetic YUV_420_888 frame as a camera would hand it over.
+     */
+    private static final class Frame {
+        ByteBuffer y;
+        ByteBuffer u;
+        ByteBuffer v;
+        int yRowStride;
+        int uvRowStride;
+        int uvPixelStride;
+        byte[] expected;
+    }
+
+    private static byte lumaAt(int x, int y) {
+        return (byte) (x * 7 + y * 13);
+    }
+
+    private static byte uAt(int x, int y) {
+        return (byte) (x * 3 + y * 5 + 64);
+    }
+
+    private static byte vAt(int x, int y) {
+        return (byte) (x * 11 + y * 2 + 128);
+    }
+
+    static Frame buildFrame(String layout, int width, int height) {
+        int cw = width / 2;
+        int ch = height / 2;
+        Frame f = new Frame();
+        boolean padded = layout.endsWith("padded");
+        f.yRowStride = width + (padded ? ROW_PADDING : 0);
+
+        // Reference NV21
+        f.expected = new byte[width * height * 3 / 2];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                f.expected[y * width + x] = lumaAt(x, y);
+            }
+        }
+        int o = width * height;
+        for (int y = 0; y < ch; y++) {
+            for (int x = 0; x < cw; x++) {
+                f.expected[o++] = vAt(x, y);
+                f.expected[o++] = uAt(x, y);
+            }
+        }
+
+        // Luma plane
+        f.y = ByteBuffer.allocateDirect(f.yRowStride * (height - 1) + width);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                f.y.put(y * f.yRowStride + x, lumaAt(x, y));
+            }
+        }
+
+        if (layout.startsWith("planar")) {
+            f.uvPixelStride = 1;
+            f.uvRowStride = cw + (padded ? ROW_PADDING : 0);
+            int size = f.uvRowStride * (ch - 1) + cw;
+            f.u = ByteBuffer.allocateDirect(size);
+            f.v = ByteBuffer.allocateDirect(size);
+            for (int y = 0; y < ch; y++) {
+                for (int x = 0; x < cw; x++) {
+                    f.u.put(y * f.uvRowStride + x, uAt(x, y));
+                    f.v.put(y * f.uvRowStride + x, vAt(x, y));
+                }
+            }
+        } else {
+            f.uvPixelStride = 2;
+            f.uvRowStride = width + (padded ? ROW_PADDING : 0);
+            int size = f.uvRowStride * (ch - 1) + cw * 2;
+            ByteBuffer vu = ByteBuffer.allocateDirect(size);
+            for (int y = 0; y < ch; y++) {
+                for (int x = 0; x < cw; x++) {
+                    vu.put(y * f.uvRowStride + x * 2, vAt(x, y));
+                    vu.put(y * f.uvRowStride + x * 2 + 1, uAt(x, y));
+                }
+            }
+            if ("nv21-aliased".equals(layout)) {
+                // Same memory, as Camera2 delivers NV21-backed frames
+                vu.position(0);
+                vu.limit(size - 1);
+                f.v = vu.slice();
+                vu.limit(size);
+                vu.position(1);
+                f.u = vu.slice();
+            } else {
+                // Separate copies: same strides, but the planes do not alias
+                f.v = ByteBuffer.allocateDirect(size - 1);
+                f.u = ByteBuffer.allocateDirect(size - 1);
+                for (int i = 0; i < size - 1; i++) {
+                    f.v.put(i, vu.get(i));
+                    f.u.put(i, vu.get(i + 1));
+                }
+            }
+        }
+        return f;
+    }
+
+    private static byte[] convert(YuvToNv21Converter converter, Frame f, int width, int height) {
+        return converter.convert(f.y, f.yRowStride, f.u, f.v, f.uvRowStride, f.uvPixelStride, width, height);
+    }
+
+    /**
+     * Converts one synthetic frame of the given layout and compares it with the reference NV21.
+     *
+     * @param converter Converter under test (a fresh one exercises the aliasing probe).
+     */
+    public static boolean matchesGolden(YuvToNv21Converter converter, String layout, int width, int height) {
+        Frame f = buildFrame(layout, width, height);
+        byte[] out = convert(converter, f, width, height);
+        boolean ok = Arrays.equals(out, f.expected);
+        converter.release(out);
+        return ok;
+    }
+
+    /**
+     * The pre-fix conversion (plane concatenation), kept here only as a speed reference.
+     */
+    private static byte[] legacyConcat(Frame f) {
+        ByteBuffer y = f.y.duplicate();
+        ByteBuffer u = f.u.duplicate();
+        ByteBuffer v = f.v.duplicate();
+        byte[] nv21 = new byte[y.remaining() + u.remaining() + v.remaining()];
+        int ySize = y.remaining();
+        int vSize = v.remaining();
+        y.get(nv21, 0, ySize);
+        v.get(nv21, ySize, vSize);
+        u.get(nv21, ySize + vSize, u.remaining());
+        return nv21;
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        // --- 1. GOLDEN FRAMES ---
+        boolean allPassed = true;
+        for (int[] res : RESOLUTIONS) {
+            for (String layout : LAYOUTS) {
+                // Fresh converter per layout so the aliasing probe is exercised each time
+                boolean ok = matchesGolden(new YuvToNv21Converter(1), layout, res[0], res[1]);
+                allPassed &= ok;
+                System.out.println(String.format(Locale.US, "golden %-18s %4dx%-4d %s",
+                        layout, res[0], res[1], ok ? "OK" : "MISMATCH"));
+            }
+        }
+        if (!allPassed) {
+            System.out.println("Golden frame check FAILED");
+            System.exit(1);
+        }
+
+        // --- 2. THROUGHPUT ---
+        System.out.println();
+        for (int[] res : RESOLUTIONS) {
+            int width = res[0];
+            int height = res[1];
+            double mb = width * height * 1.5 / (1024.0 * 1024.0);
+            for (String layout : LAYOUTS) {
+                Frame f = buildFrame(layout, width, height);
+                YuvToNv21Converter bench = new YuvToNv21Converter(2);
+                for (int i = 0; i < iterations; i++) {
+                    bench.release(convert(bench, f, width, height));
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    bench.release(convert(bench, f, width, height));
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.println(String.format(Locale.US, "bench  %-18s %4dx%-4d %8.1f MB/s  %6.3f ms/frame",
+                        layout, width, height, mb * iterations / (elapsed / 1e9), elapsed / 1e6 / iterations));
+            }
+
+            Frame f = buildFrame("nv21-aliased", width, height);
+            for (int i = 0; i < iterations; i++) legacyConcat(f);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) legacyConcat(f);
+            long elapsed = System.nanoTime() - start;
+            System.out.println(String.format(Locale.US, "bench  %-18s %4dx%-4d %8.1f MB/s  %6.3f ms/frame",
+                    "legacy-concat", width, height, mb * iterations / (elapsed / 1e9), elapsed / 1e6 / iterations));
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.hfs.security.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.hfs.security.utils.ProtectedPackageIndex;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * JVM tests for the lock rules in LockDecisionEngine.
+ * Timestamps are passed in explicitly, so every rule is checked without a device or a clock.
+ */
+public class LockDecisionEngineTest {
+
+    private static final String SELF = "com.hfs.security";
+    private static final String LAUNCHER = "com.android.launcher3";
+    private static final String WHATSAPP = "com.whatsapp";
+    private static final String INSTAGRAM = "com.instagram.android";
+    private static final String CHROME = "com.android.chrome";
+    private static final String GBOARD = "com.google.android.inputmethod.latin";
+    private static final String SWIFTKEY = "com.touchtype.swiftkey";
+
+    private static final long GRACE = LockDecisionEngine.SESSION_GRACE_MS;
+    // Keyguard tests start well past the first capture cooldown
+    private static final long T = 100000;
+
+    private LockDecisionEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new LockDecisionEngine();
+        engine.setSelfPackage(SELF);
+        engine.setLauncherPackage(LAUNCHER);
+        engine.setProtectedIndex(ProtectedPackageIndex.of(Arrays.asList(WHATSAPP, INSTAGRAM)));
+    }
+
+    private int window(String packageName, long nowMs) {
+        return engine.onEvent(packageName, "android.widget.FrameLayout",
+                LockDecisionEngine.TYPE_WINDOW_STATE_CHANGED, nowMs);
+    }
+
+    private int click(String packageName, long nowMs) {
+        return engine.onEvent(packageName, "android.widget.Button", LockDecisionEngine.TYPE_VIEW_CLICKED, nowMs);
+    }
+
+    /**
+     * What LockScreenActivity does after the owner verifies.
+     */
+    private void ownerUnlocks(String packageName, long nowMs) {
+        engine.unlockSession(packageName, nowMs);
+        engine.setLockActive(false);
+    }
+
+    // --- PROTECTION ---
+
+    @Test
+    public void protectedAppWithoutSessionLocks() {
+        assertEquals(LockDecisionEngine.ACTION_LOCK, window(WHATSAPP, 1000));
+        assertTrue(engine.isLockActive());
+    }
+
+    @Test
+    public void unprotectedAppNeverLocks() {
+        assertEquals(LockDecisionEngine.ACTION_NONE, window(CHROME, 1000));
+        assertFalse(engine.isLockActive());
+    }
+
+    @Test
+    public void contentChangesDoNotLock() {
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onEvent(WHATSAPP, "android.widget.TextView",
+                LockDecisionEngine.TYPE_WINDOW_CONTENT_CHANGED, 1000));
+    }
+
+    @Test
+    public void selfPackageMarksLockActive() {
+        assertEquals(LockDecisionEngine.ACTION_NONE, window(SELF, 1000));
+        assertTrue(engine.isLockActive());
+    }
+
+    // --- SESSION GRACE / TTL ---
+
+    @Test
+    public void unlockedAppStaysOpenWithinGrace() {
+        ownerUnlocks(WHATSAPP, 1000);
+        assertEquals(LockDecisionEngine.ACTION_NONE, window(WHATSAPP, 1000 + GRACE - 1));
+    }
+
+    @Test
+    public void sessionExpiresAfterGraceOfInactivity() {
+        ownerUnlocks(WHATSAPP, 1000);
+        assertEquals(LockDecisionEngine.ACTION_LOCK, window(WHATSAPP, 1000 + GRACE));
+    }
+
+    @Test
+    public void activitySlidesTheGraceWindow() {
+        ownerUnlocks(WHATSAPP, 0);
+        // Each event lands just inside the window and extends it
+        long now = 0;
+        for (int i = 0; i < 5; i++) {
+            now += GRACE - 1;
+            assertEquals(LockDecisionEngine.ACTION_NONE, click(WHATSAPP, now));
+        }
+        assertEquals(LockDecisionEngine.ACTION_LOCK, window(WHATSAPP, now + GRACE));
+    }
+
+    @Test
+    public void outOfOrderEventDoesNotShrinkTheWindow() {
+        ownerUnlocks(WHATSAPP, 0);
+        assertEquals(LockDecisionEngine.ACTION_NONE, click(WHATSAPP, 5000));
+        assertEquals(LockDecisionEngine.ACTION_NONE, click(WHATSAPP, 4000));
+        assertEquals(LockDecisionEngine.ACTION_NONE, click(WHATSAPP, 5000 + GRACE - 1));
+    }
+
+    @Test
+    public void perAppGraceOverridesTheDefault() {
+        engine.unlockSession(WHATSAPP, 0, 60000);
+        engine.setLockActive(false);
+        assertEquals(LockDecisionEngine.ACTION_NONE, window(WHATSAPP, 59999));
+        assertEquals(LockDecisionEngine.ACTION_LOCK, window(WHATSAPP, 59999 + 60000));
+    }
+
+    @Test
+    public void sessionsArePerPackage() {
+        ownerUnlocks(WHATSAPP, 0);
+        ownerUnlocks(INSTAGRAM, 100);
+        assertEquals(LockDecisionEngine.ACTION_NONE, window(WHATSAPP, 2000));
+        assertEquals(LockDecisionEngine.ACTION_NONE, window(INSTAGRAM, 3000));
+        assertEquals(LockDecisionEngine.ACTION_NONE, window(WHATSAPP, 4000));
+    }
+
+    @Test
+    public void unlockingOneAppDoesNotUnlockAnother() {
+        ownerUnlocks(WHATSAPP, 0);
+        assertEquals(LockDecisionEngine.ACTION_LOCK, window(INSTAGRAM, 1000));
+    }
+
+    @Test
+    public void resetClearsSessions() {
+        ownerUnlocks(WHATSAPP, 0);
+        engine.reset();
+        assertEquals(LockDecisionEngine.ACTION_LOCK, window(WHATSAPP, 1000));
+    }
+
+    // --- LAUNCHER FAILSAFE ---
+
+    @Test
+    public void defaultLauncherClearsLock() {
+        window(WHATSAPP, 1000);
+        window(LAUNCHER, 2000);
+        assertFalse(engine.isLockActive());
+    }
+
+    @Test
+    public void anyHomePackageClearsLock() {
+        engine.setLauncherPackages(new HashSet<>(Collections.singletonList("com.sec.android.app.easylauncher2")));
+        engine.setLauncherPackage("com.oneplus.home");
+        window(WHATSAPP, 1000);
+        window("com.sec.android.app.easylauncher2", 2000);
+        assertFalse(engine.isLockActive());
+    }
+
+    @Test
+    public void launcherNameHeuristicClearsLock() {
+        engine.setLauncherPackage("");
+        window(WHATSAPP, 1000);
+        engine.onEvent("com.nothing.Launcher", "android.view.View",
+                LockDecisionEngine.TYPE_WINDOW_CONTENT_CHANGED, 2000);
+        assertFalse(engine.isLockActive());
+    }
+
+    @Test
+    public void failsafeDoesNotUnlockTheApp() {
+        window(WHATSAPP, 1000);
+        window(LAUNCHER, 2000);
+        assertEquals(LockDecisionEngine.ACTION_LOCK, window(WHATSAPP, 3000));
+    }
+
+    // --- IME / VOLUME IGNORE ---
+
+    @Test
+    public void resolvedImeIsIgnored() {
+        engine.setImePackages(new HashSet<>(Collections.singletonList(SWIFTKEY)));
+        window(SELF, 1000);
+        assertEquals(LockDecisionEngine.ACTION_NONE, click(SWIFTKEY, 2000));
+        assertTrue(engine.isLockActive());
+    }
+
+    @Test
+    public void imeNameHeuristicIsIgnored() {
+        assertEquals(LockDecisionEngine.ACTION_NONE, click(GBOARD, 1000));
+        assertEquals(LockDecisionEngine.ACTION_NONE, window("com.android.systemui.volume", 1000));
+    }
+
+    @Test
+    public void keyboardEventDoesNotResetThePinCounter() {
+        engine.onKeyguardInput(T + 1000);
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 1100));
+        click(GBOARD, T + 1200);
+        engine.onKeyguardInput(T + 2000);
+        assertEquals(LockDecisionEngine.ACTION_SYSTEM_CAPTURE, engine.onKeyguardFailureText(T + 2100));
+    }
+
+    // --- KEYGUARD INPUT / FAILURE COUNTER ---
+
+    @Test
+    public void singleWrongPinDoesNotCapture() {
+        engine.onKeyguardInput(T + 1000);
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 1100));
+    }
+
+    @Test
+    public void secondConfirmedWrongPinCaptures() {
+        engine.onKeyguardInput(T + 1000);
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 1100));
+        engine.onKeyguardInput(T + 3000);
+        assertEquals(LockDecisionEngine.ACTION_SYSTEM_CAPTURE, engine.onKeyguardFailureText(T + 3100));
+    }
+
+    @Test
+    public void counterRestartsAfterCapture() {
+        engine.onKeyguardInput(T + 1000);
+        engine.onKeyguardFailureText(T + 1100);
+        engine.onKeyguardInput(T + 2000);
+        assertEquals(LockDecisionEngine.ACTION_SYSTEM_CAPTURE, engine.onKeyguardFailureText(T + 2100));
+
+        engine.onKeyguardInput(T + 10000);
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 10100));
+    }
+
+    @Test
+    public void repostedWrongPinDoesNotCapture() {
+        // Four digits, one wrong PIN message, then systemui re-posts the same message
+        for (int i = 0; i < 4; i++) {
+            engine.onKeyguardInput(T + 1000 + i * 100);
+        }
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 1400));
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 1450));
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 2400));
+    }
+
+    @Test
+    public void repostDoesNotCountTowardsTheThreshold() {
+        engine.onKeyguardInput(T + 1000);
+        engine.onKeyguardFailureText(T + 1100);
+        engine.onKeyguardFailureText(T + 1150);
+        // The second real failure is the one that captures
+        engine.onKeyguardInput(T + 3000);
+        assertEquals(LockDecisionEngine.ACTION_SYSTEM_CAPTURE, engine.onKeyguardFailureText(T + 3100));
+    }
+
+    @Test
+    public void messageAreaTextWithoutInputIsIgnored() {
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T));
+        engine.onKeyguardInput(T + 1000);
+        assertEquals(LockDecisionEngine.ACTION_NONE,
+                engine.onKeyguardFailureText(T + 1000 + LockDecisionEngine.KEYGUARD_INPUT_WINDOW_MS + 1));
+    }
+
+    @Test
+    public void wrongPatternWithoutClicksCaptures() {
+        // LockPatternView only reports drawing as content changes, never as clicks
+        for (int i = 0; i < 4; i++) {
+            assertTrue(engine.onKeyguardWidgetEvent(KeyguardInputDetector.KIND_PATTERN,
+                    LockDecisionEngine.TYPE_WINDOW_CONTENT_CHANGED, T + 1000 + i * 50));
+        }
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 1300));
+        engine.onKeyguardWidgetEvent(KeyguardInputDetector.KIND_PATTERN,
+                LockDecisionEngine.TYPE_WINDOW_CONTENT_CHANGED, T + 3000);
+        assertEquals(LockDecisionEngine.ACTION_SYSTEM_CAPTURE, engine.onKeyguardFailureText(T + 3100));
+    }
+
+    @Test
+    public void passwordTypedOnTheImeCountsAsInput() {
+        assertTrue(engine.onKeyguardWidgetEvent(KeyguardInputDetector.KIND_PASSWORD,
+                LockDecisionEngine.TYPE_VIEW_TEXT_CHANGED, T + 1000));
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 1100));
+        engine.onKeyguardWidgetEvent(KeyguardInputDetector.KIND_PASSWORD,
+                LockDecisionEngine.TYPE_VIEW_TEXT_CHANGED, T + 2000);
+        assertEquals(LockDecisionEngine.ACTION_SYSTEM_CAPTURE, engine.onKeyguardFailureText(T + 2100));
+    }
+
+    @Test
+    public void onlyInputEventsOfKeyguardWidgetsCount() {
+        assertTrue(engine.onKeyguardWidgetEvent(KeyguardInputDetector.KIND_PIN_KEY,
+                LockDecisionEngine.TYPE_VIEW_CLICKED, T));
+        assertFalse(engine.onKeyguardWidgetEvent(KeyguardInputDetector.KIND_PIN_KEY,
+                LockDecisionEngine.TYPE_WINDOW_CONTENT_CHANGED, T));
+        assertFalse(engine.onKeyguardWidgetEvent(KeyguardInputDetector.KIND_MESSAGE_AREA,
+                LockDecisionEngine.TYPE_VIEW_TEXT_CHANGED, T));
+        assertFalse(engine.onKeyguardWidgetEvent(KeyguardInputDetector.KIND_NONE,
+                LockDecisionEngine.TYPE_VIEW_CLICKED, T));
+    }
+
+    @Test
+    public void leavingSystemUiResetsTheCounter() {
+        engine.onKeyguardInput(T + 1000);
+        engine.onKeyguardFailureText(T + 1100);
+        window(CHROME, T + 1500);
+        engine.onKeyguardInput(T + 2000);
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 2100));
+    }
+
+    @Test
+    public void captureRespectsCooldown() {
+        assertEquals(LockDecisionEngine.ACTION_SYSTEM_CAPTURE, engine.onSystemFailureText(T));
+        engine.onKeyguardInput(T + 1000);
+        engine.onKeyguardFailureText(T + 1100);
+        engine.onKeyguardInput(T + 2000);
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onKeyguardFailureText(T + 2100));
+    }
+
+    // --- BIOMETRIC FAILURE TEXT ---
+
+    @Test
+    public void biometricFailureCapturesOncePerCooldown() {
+        assertEquals(LockDecisionEngine.ACTION_SYSTEM_CAPTURE, engine.onSystemFailureText(10000));
+        assertEquals(LockDecisionEngine.ACTION_NONE, engine.onSystemFailureText(10000 + LockDecisionEngine.SYSTEM_COOLDOWN_MS));
+        assertEquals(LockDecisionEngine.ACTION_SYSTEM_CAPTURE,
+                engine.onSystemFailureText(10001 + LockDecisionEngine.SYSTEM_COOLDOWN_MS));
+    }
+}
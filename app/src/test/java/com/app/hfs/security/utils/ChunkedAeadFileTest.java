@@ -0,0 +1,189 @@
+package com.hfs.security.utils;
+
+import static com.hfs.security.diagnostics.EvidenceVaultBenchmark.dropLastChunk;
+import static com.hfs.security.diagnostics.EvidenceVaultBenchmark.fakeJpeg;
+import static com.hfs.security.diagnostics.EvidenceVaultBenchmark.flip;
+import static com.hfs.security.diagnostics.EvidenceVaultBenchmark.readAll;
+import static com.hfs.security.diagnostics.EvidenceVaultBenchmark.softwareWrapper;
+import static com.hfs.security.diagnostics.EvidenceVaultBenchmark.swapFirstChunks;
+import static com.hfs.security.diagnostics.EvidenceVaultBenchmark.writeVault;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Vault format: round trips at chunk boundaries, random access, tamper rejection and
+ * EXIF orientation streamed through the vault. Helpers live in EvidenceVaultBenchmark.
+ */
+public class ChunkedAeadFileTest {
+
+    private static final int CHUNK = ChunkedAeadFile.CHUNK_SIZE;
+    private static final int[] SIZES = {0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 3 * CHUNK, 3 * CHUNK + 17, 2_500_000};
+
+    private final ChunkedAeadFile.KeyWrapper keys = softwareWrapper();
+    private final Random random = new Random(7);
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("hfs_vault", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private void assertRejected(ChunkedAeadFile.KeyWrapper readKeys) {
+        assertThrows(ChunkedAeadFile.IntegrityException.class, () -> {
+            try (ChunkedAeadFile.Reader reader = new ChunkedAeadFile.Reader(file, readKeys)) {
+                readAll(reader.openStream(0));
+            }
+        });
+    }
+
+    // --- FORMAT ---
+
+    @Test
+    public void roundTripAtChunkBoundaries() throws IOException {
+        for (int size : SIZES) {
+            byte[] plain = randomBytes(size);
+            writeVault(file, plain, keys, 4096);
+            try (ChunkedAeadFile.Reader reader = new ChunkedAeadFile.Reader(file, keys)) {
+                assertEquals("length " + size, size, reader.length());
+                assertArrayEquals("round trip " + size, plain, readAll(reader.openStream(0)));
+            }
+        }
+    }
+
+    @Test
+    public void randomAccessMatchesPlaintext() throws IOException {
+        for (int size : SIZES) {
+            if (size == 0) continue;
+            byte[] plain = randomBytes(size);
+            writeVault(file, plain, keys, 4096);
+            try (ChunkedAeadFile.Reader reader = new ChunkedAeadFile.Reader(file, keys)) {
+                for (int i = 0; i < 50; i++) {
+                    int pos = random.nextInt(size);
+                    int len = Math.min(size - pos, 1 + random.nextInt(3 * CHUNK));
+                    byte[] part = new byte[len];
+                    reader.readFully(pos, part, 0, len);
+                    assertArrayEquals(size + " @" + pos, Arrays.copyOfRange(plain, pos, pos + len), part);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void vaultFileIsRecognised() throws IOException {
+        writeVault(file, randomBytes(100), keys, 4096);
+        assertTrue(ChunkedAeadFile.isVaultFile(file));
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(fakeJpeg(100, random));
+        }
+        assertFalse(ChunkedAeadFile.isVaultFile(file));
+    }
+
+    // --- TAMPERING ---
+
+    @Test
+    public void flippedByteFailsAuthentication() throws IOException {
+        writeVault(file, randomBytes(3 * CHUNK), keys, 4096);
+        flip(file, file.length() / 2);
+        assertRejected(keys);
+    }
+
+    @Test
+    public void droppedLastChunkFailsAuthentication() throws IOException {
+        writeVault(file, randomBytes(3 * CHUNK + 17), keys, 4096);
+        dropLastChunk(file);
+        assertRejected(keys);
+    }
+
+    @Test
+    public void swappedChunksFailAuthentication() throws IOException {
+        writeVault(file, randomBytes(3 * CHUNK), keys, 4096);
+        swapFirstChunks(file);
+        assertRejected(keys);
+    }
+
+    @Test
+    public void flippedHeaderByteIsRejected() throws IOException {
+        writeVault(file, randomBytes(CHUNK), keys, 4096);
+        // Inside the nonce prefix: the header is the AAD of every chunk
+        flip(file, 10);
+        assertRejected(keys);
+    }
+
+    @Test
+    public void foreignMasterKeyFailsUnwrap() throws IOException {
+        writeVault(file, randomBytes(1000), keys, 4096);
+        assertRejected(softwareWrapper());
+    }
+
+    @Test
+    public void unavailableKeystoreIsNotAnIntegrityFailure() throws IOException {
+        writeVault(file, randomBytes(1000), keys, 4096);
+        ChunkedAeadFile.KeyWrapper unavailable = new ChunkedAeadFile.KeyWrapper() {
+            @Override
+            public SecretKey newDataKey() throws GeneralSecurityException {
+                return keys.newDataKey();
+            }
+
+            @Override
+            public byte[] wrap(SecretKey dataKey) throws GeneralSecurityException {
+                return keys.wrap(dataKey);
+            }
+
+            @Override
+            public SecretKey unwrap(byte[] wrappedKey) throws GeneralSecurityException {
+                throw new GeneralSecurityException("Keystore unavailable", new IOException("busy"));
+            }
+        };
+
+        IOException e = assertThrows(IOException.class, () -> new ChunkedAeadFile.Reader(file, unavailable).close());
+        assertFalse(e instanceof ChunkedAeadFile.IntegrityException);
+    }
+
+    // --- EXIF THROUGH THE VAULT ---
+
+    @Test
+    public void exifOrientationSurvivesTheVault() throws IOException {
+        byte[] jpeg = fakeJpeg(200_000, random);
+        for (int orientation = 1; orientation <= 8; orientation++) {
+            try (OutputStream out = JpegExifInjector.wrap(new ChunkedAeadFile.Writer(new FileOutputStream(file), keys), orientation)) {
+                // Odd write sizes, like an encoder's working buffer
+                for (int p = 0; p < jpeg.length; p += 4093) {
+                    out.write(jpeg, p, Math.min(4093, jpeg.length - p));
+                }
+            }
+            try (ChunkedAeadFile.Reader reader = new ChunkedAeadFile.Reader(file, keys)) {
+                assertEquals(orientation, JpegExifInjector.readOrientation(reader.openStream(0)));
+                assertEquals(jpeg.length + 36, reader.length());
+            }
+        }
+    }
+}
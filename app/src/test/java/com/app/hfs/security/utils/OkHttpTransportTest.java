@@ -0,0 +1,107 @@
+package com.hfs.security.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpRequestFactory;
+import com.hfs.security.diagnostics.DriveTransportBenchmark;
+import com.hfs.security.diagnostics.LatencyHistogram;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * Drives the Drive client over OkHttpTransport against a MockWebServer.
+ */
+public class OkHttpTransportTest {
+
+    private static final byte[] BODY = new byte[4096];
+
+    @Test
+    public void sharedTransportReusesOneConnection() throws Exception {
+        DriveTransportBenchmark benchmark = new DriveTransportBenchmark(0, 0);
+        LatencyHistogram histogram = benchmark.run("okhttp", 10, 1024);
+
+        assertEquals(10, histogram.getCount());
+        assertEquals(1, benchmark.getConnections());
+    }
+
+    // --- RETRY ON CONNECTION FAILURE ---
+
+    /**
+     * Upload body that counts how often it is written.
+     */
+    private static final class CountingContent implements HttpContent {
+        private final boolean retrySupported;
+        int writes;
+
+        CountingContent(boolean retrySupported) {
+            this.retrySupported = retrySupported;
+        }
+
+        @Override
+        public long getLength() {
+            return BODY.length;
+        }
+
+        @Override
+        public String getType() {
+            return "image/jpeg";
+        }
+
+        @Override
+        public boolean retrySupported() {
+            return retrySupported;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            writes++;
+            out.write(BODY);
+        }
+    }
+
+    /**
+     * Warms the pool, then the upload's pooled connection drops after the body went out.
+     * OkHttp only retries on a reused connection, so the warm-up request is required.
+     */
+    private void postAfterDroppedConnection(HttpContent content) throws IOException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setResponseCode(200));
+            server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+            server.enqueue(new MockResponse().setResponseCode(200));
+            server.start();
+
+            OkHttpTransport transport = new OkHttpTransport();
+            try {
+                HttpRequestFactory factory = transport.createRequestFactory();
+                factory.buildGetRequest(new GenericUrl(server.url("/about").toString())).execute().disconnect();
+                factory.buildPostRequest(new GenericUrl(server.url("/upload").toString()), content).execute().disconnect();
+            } finally {
+                transport.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void replayableBodyIsRetried() throws IOException {
+        CountingContent content = new CountingContent(true);
+        postAfterDroppedConnection(content);
+        assertEquals(2, content.writes);
+    }
+
+    @Test
+    public void streamedBodyIsNotResent() {
+        CountingContent content = new CountingContent(false);
+        assertThrows(IOException.class, () -> postAfterDroppedConnection(content));
+        assertEquals(1, content.writes);
+    }
+}
@@ -0,0 +1,78 @@
+package com.hfs.security.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.hfs.security.diagnostics.YuvConversionBenchmark;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Golden frames: every YUV_420_888 layout a camera HAL may deliver must convert to the
+ * reference NV21 byte for byte (frames are built by YuvConversionBenchmark).
+ */
+public class YuvToNv21ConverterTest {
+
+    private static final int[][] RESOLUTIONS = {{640, 480}, {1280, 720}, {1920, 1080}};
+
+    private static void assertGolden(String layout) {
+        for (int[] res : RESOLUTIONS) {
+            // Fresh converter so the aliasing probe runs for this layout
+            assertTrue(layout + " " + res[0] + "x" + res[1], YuvConversionBenchmark.matchesGolden(
+                    new YuvToNv21Converter(1), layout, res[0], res[1]));
+        }
+    }
+
+    @Test
+    public void aliasedNv21() {
+        assertGolden("nv21-aliased");
+    }
+
+    @Test
+    public void semiPlanarWithRowPadding() {
+        assertGolden("semi-planar-padded");
+    }
+
+    @Test
+    public void planar() {
+        assertGolden("planar");
+    }
+
+    @Test
+    public void planarWithRowPadding() {
+        assertGolden("planar-padded");
+    }
+
+    @Test
+    public void nv12OrderedChromaIsNotMistakenForNv21() {
+        // U V U V memory (NV12) where U0 happens to equal the flipped probe byte (~U1)
+        ByteBuffer y = ByteBuffer.allocateDirect(8);
+        ByteBuffer uv = ByteBuffer.allocateDirect(4);
+        uv.put(0, (byte) 0x0F).put(1, (byte) 0x20).put(2, (byte) 0xF0).put(3, (byte) 0x21);
+        uv.limit(3);
+        ByteBuffer u = uv.slice();
+        uv.limit(4).position(1);
+        ByteBuffer v = uv.slice();
+
+        byte[] out = new YuvToNv21Converter(1).convert(y, 4, u, v, 4, 2, 4, 2);
+        assertArrayEquals(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0x20, 0x0F, 0x21, (byte) 0xF0}, out);
+    }
+
+    @Test
+    public void pooledBufferIsFullyOverwritten() {
+        YuvToNv21Converter converter = new YuvToNv21Converter(1);
+        // Second run reuses the released buffer (and the cached probe result)
+        assertTrue(YuvConversionBenchmark.matchesGolden(converter, "nv21-aliased", 640, 480));
+        assertTrue(YuvConversionBenchmark.matchesGolden(converter, "nv21-aliased", 640, 480));
+    }
+
+    @Test
+    public void resolutionChangeDropsStaleBuffers() {
+        YuvToNv21Converter converter = new YuvToNv21Converter(2);
+        assertTrue(YuvConversionBenchmark.matchesGolden(converter, "planar", 1280, 720));
+        assertTrue(YuvConversionBenchmark.matchesGolden(converter, "planar", 640, 480));
+        assertTrue(YuvConversionBenchmark.matchesGolden(converter, "planar", 1280, 720));
+    }
+}